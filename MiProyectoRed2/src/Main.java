@@ -1,14 +1,26 @@
 package com.miproyectored;
 
+import com.miproyectored.dispatch.HostDispatcher;
 import com.miproyectored.scanner.NmapScanner;
+import com.miproyectored.ssh.SSHCollector;
+import com.miproyectored.ssh.SSHCredentials;
 import com.miproyectored.ssh.SSHHandler;
-import com.miproyectored.rdp.RDPHandler;
+import com.miproyectored.ssh.SSHInventoryStore;
+import com.miproyectored.snmp.SNMPEngine;
+import com.miproyectored.snmp.SNMPEngineCache;
 import com.miproyectored.snmp.SNMPHandler;
-import com.miproyectored.webscan.WebScanner;
+import com.miproyectored.snmp.SNMPSweeper;
+import com.miproyectored.snmp.SNMPTableWalker;
+import com.miproyectored.snmp.SNMPTables;
+import com.miproyectored.snmp.SNMPv3User;
 import com.miproyectored.normalization.DataNormalizer;
 import com.miproyectored.report.ReportGenerator;
+import com.miproyectored.util.NetworkUtils;
+import com.miproyectored.webscan.WebCache;
 
+import java.io.IOException;
 import java.net.*;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -58,33 +70,148 @@ public class Main {
     }
 
     private static String calculateNetworkAddress(String ip, short prefix) {
+        // Aplicar máscara de red con aritmética de enteros (sin split ni String.format)
+        long ipValue = NetworkUtils.parseIpv4(ip);
+        if (ipValue < 0) {
+            return ip;
+        }
+        return NetworkUtils.formatIpv4(NetworkUtils.networkAddress((int) ipValue, prefix));
+    }
+
+    /**
+     * Credenciales SSH: admin/admin por defecto, o perfiles por subred con
+     * -Dmiproyectored.ssh.credenciales=fichero (ver {@link SSHCredentials}).
+     */
+    private static SSHCredentials loadSshCredentials() {
+        SSHCredentials.Credential defaultCredential = new SSHCredentials.Credential("admin", "admin");
+        String file = System.getProperty("miproyectored.ssh.credenciales");
+        if (file != null) {
+            try {
+                return SSHCredentials.load(Paths.get(file), defaultCredential);
+            } catch (IOException e) {
+                System.err.println("No se pudieron leer las credenciales SSH de " + file + ": " + e.getMessage());
+            }
+        }
+        return new SSHCredentials(defaultCredential);
+    }
+
+    /**
+     * Inventario SSH incremental con -Dmiproyectored.ssh.inventario=fichero (ver {@link SSHInventoryStore});
+     * sin la propiedad se recoge siempre el inventario completo.
+     */
+    private static SSHInventoryStore loadSshInventory() {
+        String file = System.getProperty("miproyectored.ssh.inventario");
+        if (file != null) {
+            try {
+                return SSHInventoryStore.load(Paths.get(file));
+            } catch (IOException e) {
+                System.err.println("No se pudo leer el inventario SSH de " + file + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * SNMPv3 con -Dmiproyectored.snmp.v3=fichero de usuario (ver {@link SNMPv3User}); los engine ID y boots/time
+     * de los agentes se guardan entre ejecuciones con -Dmiproyectored.snmp.v3.cache=fichero (ver
+     * {@link SNMPEngineCache}). Sin usuario se usa SNMP v2c con la comunidad.
+     * @return La caché de engines a guardar al terminar, o null.
+     */
+    private static SNMPEngineCache configureSnmpV3(SNMPEngine engine) {
+        String userFile = System.getProperty("miproyectored.snmp.v3");
+        if (userFile == null) {
+            return null;
+        }
         try {
-            // Convertir IP a bytes
-            String[] parts = ip.split("\\.");
-            int[] bytes = new int[4];
-            for (int i = 0; i < 4; i++) {
-                bytes[i] = Integer.parseInt(parts[i]);
+            SNMPv3User user = SNMPv3User.load(Paths.get(userFile));
+            engine.setUser(user);
+            System.out.println("SNMPv3 (authPriv) con el usuario " + user.getSecurityName());
+        } catch (IOException e) {
+            System.err.println("No se pudo leer el usuario SNMPv3 de " + userFile + ": " + e.getMessage());
+            return null;
+        }
+        String cacheFile = System.getProperty("miproyectored.snmp.v3.cache");
+        if (cacheFile != null) {
+            try {
+                SNMPEngineCache cache = SNMPEngineCache.load(Paths.get(cacheFile));
+                engine.setEngineCache(cache);
+                return cache;
+            } catch (IOException e) {
+                System.err.println("No se pudo leer la caché de engines SNMPv3 de " + cacheFile + ": " + e.getMessage());
             }
-            
-            // Aplicar máscara de red
-            int mask = -1 << (32 - prefix);
-            int network = ((bytes[0] << 24) | (bytes[1] << 16) | (bytes[2] << 8) | bytes[3]) & mask;
-            
-            // Convertir de vuelta a formato string
-            return String.format("%d.%d.%d.%d",
-                (network >>> 24) & 0xFF,
-                (network >>> 16) & 0xFF,
-                (network >>> 8) & 0xFF,
-                network & 0xFF);
-        } catch (Exception e) {
-            return ip;
         }
+        return null;
+    }
+
+    /**
+     * Barrido SNMP de la red (-Dmiproyectored.snmp.barrido=true, ritmo con -Dmiproyectored.snmp.pps=500). Los
+     * agentes que Nmap no encontró se añaden a nmapResults, sin puertos TCP.
+     * @return Las IPs de todos los agentes que respondieron.
+     */
+    private static Set<String> sweepSnmp(String network, String community, List<NmapScanner.ScanResult> nmapResults)
+            throws IOException {
+        int packetsPerSecond = Integer.getInteger("miproyectored.snmp.pps", 500);
+        System.out.println("Barrido SNMP de " + network + " (" + packetsPerSecond + " paquetes/s)...");
+        SNMPSweeper sweeper = new SNMPSweeper(SNMPEngine.getDefault(), community, packetsPerSecond, 1000, 1);
+
+        Set<String> knownHosts = new HashSet<>();
+        nmapResults.forEach(host -> knownHosts.add(host.getIp()));
+        Set<String> agents = new HashSet<>();
+        for (SNMPHandler.SNMPResult agent : sweeper.sweep(network)) {
+            agents.add(agent.getIpAddress());
+            if (knownHosts.add(agent.getIpAddress())) {
+                System.out.println("Agente SNMP no detectado por Nmap: " + agent.getIpAddress() + " "
+                    + agent.getDeviceInfo().getOrDefault("sysDescr", ""));
+                nmapResults.add(new NmapScanner.ScanResult(agent.getIpAddress()));
+            }
+        }
+        System.out.println("Agentes SNMP en " + network + ": " + agents.size());
+        return agents;
+    }
+
+    /**
+     * Hosts de la red que aparecen en las tablas ARP de los agentes SNMP y que Nmap no encontró (equipos que no
+     * responden al ping pero sí han hablado con el router). Se resumen también las tablas de topología leídas.
+     */
+    private static List<String> hostsFromArpTables(String network, List<NmapScanner.ScanResult> nmapResults,
+                                                   List<HostDispatcher.HostResults> dispatched) {
+        long cidr = NetworkUtils.parseCidr(network);
+        Set<String> knownHosts = new HashSet<>();
+        nmapResults.forEach(host -> knownHosts.add(host.getIp()));
+        List<String> newHosts = new ArrayList<>();
+        for (HostDispatcher.HostResults hostResults : dispatched) {
+            SNMPTables tables = hostResults.getSnmp().getTables();
+            if (tables == null) {
+                continue;
+            }
+            System.out.println("Tablas SNMP de " + hostResults.getIp() + ": " + tables.getInterfaces().size()
+                + " interfaces, " + tables.getArp().size() + " entradas ARP, " + tables.getForwarding().size()
+                + " MAC en el bridge, " + tables.getLldpNeighbors().size() + " vecinos LLDP"
+                + (tables.getErrors().isEmpty() ? "" : " (errores: " + tables.getErrors() + ")"));
+            for (SNMPTables.ArpEntry entry : tables.getArp()) {
+                long ip = entry.getIp() != null ? NetworkUtils.parseIpv4(entry.getIp()) : -1;
+                if (ip >= 0 && cidr >= 0 && NetworkUtils.contains(cidr, (int) ip) && knownHosts.add(entry.getIp())) {
+                    newHosts.add(entry.getIp());
+                }
+            }
+        }
+        return newHosts;
     }
 
     public static void main(String[] args) {
         System.out.println("=== MiProyectoRed - Escáner de Red ===\n");
 
-        try {
+        // Inventario SSH en paralelo: -Dmiproyectored.ssh.hilos=32 conexiones simultáneas como máximo
+        int sshThreads = Integer.getInteger("miproyectored.ssh.hilos", 32);
+        try (SSHCollector sshCollector = new SSHCollector(sshThreads, loadSshCredentials(), loadSshInventory())) {
+            // SNMP v2c con -Dmiproyectored.snmp.comunidad=public, o v3 si hay usuario configurado
+            String snmpCommunity = System.getProperty("miproyectored.snmp.comunidad", "public");
+            SNMPEngineCache snmpEngineCache = configureSnmpV3(SNMPEngine.getDefault());
+
+            // Tablas SNMP (interfaces, ARP, bridge, LLDP) con GETBULK de 25 filas por petición
+            SNMPTableWalker tableWalker = new SNMPTableWalker(SNMPEngine.getDefault(), snmpCommunity, 25);
+            HostDispatcher dispatcher = new HostDispatcher(sshCollector, snmpCommunity, tableWalker);
+
             // Detectar todas las redes automáticamente
             List<String> networks = detectLocalNetworks();
             System.out.println("\nRedes detectadas:");
@@ -107,35 +234,59 @@ public class Main {
                     .collect(Collectors.toList());
                 
                 System.out.println("\nHosts activos encontrados en " + network + ": " + activeHosts.size());
-                
-                // Escanear cada host activo
-                for (String host : activeHosts) {
-                    System.out.println("\nAnalizando host: " + host);
-                    
-                    // Escaneo SSH
-                    SSHHandler.SSHResult sshResult = SSHHandler.getSystemInfo(host, "admin", "admin");
-                    
-                    // Escaneo RDP
-                    RDPHandler.RDPResult rdpResult = RDPHandler.checkRDPAccess(host);
-                    
-                    // Escaneo SNMP
-                    SNMPHandler.SNMPResult snmpResult = SNMPHandler.getDeviceInfo(host, "public");
-                    
-                    // Escaneo Web
-                    WebScanner.WebScanResult webResult = WebScanner.scanWebServices(host);
-                    
+
+                // Barrido SNMP opcional: añade los dispositivos que solo responden por SNMP
+                Set<String> snmpAgents = null;
+                if (Boolean.getBoolean("miproyectored.snmp.barrido")) {
+                    snmpAgents = sweepSnmp(network, snmpCommunity, nmapResults);
+                }
+
+                // Cada host solo pasa por los handlers de sus puertos abiertos
+                System.out.println("2. Analizando servicios de los hosts activos...");
+                List<HostDispatcher.HostResults> dispatched = new ArrayList<>(dispatcher.dispatch(nmapResults, snmpAgents));
+
+                // Los hosts de las tablas ARP que Nmap no vio se escanean y analizan igual que el resto
+                List<String> arpHosts = hostsFromArpTables(network, nmapResults, dispatched);
+                if (!arpHosts.isEmpty()) {
+                    System.out.println("Hosts encontrados en tablas ARP y no detectados por Nmap: " + arpHosts);
+                    List<NmapScanner.ScanResult> arpResults = NmapScanner.scanHosts(arpHosts);
+                    dispatched.addAll(dispatcher.dispatch(arpResults, snmpAgents));
+                    nmapResults.addAll(arpResults);
+                }
+
+                for (HostDispatcher.HostResults hostResults : dispatched) {
+                    String host = hostResults.getIp();
+
                     // Almacenar resultados en los mapas
-                    sshResults.put(host, sshResult);
-                    snmpResults.put(host, snmpResult);
-                    
+                    if (hostResults.getSsh() != null) {
+                        sshResults.put(host, hostResults.getSsh());
+                    }
+                    snmpResults.put(host, hostResults.getSnmp());
+
                     // Normalizar datos
-                    DataNormalizer.addHostData(host, sshResult, rdpResult, 
-                        snmpResult.getDeviceInfo().toString(), webResult);
+                    DataNormalizer.addHostData(host, hostResults.getSsh(), hostResults.getRdp(),
+                        hostResults.getSnmp().getDeviceInfo().toString(), hostResults.getWeb());
                 }
                 
                 allNmapResults.addAll(nmapResults);
             }
             
+            if (snmpEngineCache != null) {
+                try {
+                    snmpEngineCache.save();
+                } catch (IOException e) {
+                    System.err.println("No se pudo guardar la caché de engines SNMPv3: " + e.getMessage());
+                }
+            }
+            WebCache webCache = WebCache.getDefault();
+            if (webCache != null) {
+                try {
+                    webCache.save();
+                } catch (IOException e) {
+                    System.err.println("No se pudo guardar la caché web: " + e.getMessage());
+                }
+            }
+
             // Generar informe final con todos los resultados
             System.out.println("\nGenerando informe final...");
             String jsonTempFile = "temp_report.json";
@@ -0,0 +1,164 @@
+package com.miproyectored.dispatch;
+
+import com.miproyectored.rdp.RDPHandler;
+import com.miproyectored.scanner.NmapScanner.ScanResult;
+import com.miproyectored.snmp.SNMPHandler;
+import com.miproyectored.snmp.SNMPTableWalker;
+import com.miproyectored.ssh.SSHCollector;
+import com.miproyectored.ssh.SSHHandler;
+import com.miproyectored.webscan.WebScanner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decide qué handlers se ejecutan en cada host a partir de sus puertos abiertos según Nmap: SSH solo con el 22
+ * abierto, RDP con el 3389 y el escáner web con algún puerto web. Así los hosts sin esos servicios no esperan
+ * los tiempos límite de conexiones que no pueden funcionar. Los sondeos RDP de todos los hosts se hacen a la vez
+ * (ver {@link com.miproyectored.rdp.RDPProbe}) mientras se recoge el inventario SSH.
+ *
+ * SNMP es la excepción: va por UDP y el escaneo de puertos es TCP, así que se consulta siempre. Las consultas
+ * de todos los hosts (un solo PDU por host) se lanzan a la vez al principio por la sesión SNMP compartida, y
+ * los hosts sin agente solo cuestan un timeout en paralelo con el resto del análisis. Si hay un
+ * {@link SNMPTableWalker}, en cuanto un agente responde se recorren también sus tablas (interfaces, ARP, bridge,
+ * LLDP), igualmente en paralelo con todo lo demás.
+ */
+public class HostDispatcher {
+
+    public static final int SSH_PORT = 22;
+    public static final int RDP_PORT = 3389;
+
+    /**
+     * Resultados de un host. Los handlers que no se ejecutaron quedan a null (SNMP siempre tiene resultado,
+     * vacío si el agente no respondió).
+     */
+    public static class HostResults {
+        private final String ip;
+        private final List<String> handlers = new ArrayList<>();
+        private SSHHandler.SSHResult ssh;
+        private RDPHandler.RDPResult rdp;
+        private SNMPHandler.SNMPResult snmp;
+        private WebScanner.WebScanResult web;
+
+        public HostResults(String ip) {
+            this.ip = ip;
+        }
+
+        public String getIp() { return ip; }
+        /** Handlers ejecutados en el host ("SSH", "RDP", "SNMP", "Web"). */
+        public List<String> getHandlers() { return handlers; }
+        public SSHHandler.SSHResult getSsh() { return ssh; }
+        public RDPHandler.RDPResult getRdp() { return rdp; }
+        public SNMPHandler.SNMPResult getSnmp() { return snmp; }
+        public WebScanner.WebScanResult getWeb() { return web; }
+    }
+
+    private final SSHCollector sshCollector;
+    private final String snmpCommunity;
+    private final SNMPTableWalker tableWalker;
+
+    public HostDispatcher(SSHCollector sshCollector, String snmpCommunity) {
+        this(sshCollector, snmpCommunity, null);
+    }
+
+    /**
+     * @param tableWalker Recorredor de tablas SNMP para los hosts con agente, o null para no recorrerlas.
+     */
+    public HostDispatcher(SSHCollector sshCollector, String snmpCommunity, SNMPTableWalker tableWalker) {
+        this.sshCollector = sshCollector;
+        this.snmpCommunity = snmpCommunity;
+        this.tableWalker = tableWalker;
+    }
+
+    /**
+     * Ejecuta los handlers que correspondan en cada host.
+     * @return Un resultado por host, en el mismo orden.
+     */
+    public List<HostResults> dispatch(List<ScanResult> hosts) throws InterruptedException {
+        return dispatch(hosts, null);
+    }
+
+    /**
+     * @param snmpAgents IPs que respondieron a un barrido SNMP previo (ver SNMPSweeper): solo a esas se les pide
+     *                   la información SNMP completa. null si no hubo barrido y hay que consultar a todos.
+     */
+    public List<HostResults> dispatch(List<ScanResult> hosts, Set<String> snmpAgents) throws InterruptedException {
+        // SNMP de todos los hosts en vuelo mientras se hace lo demás
+        Map<String, CompletableFuture<SNMPHandler.SNMPResult>> snmpQueries = new LinkedHashMap<>();
+        for (ScanResult host : hosts) {
+            CompletableFuture<SNMPHandler.SNMPResult> query = snmpAgents == null || snmpAgents.contains(host.getIp())
+                    ? SNMPHandler.getDeviceInfoAsync(host.getIp(), snmpCommunity)
+                    : CompletableFuture.completedFuture(new SNMPHandler.SNMPResult(host.getIp()));
+            if (tableWalker != null) {
+                query = query.thenCompose(snmp -> !snmp.getDeviceInfo().containsKey("sysDescr")
+                        ? CompletableFuture.completedFuture(snmp)
+                        : tableWalker.walk(snmp.getIpAddress()).thenApply(tables -> {
+                            snmp.setTables(tables);
+                            return snmp;
+                        }));
+            }
+            snmpQueries.put(host.getIp(), query);
+        }
+
+        // RDP de todos los hosts con el 3389 abierto, en segundo plano
+        List<String> rdpHosts = new ArrayList<>();
+        for (ScanResult host : hosts) {
+            if (host.getOpenPorts().contains(RDP_PORT)) {
+                rdpHosts.add(host.getIp());
+            }
+        }
+        CompletableFuture<Map<String, RDPHandler.RDPResult>> rdpProbes = rdpHosts.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.emptyMap())
+                : CompletableFuture.supplyAsync(() -> RDPHandler.checkRDPAccessAll(rdpHosts));
+
+        // SSH de todos los hosts con el 22 abierto a la vez
+        List<String> sshHosts = new ArrayList<>();
+        for (ScanResult host : hosts) {
+            if (host.getOpenPorts().contains(SSH_PORT)) {
+                sshHosts.add(host.getIp());
+            }
+        }
+        Map<String, SSHHandler.SSHResult> sshResults = Collections.emptyMap();
+        if (!sshHosts.isEmpty()) {
+            System.out.println("Recogiendo inventario SSH de " + sshHosts.size() + " hosts...");
+            sshResults = sshCollector.collectAll(sshHosts);
+        }
+
+        Map<String, RDPHandler.RDPResult> rdpResults = rdpProbes.join();
+        List<HostResults> results = new ArrayList<>();
+        for (ScanResult host : hosts) {
+            String ip = host.getIp();
+            HostResults hostResults = new HostResults(ip);
+
+            hostResults.ssh = sshResults.get(ip);
+            if (hostResults.ssh != null) {
+                hostResults.handlers.add("SSH");
+            }
+
+            hostResults.rdp = rdpResults.get(ip);
+            if (hostResults.rdp != null) {
+                hostResults.handlers.add("RDP");
+            }
+
+            if (WebScanner.hasWebPorts(host.getOpenPorts(), host.getServices())) {
+                hostResults.web = WebScanner.scanWebServices(ip, host.getOpenPorts(), host.getServices());
+                hostResults.handlers.add("Web");
+            }
+
+            hostResults.snmp = snmpQueries.get(ip).join();
+            if (hostResults.snmp.getDeviceInfo().containsKey("sysDescr")) {
+                hostResults.handlers.add("SNMP");
+            }
+
+            System.out.println("Host " + ip + " (puertos " + host.getOpenPorts() + "): "
+                    + (hostResults.handlers.isEmpty() ? "sin servicios que analizar" : String.join(", ", hostResults.handlers)));
+            results.add(hostResults);
+        }
+        return results;
+    }
+}
@@ -52,6 +52,9 @@ public class DataNormalizer {
                     for (Map.Entry<String, String> entry : snmpResult.getDeviceInfo().entrySet()) {
                         snmpNode.put(entry.getKey(), entry.getValue());
                     }
+                    if (snmpResult.getTables() != null) {
+                        snmpNode.set("tables", mapper.valueToTree(snmpResult.getTables()));
+                    }
                     deviceNode.set("snmp_info", snmpNode);
                 }
 
@@ -1,23 +1,30 @@
 package com.miproyectored.rdp;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.io.*;
-import java.net.Socket;
 
 public class RDPHandler {
     private static final int RDP_PORT = 3389;
     private static final int TIMEOUT = 3000;
+    private static final int MAX_CONCURRENT = 256;
 
     public static class RDPResult {
         private String ipAddress;
         private Map<String, String> systemInfo;
         private boolean isAccessible;
+        private List<String> securityProtocols;
+        private boolean nlaRequired;
 
         public RDPResult(String ipAddress) {
             this.ipAddress = ipAddress;
             this.systemInfo = new HashMap<>();
             this.isAccessible = false;
+            this.securityProtocols = new ArrayList<>();
         }
 
         public void addInfo(String key, String value) {
@@ -28,33 +35,62 @@ public class RDPHandler {
         public Map<String, String> getSystemInfo() { return systemInfo; }
         public boolean isAccessible() { return isAccessible; }
         public void setAccessible(boolean accessible) { isAccessible = accessible; }
+        /** Protocolos de seguridad admitidos ("RDP", "TLS", "CredSSP"...), vacío si no es un servidor RDP. */
+        public List<String> getSecurityProtocols() { return securityProtocols; }
+        public boolean isNlaRequired() { return nlaRequired; }
     }
 
     public static RDPResult checkRDPAccess(String ipAddress) {
-        RDPResult result = new RDPResult(ipAddress);
-        
-        try (Socket socket = new Socket()) {
-            socket.connect(new java.net.InetSocketAddress(ipAddress, RDP_PORT), TIMEOUT);
-            result.setAccessible(true);
-            result.addInfo("status", "Puerto RDP accesible");
-            result.addInfo("port", String.valueOf(RDP_PORT));
-            
-            // Intentar obtener el nombre del host
-            try {
-                java.net.InetAddress addr = java.net.InetAddress.getByName(ipAddress);
-                String hostname = addr.getHostName();
-                if (!hostname.equals(ipAddress)) {
-                    result.addInfo("hostname", hostname);
-                }
-            } catch (Exception e) {
-                // Si no se puede obtener el hostname, lo ignoramos
-            }
-            
+        return checkRDPAccessAll(Collections.singletonList(ipAddress)).get(ipAddress);
+    }
+
+    /**
+     * Sondea a la vez los protocolos de seguridad RDP de todos los hosts (ver {@link RDPProbe}).
+     * @return Un resultado por host, en el mismo orden.
+     */
+    public static Map<String, RDPResult> checkRDPAccessAll(List<String> ipAddresses) {
+        Map<String, RDPResult> results = new LinkedHashMap<>();
+        try {
+            Map<String, RDPProbe.RDPSecurity> probes = new RDPProbe(MAX_CONCURRENT, TIMEOUT).probeAll(ipAddresses, RDP_PORT);
+            probes.forEach((ip, security) -> results.put(ip, toResult(security)));
         } catch (IOException e) {
-            result.setAccessible(false);
-            result.addInfo("error", "Puerto RDP no accesible: " + e.getMessage());
+            for (String ip : ipAddresses) {
+                RDPResult result = new RDPResult(ip);
+                result.addInfo("error", "No se pudo sondear RDP: " + e.getMessage());
+                results.put(ip, result);
+            }
+        }
+        return results;
+    }
+
+    private static RDPResult toResult(RDPProbe.RDPSecurity security) {
+        RDPResult result = new RDPResult(security.getHost());
+        result.securityProtocols = new ArrayList<>(security.getProtocols());
+        result.nlaRequired = security.isNlaRequired();
+        result.setAccessible(security.isOpen());
+        if (!security.isOpen()) {
+            result.addInfo("error", "Puerto RDP no accesible: " + security.getError());
+            return result;
+        }
+        result.addInfo("port", String.valueOf(security.getPort()));
+        if (!security.isRdp()) {
+            result.addInfo("status", "Puerto accesible, pero no responde como RDP");
+            if (security.getError() != null) {
+                result.addInfo("error", security.getError());
+            }
+            return result;
+        }
+        result.addInfo("status", "Servidor RDP accesible");
+        result.addInfo("security_protocols", String.join(", ", security.getProtocols()));
+        if (security.getPreferredProtocol() != null) {
+            result.addInfo("preferred_protocol", security.getPreferredProtocol());
+        }
+        result.addInfo("nla_required", String.valueOf(security.isNlaRequired()));
+        if (security.getFailure() != null) {
+            result.addInfo("negotiation_failure", security.getFailure());
         }
-        
+        // El nombre del host no se resuelve aquí: la búsqueda DNS inversa bloqueante costaba segundos
+        // por host con DNS lentos. Nmap ya resuelve los nombres durante el descubrimiento.
         return result;
     }
 }
\ No newline at end of file
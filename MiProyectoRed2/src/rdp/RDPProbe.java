@@ -0,0 +1,358 @@
+package com.miproyectored.rdp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sondeo de los protocolos de seguridad RDP de muchos hosts a la vez, con sockets no bloqueantes (NIO) y un
+ * único hilo.
+ *
+ * A cada host se le envía un X.224 Connection Request con RDP_NEG_REQ (MS-RDPBCGR 2.2.1.1) y se lee el
+ * Connection Confirm: RDP_NEG_RSP con el protocolo elegido por el servidor, RDP_NEG_FAILURE con el motivo del
+ * rechazo, o nada si el servidor es tan antiguo que solo conoce la seguridad RDP estándar. El servidor elige un
+ * solo protocolo por petición, así que se hacen hasta tres: primero ofreciendo TLS y CredSSP (protocolo
+ * preferido y si el puerto habla RDP) y, solo a los que respondieron, ofreciendo únicamente RDP estándar y
+ * únicamente TLS. No se completa ningún handshake ni se envían credenciales.
+ */
+public class RDPProbe {
+
+    public static final int PROTOCOL_RDP = 0x00;
+    public static final int PROTOCOL_SSL = 0x01;
+    public static final int PROTOCOL_HYBRID = 0x02;
+    public static final int PROTOCOL_HYBRID_EX = 0x08;
+
+    private static final Map<Integer, String> PROTOCOL_NAMES = new HashMap<>();
+    private static final Map<Integer, String> FAILURE_CODES = new HashMap<>();
+
+    static {
+        PROTOCOL_NAMES.put(PROTOCOL_RDP, "RDP");
+        PROTOCOL_NAMES.put(PROTOCOL_SSL, "TLS");
+        PROTOCOL_NAMES.put(PROTOCOL_HYBRID, "CredSSP");
+        PROTOCOL_NAMES.put(PROTOCOL_HYBRID_EX, "CredSSP-EX");
+        FAILURE_CODES.put(1, "El servidor exige TLS");
+        FAILURE_CODES.put(2, "El servidor no admite TLS");
+        FAILURE_CODES.put(3, "El servidor no tiene certificado TLS");
+        FAILURE_CODES.put(4, "Petición de negociación no válida");
+        FAILURE_CODES.put(5, "El servidor exige CredSSP (NLA)");
+        FAILURE_CODES.put(6, "El servidor exige TLS con autenticación de usuario");
+    }
+
+    /**
+     * Protocolos de seguridad de un servidor RDP.
+     */
+    public static class RDPSecurity {
+        private final String host;
+        private final int port;
+        private boolean open;
+        private boolean rdp;
+        private final Set<String> protocols = new LinkedHashSet<>();
+        private String preferredProtocol;
+        private String failure;
+        private String error;
+
+        RDPSecurity(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        public String getHost() { return host; }
+        public int getPort() { return port; }
+        /** Se pudo conectar al puerto. */
+        public boolean isOpen() { return open; }
+        /** El puerto respondió con un X.224 Connection Confirm. */
+        public boolean isRdp() { return rdp; }
+        /** Protocolos admitidos: "RDP" (seguridad estándar), "TLS", "CredSSP", "CredSSP-EX". */
+        public Set<String> getProtocols() { return protocols; }
+        /** Protocolo que elige el servidor cuando el cliente ofrece TLS y CredSSP. */
+        public String getPreferredProtocol() { return preferredProtocol; }
+        /** Solo se admite CredSSP: hace falta autenticarse antes de ver la pantalla de inicio de sesión. */
+        public boolean isNlaRequired() {
+            return protocols.contains("CredSSP") && !protocols.contains("RDP") && !protocols.contains("TLS");
+        }
+        /** Motivo de rechazo de la negociación que ofrecía TLS y CredSSP, o null. */
+        public String getFailure() { return failure; }
+        public String getError() { return error; }
+    }
+
+    private final int maxConcurrent;
+    private final long timeoutMs;
+
+    /**
+     * @param maxConcurrent Conexiones abiertas a la vez como máximo.
+     * @param timeoutMs     Tiempo límite de cada intento (conexión, petición y respuesta).
+     */
+    public RDPProbe(int maxConcurrent, long timeoutMs) {
+        this.maxConcurrent = maxConcurrent;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Sondea todos los hosts en el puerto indicado.
+     * @return Un resultado por host, en el mismo orden.
+     */
+    public Map<String, RDPSecurity> probeAll(List<String> hosts, int port) throws IOException {
+        Map<String, RDPSecurity> results = new LinkedHashMap<>();
+        List<Attempt> first = new ArrayList<>();
+        for (String host : hosts) {
+            results.put(host, new RDPSecurity(host, port));
+            first.add(new Attempt(host, port, PROTOCOL_SSL | PROTOCOL_HYBRID | PROTOCOL_HYBRID_EX));
+        }
+        run(first);
+
+        // Los que hablan RDP se vuelven a sondear ofreciendo un solo protocolo cada vez
+        List<Attempt> second = new ArrayList<>();
+        for (Attempt attempt : first) {
+            RDPSecurity security = results.get(attempt.host);
+            record(security, attempt);
+            if (security.rdp && attempt.outcome != Outcome.LEGACY) {
+                second.add(new Attempt(attempt.host, port, PROTOCOL_RDP));
+                second.add(new Attempt(attempt.host, port, PROTOCOL_SSL));
+            }
+        }
+        run(second);
+        for (Attempt attempt : second) {
+            record(results.get(attempt.host), attempt);
+        }
+        return results;
+    }
+
+    private static void record(RDPSecurity security, Attempt attempt) {
+        boolean preferred = attempt.requestedProtocols != PROTOCOL_RDP && attempt.requestedProtocols != PROTOCOL_SSL;
+        switch (attempt.outcome) {
+            case CLOSED:
+            case TIMEOUT:
+                security.open |= attempt.connected;
+                if (preferred) {
+                    security.error = attempt.error;
+                }
+                break;
+            case NO_RDP:
+                security.open = true;
+                break;
+            case LEGACY:
+                // Connection Confirm sin negociación: servidor anterior a RDP 5.2, solo seguridad estándar
+                security.open = security.rdp = true;
+                security.protocols.add(PROTOCOL_NAMES.get(PROTOCOL_RDP));
+                if (preferred) {
+                    security.preferredProtocol = PROTOCOL_NAMES.get(PROTOCOL_RDP);
+                }
+                break;
+            case SELECTED:
+                security.open = security.rdp = true;
+                String name = PROTOCOL_NAMES.getOrDefault(attempt.value, "0x" + Integer.toHexString(attempt.value));
+                security.protocols.add(name);
+                if (attempt.value == PROTOCOL_HYBRID_EX) {
+                    security.protocols.add(PROTOCOL_NAMES.get(PROTOCOL_HYBRID)); // HYBRID_EX es CredSSP ampliado
+                }
+                if (preferred) {
+                    security.preferredProtocol = name;
+                }
+                break;
+            case FAILURE:
+                security.open = security.rdp = true;
+                if (preferred) {
+                    security.failure = FAILURE_CODES.getOrDefault(attempt.value, "Código de fallo " + attempt.value);
+                    if (attempt.value == 2) {
+                        security.protocols.add(PROTOCOL_NAMES.get(PROTOCOL_RDP)); // Solo seguridad RDP estándar
+                    }
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private enum Outcome { CLOSED, TIMEOUT, NO_RDP, LEGACY, SELECTED, FAILURE }
+
+    /**
+     * Un intento: una conexión, un Connection Request y su respuesta.
+     */
+    private static class Attempt {
+        final String host;
+        final int port;
+        final int requestedProtocols;
+        final ByteBuffer request;
+        final ByteBuffer response = ByteBuffer.allocate(64);
+        SocketChannel channel;
+        boolean connected;
+        long deadline;
+        Outcome outcome;
+        int value;
+        String error;
+
+        Attempt(String host, int port, int requestedProtocols) {
+            this.host = host;
+            this.port = port;
+            this.requestedProtocols = requestedProtocols;
+            this.request = connectionRequest(requestedProtocols);
+        }
+
+        void finish(Outcome outcome, String error) {
+            this.outcome = outcome;
+            this.error = error;
+            if (channel != null) {
+                try {
+                    channel.close(); // También cancela su SelectionKey
+                } catch (IOException e) {
+                    // Ignorar: el intento ya ha terminado
+                }
+            }
+        }
+    }
+
+    /**
+     * TPKT + X.224 Connection Request (sin cookie) + RDP_NEG_REQ: 19 bytes.
+     */
+    private static ByteBuffer connectionRequest(int requestedProtocols) {
+        ByteBuffer request = ByteBuffer.allocate(19);
+        request.put(new byte[]{0x03, 0x00, 0x00, 0x13});              // TPKT: versión 3, longitud total 19
+        request.put(new byte[]{0x0e, (byte) 0xe0, 0, 0, 0, 0, 0});    // X.224 CR: LI, código, dst-ref, src-ref, clase
+        request.put(new byte[]{0x01, 0x00, 0x08, 0x00});              // RDP_NEG_REQ: tipo, flags, longitud (LE)
+        request.put((byte) requestedProtocols).put(new byte[3]);       // requestedProtocols (LE)
+        request.flip();
+        return request;
+    }
+
+    /**
+     * Ejecuta los intentos con un selector, manteniendo como máximo maxConcurrent conexiones abiertas.
+     */
+    private void run(List<Attempt> attempts) throws IOException {
+        if (attempts.isEmpty()) {
+            return;
+        }
+        Deque<Attempt> queue = new ArrayDeque<>(attempts);
+        List<Attempt> active = new ArrayList<>();
+        try (Selector selector = Selector.open()) {
+            while (!queue.isEmpty() || !active.isEmpty()) {
+                while (active.size() < maxConcurrent && !queue.isEmpty()) {
+                    Attempt attempt = queue.poll();
+                    if (start(attempt, selector)) {
+                        active.add(attempt);
+                    }
+                }
+                if (active.isEmpty()) {
+                    continue; // Todos los intentos fallaron al conectar: no hay nada que esperar en el selector
+                }
+
+                long nextDeadline = Long.MAX_VALUE;
+                for (Attempt attempt : active) {
+                    nextDeadline = Math.min(nextDeadline, attempt.deadline);
+                }
+                long waitMs = TimeUnit.NANOSECONDS.toMillis(nextDeadline - System.nanoTime());
+                selector.select(Math.max(1, Math.min(waitMs, timeoutMs)));
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    handle(key, (Attempt) key.attachment());
+                }
+                selector.selectedKeys().clear();
+
+                long now = System.nanoTime();
+                for (Attempt attempt : active) {
+                    if (attempt.outcome == null && now - attempt.deadline >= 0) {
+                        attempt.finish(Outcome.TIMEOUT, "Sin respuesta en " + timeoutMs + " ms");
+                    }
+                }
+                active.removeIf(attempt -> attempt.outcome != null);
+            }
+        }
+    }
+
+    private boolean start(Attempt attempt, Selector selector) {
+        try {
+            attempt.channel = SocketChannel.open();
+            attempt.channel.configureBlocking(false);
+            attempt.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            attempt.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            attempt.connected = attempt.channel.connect(new InetSocketAddress(attempt.host, attempt.port));
+            attempt.channel.register(selector, attempt.connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, attempt);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            // IllegalArgumentException: host que no se resuelve (UnresolvedAddressException) o dirección no válida
+            attempt.finish(Outcome.CLOSED, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            return false;
+        }
+    }
+
+    private static void handle(SelectionKey key, Attempt attempt) {
+        if (attempt.outcome != null || !key.isValid()) {
+            return;
+        }
+        try {
+            if (key.isConnectable()) {
+                attempt.connected = attempt.channel.finishConnect();
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (key.isWritable()) {
+                attempt.channel.write(attempt.request);
+                if (!attempt.request.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+            } else if (key.isReadable()) {
+                int read = attempt.channel.read(attempt.response);
+                if (read < 0 || isComplete(attempt.response)) {
+                    parse(attempt);
+                }
+            }
+        } catch (IOException e) {
+            // Conexión rechazada o cortada: si ya había respondido algo, se interpreta lo recibido
+            if (attempt.response.position() > 0) {
+                parse(attempt);
+            } else {
+                attempt.finish(Outcome.CLOSED, e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isComplete(ByteBuffer response) {
+        int length = response.position();
+        if (length > 0 && response.get(0) != 0x03) {
+            return true; // No es TPKT: no hace falta esperar más
+        }
+        return length >= 4 && length >= ((response.get(2) & 0xff) << 8 | (response.get(3) & 0xff))
+                || !response.hasRemaining();
+    }
+
+    /**
+     * Interpreta el X.224 Connection Confirm: RDP_NEG_RSP (tipo 2) o RDP_NEG_FAILURE (tipo 3) tras los 7 bytes
+     * de cabecera X.224, con el protocolo elegido o el código de fallo en los 4 últimos bytes (little-endian).
+     */
+    private static void parse(Attempt attempt) {
+        ByteBuffer b = attempt.response;
+        int length = b.position();
+        if (length < 11 || b.get(0) != 0x03 || (b.get(5) & 0xf0) != 0xd0) {
+            attempt.finish(Outcome.NO_RDP, null);
+            return;
+        }
+        int tpktLength = (b.get(2) & 0xff) << 8 | (b.get(3) & 0xff);
+        if (tpktLength < 19 || length < 19) {
+            attempt.finish(Outcome.LEGACY, null);
+            return;
+        }
+        attempt.value = (b.get(15) & 0xff) | (b.get(16) & 0xff) << 8 | (b.get(17) & 0xff) << 16 | (b.get(18) & 0xff) << 24;
+        switch (b.get(11)) {
+            case 0x02:
+                attempt.finish(Outcome.SELECTED, null);
+                break;
+            case 0x03:
+                attempt.finish(Outcome.FAILURE, null);
+                break;
+            default:
+                attempt.finish(Outcome.NO_RDP, null);
+                break;
+        }
+    }
+}
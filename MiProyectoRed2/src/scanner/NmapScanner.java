@@ -1,142 +1,172 @@
 package com.miproyectored.scanner;
 
+import com.miproyectored.util.ProcessRunner;
+
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 public class NmapScanner {
     private static final String NMAP_COMMAND = "nmap";
     private static final int TIMEOUT = 60000; // 60 segundos de timeout
+    private static final long PORT_SCAN_TIMEOUT = TimeUnit.MINUTES.toMillis(30); // Para todos los hosts juntos
+    private static final String HOST_TIMEOUT = "15m"; // Nmap abandona un host que tarde más que esto
 
     public static class ScanResult {
         private String ip;
         private List<Integer> openPorts;
         private String hostName;
+        private Map<Integer, String> services;
 
         public ScanResult(String ip) {
             this.ip = ip;
             this.openPorts = new ArrayList<>();
+            this.services = new LinkedHashMap<>();
         }
 
         public void addPort(int port) {
             openPorts.add(port);
         }
 
+        public void addService(int port, String service) {
+            services.put(port, service);
+        }
+
         public String getIp() { return ip; }
         public List<Integer> getOpenPorts() { return openPorts; }
         public String getHostName() { return hostName; }
         public void setHostName(String hostName) { this.hostName = hostName; }
+        /** Puerto -> servicio según Nmap (ej. "http (Microsoft HTTPAPI httpd 2.0)"), solo puertos abiertos. */
+        public Map<Integer, String> getServices() { return services; }
     }
 
+    /**
+     * Escanea una red en dos fases: primero descubre todos los hosts activos (-sn) y después lanza un único
+     * escaneo de puertos (-p-) sobre la lista completa, para que Nmap paralelice entre hosts.
+     */
     public static List<ScanResult> scanNetwork(String network) {
         List<ScanResult> results = new ArrayList<>();
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder(NMAP_COMMAND, "-sn", "-T4", "--max-retries", "2", network);
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
-            
-            // Agregar timeout
-            if (!process.waitFor(TIMEOUT, TimeUnit.MILLISECONDS)) {
-                process.destroyForcibly();
-                throw new TimeoutException("El escaneo de red excedió el tiempo límite");
-            }
-            
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-
-            String line;
-            ScanResult currentResult = null;
-
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("Nmap scan report for")) {
-                    String ip = line.substring(line.lastIndexOf(" ") + 1);
-                    currentResult = new ScanResult(ip);
-                    results.add(currentResult);
-                } else if (line.contains("Host is up") && currentResult != null) {
-                    // Realizar un escaneo de puertos para hosts activos
-                    scanPorts(currentResult);
-                }
+            // Fase 1: descubrimiento de hosts (los hosts se parsean según Nmap los escribe)
+            runNmap(Arrays.asList(NMAP_COMMAND, "-sn", "-T4", "--max-retries", "2", "-oX", "-", network),
+                    null, TIMEOUT, results::add);
+            System.out.println("Hosts activos descubiertos en " + network + ": " + results.size());
+
+            // Fase 2: escaneo de puertos de todos los hosts activos en una sola invocación
+            if (!results.isEmpty()) {
+                scanPorts(results);
             }
-
-            process.waitFor();
-            reader.close();
-
         } catch (TimeoutException e) {
             System.err.println("Timeout durante el escaneo: " + e.getMessage());
-        } catch (IOException | InterruptedException e) {
+        } catch (IOException e) {
             System.err.println("Error durante el escaneo: " + e.getMessage());
             e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Escaneo interrumpido: " + e.getMessage());
         }
 
         return results;
     }
 
-    private static void scanPorts(ScanResult result) {
+    /**
+     * Escanea los puertos de hosts ya conocidos por otra vía (ej. la caché ARP de un router), sin la fase de
+     * descubrimiento: pueden no responder al ping de Nmap y estar activos igualmente.
+     */
+    public static List<ScanResult> scanHosts(List<String> ips) {
+        List<ScanResult> results = new ArrayList<>();
+        ips.forEach(ip -> results.add(new ScanResult(ip)));
+        if (results.isEmpty()) {
+            return results;
+        }
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder(
-                NMAP_COMMAND, "-p-", "-T4", result.getIp()
-            );
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
-
-            BufferedReader reader = new BufferedReader(
-                new InputStreamReader(process.getInputStream())
-            );
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("open")) {
-                    String[] parts = line.split("/");
-                    try {
-                        int port = Integer.parseInt(parts[0].trim());
-                        result.addPort(port);
-                    } catch (NumberFormatException e) {
-                        // Ignorar líneas que no contengan números de puerto válidos
+            scanPorts(results);
+        } catch (TimeoutException e) {
+            System.err.println("Timeout durante el escaneo: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error durante el escaneo: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Escaneo interrumpido: " + e.getMessage());
+        }
+        return results;
+    }
+
+    /**
+     * Escanea todos los puertos TCP de los hosts indicados con una única ejecución de Nmap. La lista de objetivos
+     * se pasa por la entrada estándar (-iL -) para no depender del límite de longitud de la línea de comandos.
+     */
+    private static void scanPorts(List<ScanResult> hosts) throws IOException, InterruptedException, TimeoutException {
+        StringBuilder targets = new StringBuilder();
+        Map<String, ScanResult> hostsByIp = new LinkedHashMap<>();
+        for (ScanResult host : hosts) {
+            targets.append(host.getIp()).append('\n');
+            hostsByIp.put(host.getIp(), host);
+        }
+
+        System.out.println("Escaneando puertos de " + hosts.size() + " hosts en una sola ejecución de Nmap...");
+        runNmap(Arrays.asList(NMAP_COMMAND, "-p-", "-T4", "-n", "--host-timeout", HOST_TIMEOUT, "-oX", "-", "-iL", "-"),
+                targets.toString(), PORT_SCAN_TIMEOUT, scanned -> {
+                    // Cada host llega en cuanto Nmap termina con él, sin esperar al resto
+                    ScanResult host = hostsByIp.get(scanned.getIp());
+                    if (host != null) {
+                        scanned.getOpenPorts().forEach(host::addPort);
+                        scanned.getServices().forEach(host::addService);
+                        System.out.println("Puertos abiertos en " + host.getIp() + ": " + scanned.getOpenPorts());
                     }
-                }
-            }
+                });
+    }
 
-            process.waitFor();
-            reader.close();
+    /**
+     * Ejecuta Nmap con salida XML (-oX -) y entrega cada host a hostConsumer según se parsea la salida, en streaming
+     * (ver {@link NmapXmlParser}). stdout y stderr se leen mientras el proceso se ejecuta (ver {@link ProcessRunner});
+     * si se supera el tiempo límite se terminan Nmap y sus procesos hijos. Los hosts entregados antes de un error o
+     * timeout se conservan.
+     */
+    private static void runNmap(List<String> command, String stdin, long timeoutMs, Consumer<ScanResult> hostConsumer)
+            throws IOException, InterruptedException, TimeoutException {
+        ProcessRunner.Result result = new ProcessRunner(command)
+                .setTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .setStdin(stdin)
+                .setStdoutConsumer(in -> {
+                    try {
+                        NmapXmlParser.parse(in, hostConsumer);
+                    } catch (XMLStreamException e) {
+                        throw new IOException("Salida XML de Nmap no válida: " + e.getMessage(), e);
+                    }
+                })
+                .setStderrConsumer(ProcessRunner.lines(System.err::println)) // Los avisos de Nmap se ven en consola
+                .run();
+        System.out.println("Ejecución de Nmap: " + result);
 
-        } catch (IOException | InterruptedException e) {
-            System.err.println("Error durante el escaneo de puertos: " + e.getMessage());
-            e.printStackTrace();
+        if (result.isTimedOut()) {
+            throw new TimeoutException("Nmap excedió el tiempo límite de " + timeoutMs / 1000 + " segundos");
+        }
+        if (result.getExitCode() != 0) {
+            throw new IOException("Nmap terminó con código de salida " + result.getExitCode());
         }
     }
 
+    /**
+     * Parsea la salida XML de Nmap (-oX) ya almacenada en memoria.
+     * @return Las IPs de los hosts activos.
+     */
     public static List<String> parseResults(String nmapOutput) {
         List<String> activeHosts = new ArrayList<>();
         try {
-            // Parsear la salida XML de Nmap
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document doc = builder.parse(new InputSource(new StringReader(nmapOutput)));
-
-            // Obtener todos los hosts
-            NodeList hostList = doc.getElementsByTagName("host");
-            
-            // Procesar cada host
-            for (int i = 0; i < hostList.getLength(); i++) {
-                Node hostNode = hostList.item(i);
-                if (hostNode.getNodeType() == Node.ELEMENT_NODE) {
-                    Element hostElement = (Element) hostNode;
-                    NodeList addressList = hostElement.getElementsByTagName("address");
-                    
-                    // Obtener la dirección IP
-                    for (int j = 0; j < addressList.getLength(); j++) {
-                        Element addressElement = (Element) addressList.item(j);
-                        if (addressElement.getAttribute("addrtype").equals("ipv4")) {
-                            activeHosts.add(addressElement.getAttribute("addr"));
-                            break;
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
+            NmapXmlParser.parse(new ByteArrayInputStream(nmapOutput.getBytes(StandardCharsets.UTF_8)),
+                    host -> activeHosts.add(host.getIp()));
+        } catch (XMLStreamException e) {
             System.err.println("Error al parsear resultados de Nmap: " + e.getMessage());
         }
         return activeHosts;
     }
-}
\ No newline at end of file
+}
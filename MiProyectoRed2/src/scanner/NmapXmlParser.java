@@ -0,0 +1,140 @@
+package com.miproyectored.scanner;
+
+import com.miproyectored.scanner.NmapScanner.ScanResult;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Parser en streaming (StAX) de la salida XML de Nmap (-oX). Lee el XML según llega del proceso y entrega cada
+ * host activo en cuanto se cierra su elemento &lt;host&gt;, sin construir el documento completo en memoria.
+ * Sirve tanto para el descubrimiento (-sn, solo direcciones y nombres) como para el escaneo de puertos.
+ */
+public class NmapXmlParser {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Nmap incluye <!DOCTYPE nmaprun>: no se procesan DTDs ni entidades externas
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Parsea el XML y llama a hostConsumer con cada host cuyo estado es "up" y tiene dirección IPv4.
+     * Solo se incluyen los puertos en estado "open" (con su servicio, si Nmap lo indica) y el primer nombre de host.
+     * @return El número de hosts entregados.
+     */
+    public static int parse(InputStream in, Consumer<ScanResult> hostConsumer) throws XMLStreamException {
+        XMLStreamReader reader = FACTORY.createXMLStreamReader(in);
+        int count = 0;
+        try {
+            // Datos del host en curso: se crea el ScanResult al cerrar <host>
+            boolean inHost = false;
+            boolean hostUp = true;
+            String ip = null;
+            String hostName = null;
+            List<Integer> openPorts = new ArrayList<>();
+            Map<Integer, String> services = new LinkedHashMap<>();
+            String portId = null; // Puerto cuyo <state> se está esperando
+            int openPort = -1;    // Puerto abierto cuyo <service> se está esperando
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "host":
+                            inHost = true;
+                            hostUp = true;
+                            ip = null;
+                            hostName = null;
+                            openPorts.clear();
+                            services.clear();
+                            break;
+                        case "status":
+                            hostUp = "up".equals(reader.getAttributeValue(null, "state"));
+                            break;
+                        case "address":
+                            if (inHost && ip == null && "ipv4".equals(reader.getAttributeValue(null, "addrtype"))) {
+                                ip = reader.getAttributeValue(null, "addr");
+                            }
+                            break;
+                        case "hostname":
+                            String name = reader.getAttributeValue(null, "name");
+                            if (inHost && hostName == null && name != null && !name.isEmpty()) {
+                                hostName = name;
+                            }
+                            break;
+                        case "port":
+                            portId = reader.getAttributeValue(null, "portid");
+                            break;
+                        case "state":
+                            if (inHost && portId != null && "open".equals(reader.getAttributeValue(null, "state"))) {
+                                try {
+                                    openPort = Integer.parseInt(portId);
+                                    openPorts.add(openPort);
+                                } catch (NumberFormatException e) {
+                                    // Ignorar puertos con un identificador no válido
+                                }
+                            }
+                            break;
+                        case "service":
+                            if (inHost && openPort >= 0) {
+                                services.put(openPort, describeService(reader));
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String element = reader.getLocalName();
+                    if (element.equals("port")) {
+                        portId = null;
+                        openPort = -1;
+                    } else if (element.equals("host")) {
+                        if (hostUp && ip != null) {
+                            ScanResult result = new ScanResult(ip);
+                            result.setHostName(hostName);
+                            openPorts.forEach(result::addPort);
+                            services.forEach(result::addService);
+                            hostConsumer.accept(result);
+                            count++;
+                        }
+                        inHost = false;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+
+    /**
+     * "nombre (producto versión)" a partir de los atributos de &lt;service&gt;, ej. "http (Microsoft HTTPAPI httpd 2.0)".
+     * Sin -sV Nmap solo da el nombre según el número de puerto.
+     */
+    private static String describeService(XMLStreamReader reader) {
+        String name = reader.getAttributeValue(null, "name");
+        String tunnel = reader.getAttributeValue(null, "tunnel"); // "ssl" en https detectado por -sV
+        StringBuilder details = new StringBuilder();
+        for (String attribute : new String[]{"product", "version", "extrainfo"}) {
+            String value = reader.getAttributeValue(null, attribute);
+            if (value != null && !value.isEmpty()) {
+                details.append(details.length() > 0 ? " " : "").append(value);
+            }
+        }
+        String service = (tunnel != null ? tunnel + "/" : "") + (name != null ? name : "unknown");
+        return details.length() > 0 ? service + " (" + details + ")" : service;
+    }
+}
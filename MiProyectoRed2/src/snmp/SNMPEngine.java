@@ -0,0 +1,256 @@
+package com.miproyectored.snmp;
+
+import org.snmp4j.CommunityTarget;
+import org.snmp4j.MessageDispatcherImpl;
+import org.snmp4j.PDU;
+import org.snmp4j.ScopedPDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.UserTarget;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.MPv1;
+import org.snmp4j.mp.MPv2c;
+import org.snmp4j.mp.MPv3;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.security.AuthMD5;
+import org.snmp4j.security.AuthSHA;
+import org.snmp4j.security.Priv3DES;
+import org.snmp4j.security.SecurityLevel;
+import org.snmp4j.security.SecurityProtocols;
+import org.snmp4j.security.USM;
+import org.snmp4j.security.UsmTimeEntry;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.UdpAddress;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
+import org.snmp4j.util.DefaultPDUFactory;
+import org.snmp4j.util.TableUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sesión SNMP compartida: un único {@link Snmp} con un único socket UDP para todas las consultas del proceso.
+ *
+ * Las peticiones son asíncronas ({@link ResponseListener}): enviar no espera la respuesta, así que puede haber
+ * miles pendientes a la vez y una red entera se consulta en el tiempo de un solo timeout. Las respuestas se
+ * emparejan con sus peticiones por el request-id del PDU, y snmp4j se encarga de los reintentos.
+ *
+ * Con un usuario SNMPv3 ({@link #setUser}) todas las consultas van por v3 en modo authPriv. El engine ID y los
+ * boots/time de cada agente se pueden guardar entre ejecuciones ({@link #setEngineCache}) para no repetir el
+ * descubrimiento; si los datos guardados ya no valen (el agente responde con notInTimeWindow o unknownEngineID,
+ * o no responde a una petición hecha con ellos) se descartan, se vuelve a descubrir el agente y se reenvía la
+ * petición una vez.
+ */
+public class SNMPEngine implements Closeable {
+
+    private static SNMPEngine defaultEngine;
+
+    private final DefaultUdpTransportMapping transport;
+    private final Snmp snmp;
+    private final USM usm;
+    private final MPv3 mpv3;
+    private volatile SNMPv3User user;
+    private volatile SNMPEngineCache engineCache;
+    // Agentes con engine ID y boots/time sacados de la caché que aún no han respondido en esta ejecución
+    private final Set<Address> unconfirmed = ConcurrentHashMap.newKeySet();
+
+    public SNMPEngine() throws IOException {
+        SecurityProtocols protocols = SecurityProtocols.getInstance().addDefaultProtocols();
+        // snmp4j ya no incluye SHA-1, MD5 ni 3DES entre los protocolos por defecto, pero muchos equipos solo tienen esos
+        protocols.addAuthenticationProtocol(new AuthSHA());
+        protocols.addAuthenticationProtocol(new AuthMD5());
+        protocols.addPrivacyProtocol(new Priv3DES());
+        this.usm = new USM(protocols, new OctetString(MPv3.createLocalEngineID()), 0);
+        this.mpv3 = new MPv3(usm);
+
+        MessageDispatcherImpl dispatcher = new MessageDispatcherImpl();
+        dispatcher.addMessageProcessingModel(new MPv1());
+        dispatcher.addMessageProcessingModel(new MPv2c());
+        dispatcher.addMessageProcessingModel(mpv3);
+        this.transport = new DefaultUdpTransportMapping();
+        this.snmp = new Snmp(dispatcher, transport);
+        transport.listen();
+    }
+
+    /**
+     * Motor compartido por todo el proceso (se abre la primera vez que se usa).
+     */
+    public static synchronized SNMPEngine getDefault() throws IOException {
+        if (defaultEngine == null) {
+            defaultEngine = new SNMPEngine();
+        }
+        return defaultEngine;
+    }
+
+    /**
+     * Usa SNMPv3 con este usuario en todas las consultas (las comunidades v2c se ignoran).
+     */
+    public void setUser(SNMPv3User user) {
+        usm.addUser(new OctetString(user.getSecurityName()), user.toUsmUser());
+        this.user = user;
+    }
+
+    /**
+     * Carga en la sesión los engine ID y boots/time guardados y mantiene la caché al día con cada respuesta v3
+     * (hay que guardarla con {@link SNMPEngineCache#save()} al terminar).
+     */
+    public void setEngineCache(SNMPEngineCache cache) {
+        for (Map.Entry<String, SNMPEngineCache.Entry> entry : cache.getEntries().entrySet()) {
+            UdpAddress address = new UdpAddress(entry.getKey());
+            OctetString engineId = OctetString.fromHexString(entry.getValue().getEngineId());
+            mpv3.addEngineID(address, engineId);
+            usm.getTimeTable().addEntry(new UsmTimeEntry(engineId, entry.getValue().getEngineBoots(),
+                    entry.getValue().estimatedEngineTime()));
+            unconfirmed.add(address);
+        }
+        this.engineCache = cache;
+    }
+
+    /**
+     * Destino para consultar un agente: SNMPv3 authPriv si hay usuario v3, si no v2c con la comunidad.
+     */
+    public Target<UdpAddress> target(String ipAddress, int port, String community, long timeoutMs, int retries) {
+        SNMPv3User v3User = user;
+        if (v3User == null) {
+            return communityTarget(ipAddress, port, community, timeoutMs, retries);
+        }
+        UserTarget<UdpAddress> target = new UserTarget<>();
+        target.setVersion(SnmpConstants.version3);
+        target.setSecurityLevel(SecurityLevel.AUTH_PRIV);
+        target.setSecurityName(new OctetString(v3User.getSecurityName()));
+        target.setAddress(new UdpAddress(ipAddress + "/" + port));
+        target.setTimeout(timeoutMs);
+        target.setRetries(retries);
+        return target;
+    }
+
+    public static CommunityTarget<UdpAddress> communityTarget(String ipAddress, int port, String community,
+                                                              long timeoutMs, int retries) {
+        CommunityTarget<UdpAddress> target = new CommunityTarget<>();
+        target.setCommunity(new OctetString(community));
+        target.setVersion(SnmpConstants.version2c);
+        target.setAddress(new UdpAddress(ipAddress + "/" + port));
+        target.setTimeout(timeoutMs);
+        target.setRetries(retries);
+        return target;
+    }
+
+    /**
+     * GET de todos los OIDs en un solo PDU.
+     * @return Futuro con el PDU de respuesta, o null si el agente no respondió tras los reintentos.
+     */
+    public CompletableFuture<PDU> get(Target<?> target, List<OID> oids) {
+        PDU pdu = target.getVersion() == SnmpConstants.version3 ? new ScopedPDU() : new PDU();
+        pdu.setType(PDU.GET);
+        for (OID oid : oids) {
+            pdu.add(new VariableBinding(oid));
+        }
+        return send(pdu, target);
+    }
+
+    /**
+     * Envía un PDU sin esperar la respuesta.
+     * @return Futuro con el PDU de respuesta, o null si el agente no respondió tras los reintentos. Termina con
+     *         excepción si el envío falla. En SNMPv3, si el agente no acepta la petición, el PDU es un REPORT
+     *         con el contador usmStats del motivo.
+     */
+    public <A extends Address> CompletableFuture<PDU> send(PDU pdu, Target<A> target) {
+        if (target.getVersion() != SnmpConstants.version3) {
+            return sendOnce(pdu, target);
+        }
+        A address = target.getAddress();
+        PDU retry = (PDU) pdu.clone(); // snmp4j cambia el request-id del PDU enviado
+        return sendOnce(pdu, target).thenCompose(response -> {
+            boolean staleEngine = response == null ? unconfirmed.remove(address) : needsRediscovery(response);
+            if (!staleEngine) {
+                remember(address, response);
+                return CompletableFuture.completedFuture(response);
+            }
+            // Agente reiniciado o reemplazado: sin engine ID ni boots/time snmp4j lo vuelve a descubrir
+            forget(address);
+            return sendOnce(retry, target).thenApply(retried -> {
+                remember(address, retried);
+                return retried;
+            });
+        });
+    }
+
+    private <A extends Address> CompletableFuture<PDU> sendOnce(PDU pdu, Target<A> target) {
+        CompletableFuture<PDU> future = new CompletableFuture<>();
+        try {
+            snmp.send(pdu, target, null, new ResponseListener() {
+                @Override
+                public <T extends Address> void onResponse(ResponseEvent<T> event) {
+                    // Sin cancel() snmp4j seguiría esperando (y reintentando) esta petición
+                    ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+                    if (event.getError() != null) {
+                        future.completeExceptionally(event.getError());
+                    } else {
+                        future.complete(event.getResponse());
+                    }
+                }
+            });
+        } catch (IOException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static boolean needsRediscovery(PDU response) {
+        if (response.getType() != PDU.REPORT || response.size() == 0) {
+            return false;
+        }
+        OID reason = response.get(0).getOid();
+        return reason.startsWith(SnmpConstants.usmStatsNotInTimeWindows)
+                || reason.startsWith(SnmpConstants.usmStatsUnknownEngineIDs);
+    }
+
+    private void remember(Address address, PDU response) {
+        if (response == null || response.getType() == PDU.REPORT) {
+            return;
+        }
+        unconfirmed.remove(address);
+        SNMPEngineCache cache = engineCache;
+        OctetString engineId = mpv3.getEngineID(address);
+        UsmTimeEntry time = engineId != null ? usm.getTimeTable().getTime(engineId) : null;
+        if (cache != null && time != null) {
+            cache.put(address.toString(), engineId.toHexString(), time.getEngineBoots(), time.getLatestReceivedTime());
+        }
+    }
+
+    private void forget(Address address) {
+        unconfirmed.remove(address);
+        OctetString engineId = mpv3.removeEngineID(address);
+        if (engineId != null) {
+            usm.removeEngineTime(engineId);
+        }
+        SNMPEngineCache cache = engineCache;
+        if (cache != null) {
+            cache.remove(address.toString());
+        }
+    }
+
+    /**
+     * Recorredor de tablas con GETBULK sobre esta sesión.
+     * @param maxRepetitions Filas que se piden en cada GETBULK.
+     */
+    public TableUtils tableUtils(int maxRepetitions) {
+        TableUtils tableUtils = new TableUtils(snmp, new DefaultPDUFactory(PDU.GETBULK));
+        tableUtils.setMaxNumRowsPerPDU(maxRepetitions);
+        return tableUtils;
+    }
+
+    @Override
+    public void close() throws IOException {
+        snmp.close();
+    }
+}
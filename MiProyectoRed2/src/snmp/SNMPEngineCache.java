@@ -0,0 +1,86 @@
+package com.miproyectored.snmp;
+
+import com.miproyectored.util.JsonFileStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Engine ID, engineBoots y engineTime de cada agente SNMPv3, guardados entre ejecuciones.
+ *
+ * Sin estos datos cada agente cuesta dos viajes de descubrimiento (engine ID y después boots/time) antes de la
+ * primera petición real. Con ellos la petición sale directamente; el tiempo del agente se estima sumando al
+ * guardado el tiempo transcurrido desde entonces. Si el agente se ha reiniciado o ya no es el mismo, lo
+ * detecta {@link SNMPEngine} y vuelve a descubrirlo.
+ *
+ * Se guarda como JSON, con la dirección del agente ("ip/puerto") como clave; el fichero se reescribe entero al
+ * guardar.
+ */
+public class SNMPEngineCache {
+
+    /**
+     * Datos de un agente. Bean con getters y setters para Jackson.
+     */
+    public static class Entry {
+        private String engineId;
+        private int engineBoots;
+        private int engineTime;
+        private long savedAt;
+
+        /** Engine ID en hexadecimal separado por ':'. */
+        public String getEngineId() { return engineId; }
+        public void setEngineId(String engineId) { this.engineId = engineId; }
+        public int getEngineBoots() { return engineBoots; }
+        public void setEngineBoots(int engineBoots) { this.engineBoots = engineBoots; }
+        /** engineTime del agente (segundos desde su último arranque) en el momento de guardarlo. */
+        public int getEngineTime() { return engineTime; }
+        public void setEngineTime(int engineTime) { this.engineTime = engineTime; }
+        /** Cuándo (epoch ms) se tomó engineTime. */
+        public long getSavedAt() { return savedAt; }
+        public void setSavedAt(long savedAt) { this.savedAt = savedAt; }
+
+        /** engineTime estimado ahora, suponiendo que el agente no se ha reiniciado. */
+        int estimatedEngineTime() {
+            long elapsed = Math.max(0, (System.currentTimeMillis() - savedAt) / 1000);
+            return (int) Math.min(Integer.MAX_VALUE, engineTime + elapsed);
+        }
+    }
+
+    private final JsonFileStore<Entry> entries;
+
+    private SNMPEngineCache(JsonFileStore<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Carga la caché del fichero indicado; si no existe se empieza vacía.
+     */
+    public static SNMPEngineCache load(Path file) throws IOException {
+        return new SNMPEngineCache(JsonFileStore.load(file, Entry.class));
+    }
+
+    public Map<String, Entry> getEntries() {
+        return entries.getEntries();
+    }
+
+    public void put(String address, String engineId, int engineBoots, int engineTime) {
+        Entry entry = new Entry();
+        entry.engineId = engineId;
+        entry.engineBoots = engineBoots;
+        entry.engineTime = engineTime;
+        entry.savedAt = System.currentTimeMillis();
+        entries.put(address, entry);
+    }
+
+    public void remove(String address) {
+        entries.remove(address);
+    }
+
+    /**
+     * Escribe la caché si ha cambiado.
+     */
+    public void save() throws IOException {
+        entries.save();
+    }
+}
@@ -1,25 +1,38 @@
 package com.miproyectored.snmp;
 
-import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
-import org.snmp4j.Snmp;
-import org.snmp4j.TransportMapping;
-import org.snmp4j.event.ResponseEvent;
-import org.snmp4j.mp.SnmpConstants;
 import org.snmp4j.smi.*;
-import org.snmp4j.transport.DefaultUdpTransportMapping;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class SNMPHandler {
-    private static final int SNMP_PORT = 161;
+    static final int SNMP_PORT = 161;
     private static final int TIMEOUT = 1000;
     private static final int RETRIES = 2;
 
+    // OIDs comunes para obtener información del dispositivo
+    private static final Map<String, OID> SYSTEM_OIDS = new LinkedHashMap<>();
+    private static final Map<OID, String> OID_NAMES = new HashMap<>();
+    static {
+        SYSTEM_OIDS.put("sysDescr", new OID(".1.3.6.1.2.1.1.1.0"));      // Descripción del sistema
+        SYSTEM_OIDS.put("sysUpTime", new OID(".1.3.6.1.2.1.1.3.0"));    // Tiempo de actividad
+        SYSTEM_OIDS.put("sysContact", new OID(".1.3.6.1.2.1.1.4.0"));   // Contacto del sistema
+        SYSTEM_OIDS.put("sysName", new OID(".1.3.6.1.2.1.1.5.0"));      // Nombre del sistema
+        SYSTEM_OIDS.put("sysLocation", new OID(".1.3.6.1.2.1.1.6.0"));  // Ubicación del sistema
+        SYSTEM_OIDS.forEach((name, oid) -> OID_NAMES.put(oid, name));
+    }
+
     public static class SNMPResult {
         private String ipAddress;
         private Map<String, String> deviceInfo;
+        private SNMPTables tables;
 
         public SNMPResult(String ipAddress) {
             this.ipAddress = ipAddress;
@@ -32,80 +45,62 @@ public class SNMPHandler {
 
         public String getIpAddress() { return ipAddress; }
         public Map<String, String> getDeviceInfo() { return deviceInfo; }
+        /** Tablas de interfaces, ARP, bridge y LLDP (null si no se recorrieron, ver {@link SNMPTableWalker}). */
+        public SNMPTables getTables() { return tables; }
+        public void setTables(SNMPTables tables) { this.tables = tables; }
     }
 
+    /**
+     * Consulta los OIDs de sistema en un solo PDU por la sesión compartida ({@link SNMPEngine}) y espera la
+     * respuesta.
+     */
     public static SNMPResult getDeviceInfo(String ipAddress, String community) {
-        SNMPResult result = new SNMPResult(ipAddress);
+        return getDeviceInfoAsync(ipAddress, community).join();
+    }
 
+    /**
+     * Como {@link #getDeviceInfo}, sin esperar: se pueden lanzar las consultas de todos los hosts a la vez.
+     * El futuro nunca termina con excepción; los errores se guardan en el resultado.
+     */
+    public static CompletableFuture<SNMPResult> getDeviceInfoAsync(String ipAddress, String community) {
+        SNMPResult result = new SNMPResult(ipAddress);
         try {
-            TransportMapping transport = new DefaultUdpTransportMapping();
-            Snmp snmp = new Snmp(transport);
-            transport.listen();
-
-            // Configurar el target
-            CommunityTarget target = new CommunityTarget();
-            target.setCommunity(new OctetString(community));
-            target.setVersion(SnmpConstants.version2c);
-            target.setAddress(new UdpAddress(ipAddress + "/" + SNMP_PORT));
-            target.setTimeout(TIMEOUT);
-            target.setRetries(RETRIES);
-
-            // OIDs comunes para obtener información del dispositivo
-            Map<String, String> oids = new HashMap<>();
-            oids.put("sysDescr", ".1.3.6.1.2.1.1.1.0");      // Descripción del sistema
-            oids.put("sysUpTime", ".1.3.6.1.2.1.1.3.0");    // Tiempo de actividad
-            oids.put("sysContact", ".1.3.6.1.2.1.1.4.0");   // Contacto del sistema
-            oids.put("sysName", ".1.3.6.1.2.1.1.5.0");      // Nombre del sistema
-            oids.put("sysLocation", ".1.3.6.1.2.1.1.6.0");  // Ubicación del sistema
-
-            // Consultar cada OID
-            for (Map.Entry<String, String> entry : oids.entrySet()) {
-                PDU pdu = new PDU();
-                pdu.add(new VariableBinding(new OID(entry.getValue())));
-                pdu.setType(PDU.GET);
-
-                ResponseEvent response = snmp.get(pdu, target);
-
-                if (response != null && response.getResponse() != null) {
-                    PDU responsePDU = response.getResponse();
-                    if (responsePDU.getErrorStatus() == PDU.noError) {
-                        String value = responsePDU.getVariableBindings().firstElement().getVariable().toString();
-                        result.addInfo(entry.getKey(), value);
-                    }
-                }
-            }
-
-            snmp.close();
-
-        } catch (Exception e) {
+            List<OID> oids = new ArrayList<>(SYSTEM_OIDS.values());
+            SNMPEngine engine = SNMPEngine.getDefault();
+            return engine.get(engine.target(ipAddress, SNMP_PORT, community, TIMEOUT, RETRIES), oids)
+                    .handle((response, error) -> {
+                        if (error != null) {
+                            System.err.println("Error SNMP para " + ipAddress + ": " + error.getMessage());
+                            result.addInfo("error", error.getMessage());
+                        } else if (response != null && response.getType() == PDU.REPORT) {
+                            // SNMPv3: usuario, claves o nivel de seguridad no aceptados por el agente
+                            String reason = response.size() > 0 ? response.get(0).getOid().toDottedString() : "";
+                            result.addInfo("error", "El agente SNMPv3 rechazó la petición (" + reason + ")");
+                        } else if (response != null && response.getErrorStatus() == PDU.noError) {
+                            for (VariableBinding binding : response.getVariableBindings()) {
+                                String name = OID_NAMES.get(binding.getOid());
+                                // noSuchObject / noSuchInstance: el agente no tiene ese dato
+                                if (name != null && !binding.isException()) {
+                                    result.addInfo(name, binding.getVariable().toString());
+                                }
+                            }
+                        }
+                        return result;
+                    });
+        } catch (IOException e) {
             System.err.println("Error SNMP para " + ipAddress + ": " + e.getMessage());
             result.addInfo("error", e.getMessage());
+            return CompletableFuture.completedFuture(result);
         }
-
-        return result;
     }
 
     public static boolean isSnmpEnabled(String ipAddress, String community) {
         try {
-            TransportMapping transport = new DefaultUdpTransportMapping();
-            Snmp snmp = new Snmp(transport);
-            transport.listen();
-
-            CommunityTarget target = new CommunityTarget();
-            target.setCommunity(new OctetString(community));
-            target.setVersion(SnmpConstants.version2c);
-            target.setAddress(new UdpAddress(ipAddress + "/" + SNMP_PORT));
-            target.setTimeout(TIMEOUT);
-            target.setRetries(1);
-
-            PDU pdu = new PDU();
-            pdu.add(new VariableBinding(new OID(".1.3.6.1.2.1.1.1.0")));
-            pdu.setType(PDU.GET);
-
-            ResponseEvent response = snmp.get(pdu, target);
-            snmp.close();
-
-            return response != null && response.getResponse() != null;
+            SNMPEngine engine = SNMPEngine.getDefault();
+            PDU response = engine.get(engine.target(ipAddress, SNMP_PORT, community, TIMEOUT, 1),
+                    Collections.singletonList(SYSTEM_OIDS.get("sysDescr")))
+                    .join();
+            return response != null;
 
         } catch (Exception e) {
             return false;
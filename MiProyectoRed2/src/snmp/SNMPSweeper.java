@@ -0,0 +1,92 @@
+package com.miproyectored.snmp;
+
+import com.miproyectored.util.NetworkUtils;
+import org.snmp4j.PDU;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.VariableBinding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Barrido SNMP de una subred: un GET de sysDescr a cada dirección del CIDR, todos por el mismo socket UDP
+ * (el de {@link SNMPEngine}) y a un ritmo de paquetes por segundo limitado. Las respuestas se emparejan de forma
+ * asíncrona según llegan, así que el barrido dura lo que tarda en enviarse más un timeout.
+ *
+ * Encuentra dispositivos que solo hablan SNMP (impresoras, switches, SAIs...) y que el escaneo TCP no ve.
+ */
+public class SNMPSweeper {
+
+    private static final OID SYS_DESCR = new OID(".1.3.6.1.2.1.1.1.0");
+
+    private final SNMPEngine engine;
+    private final String community;
+    private final long intervalNanos;
+    private final long timeoutMs;
+    private final int retries;
+
+    /**
+     * @param packetsPerSecond Peticiones nuevas por segundo como máximo (los reintentos de snmp4j van aparte).
+     */
+    public SNMPSweeper(SNMPEngine engine, String community, int packetsPerSecond, long timeoutMs, int retries) {
+        this.engine = engine;
+        this.community = community;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / packetsPerSecond;
+        this.timeoutMs = timeoutMs;
+        this.retries = retries;
+    }
+
+    /**
+     * Barre las direcciones de host del CIDR (ej. "192.168.1.0/24") y espera a las respuestas.
+     * @return Un resultado por agente que respondió (con su sysDescr, si lo dio), en orden de dirección.
+     */
+    public List<SNMPHandler.SNMPResult> sweep(String cidr) {
+        long network = NetworkUtils.parseCidr(cidr);
+        if (network < 0) {
+            throw new IllegalArgumentException("CIDR no válido: " + cidr);
+        }
+
+        List<CompletableFuture<SNMPHandler.SNMPResult>> pending = new ArrayList<>();
+        long[] nextSlot = {System.nanoTime()};
+        NetworkUtils.forEachHost(network, ip -> {
+            long wait;
+            while ((wait = nextSlot[0] - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            nextSlot[0] = Math.max(nextSlot[0], System.nanoTime() - intervalNanos) + intervalNanos;
+
+            String address = NetworkUtils.formatIpv4(ip);
+            pending.add(engine.get(engine.target(address, SNMPHandler.SNMP_PORT, community, timeoutMs, retries),
+                            Collections.singletonList(SYS_DESCR))
+                    .handle((response, error) -> error == null ? toResult(address, response) : null));
+        });
+
+        List<SNMPHandler.SNMPResult> agents = new ArrayList<>();
+        for (CompletableFuture<SNMPHandler.SNMPResult> future : pending) {
+            SNMPHandler.SNMPResult agent = future.join();
+            if (agent != null) {
+                agents.add(agent);
+            }
+        }
+        return agents;
+    }
+
+    private static SNMPHandler.SNMPResult toResult(String address, PDU response) {
+        if (response == null) {
+            return null; // Sin agente (o no acepta la comunidad)
+        }
+        SNMPHandler.SNMPResult agent = new SNMPHandler.SNMPResult(address);
+        if (response.getErrorStatus() == PDU.noError) {
+            for (VariableBinding binding : response.getVariableBindings()) {
+                if (binding.getOid().equals(SYS_DESCR) && !binding.isException()) {
+                    agent.addInfo("sysDescr", binding.getVariable().toString());
+                }
+            }
+        }
+        return agent;
+    }
+}
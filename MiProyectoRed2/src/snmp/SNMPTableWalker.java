@@ -0,0 +1,172 @@
+package com.miproyectored.snmp;
+
+import org.snmp4j.Target;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+import org.snmp4j.util.TableEvent;
+import org.snmp4j.util.TableListener;
+import org.snmp4j.util.TableUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Recorre las tablas SNMP de un dispositivo (interfaces, ARP, reenvío del bridge y LLDP) con GETBULK.
+ *
+ * Cada GETBULK trae hasta maxRepetitions filas de varias columnas a la vez, así que una tabla de cientos de filas
+ * cuesta unas pocas peticiones en lugar de una por celda. Las tablas de un dispositivo se piden todas a la vez
+ * de forma asíncrona por la sesión compartida ({@link SNMPEngine}), y se pueden recorrer muchos dispositivos
+ * en paralelo.
+ */
+public class SNMPTableWalker {
+
+    private static final long TIMEOUT = 2000;
+    private static final int RETRIES = 1;
+
+    // ifTable: ifDescr, ifType, ifSpeed, ifPhysAddress, ifAdminStatus, ifOperStatus
+    private static final OID[] IF_COLUMNS = columns("1.3.6.1.2.1.2.2.1", 2, 3, 5, 6, 7, 8);
+    // ipNetToMediaTable: ifIndex, physAddress, netAddress, type
+    private static final OID[] ARP_COLUMNS = columns("1.3.6.1.2.1.4.22.1", 1, 2, 3, 4);
+    // dot1dTpFdbTable: address, port, status
+    private static final OID[] FDB_COLUMNS = columns("1.3.6.1.2.1.17.4.3.1", 1, 2, 3);
+    // dot1dBasePortTable: ifIndex de cada puerto del bridge
+    private static final OID[] BRIDGE_PORT_COLUMNS = columns("1.3.6.1.2.1.17.1.4.1", 2);
+    // lldpRemTable: chassisId, portId, portDesc, sysName, sysDesc
+    private static final OID[] LLDP_COLUMNS = columns("1.0.8802.1.1.2.1.4.1.1", 5, 7, 8, 9, 10);
+
+    private final SNMPEngine engine;
+    private final String community;
+    private final TableUtils tableUtils;
+
+    /**
+     * @param maxRepetitions Filas por GETBULK. Más filas, menos viajes; demasiadas y la respuesta no cabe en un
+     *                       datagrama UDP y el agente la recorta (con 6 columnas, ~25 es un buen equilibrio).
+     */
+    public SNMPTableWalker(SNMPEngine engine, String community, int maxRepetitions) {
+        this.engine = engine;
+        this.community = community;
+        this.tableUtils = engine.tableUtils(maxRepetitions);
+    }
+
+    /**
+     * Recorre todas las tablas del dispositivo a la vez. El futuro nunca termina con excepción: las tablas que
+     * no se pudieron leer se indican en {@link SNMPTables#getErrors()}.
+     */
+    public CompletableFuture<SNMPTables> walk(String ipAddress) {
+        Target<?> target = engine.target(ipAddress, SNMPHandler.SNMP_PORT, community, TIMEOUT, RETRIES);
+        SNMPTables tables = new SNMPTables();
+        CompletableFuture<List<TableEvent>> interfaces = table(target, IF_COLUMNS, "ifTable", tables);
+        CompletableFuture<List<TableEvent>> arp = table(target, ARP_COLUMNS, "ipNetToMediaTable", tables);
+        CompletableFuture<List<TableEvent>> fdb = table(target, FDB_COLUMNS, "dot1dTpFdbTable", tables);
+        CompletableFuture<List<TableEvent>> bridgePorts = table(target, BRIDGE_PORT_COLUMNS, "dot1dBasePortTable", tables);
+        CompletableFuture<List<TableEvent>> lldp = table(target, LLDP_COLUMNS, "lldpRemTable", tables);
+
+        return CompletableFuture.allOf(interfaces, arp, fdb, bridgePorts, lldp).thenApply(done -> {
+            for (TableEvent row : interfaces.join()) {
+                VariableBinding[] c = row.getColumns();
+                tables.getInterfaces().add(new SNMPTables.Interface(row.getIndex().get(0), text(c[0]), integer(c[1]),
+                        number(c[2]), mac(c[3]), integer(c[4]) == 1, integer(c[5]) == 1));
+            }
+            for (TableEvent row : arp.join()) {
+                VariableBinding[] c = row.getColumns();
+                OID index = row.getIndex(); // ifIndex.a.b.c.d
+                String ip = c[2] != null ? c[2].getVariable().toString()
+                        : index.size() == 5 ? new OID(index.getValue(), 1, 4).toDottedString() : null;
+                tables.getArp().add(new SNMPTables.ArpEntry(integer(c[0]), ip, mac(c[1]), integer(c[3])));
+            }
+            Map<Integer, Integer> ifIndexByBridgePort = new HashMap<>();
+            for (TableEvent row : bridgePorts.join()) {
+                ifIndexByBridgePort.put(row.getIndex().get(0), integer(row.getColumns()[0]));
+            }
+            for (TableEvent row : fdb.join()) {
+                VariableBinding[] c = row.getColumns();
+                int port = integer(c[1]);
+                tables.getForwarding().add(new SNMPTables.ForwardingEntry(mac(c[0]), port,
+                        ifIndexByBridgePort.getOrDefault(port, 0), integer(c[2])));
+            }
+            for (TableEvent row : lldp.join()) {
+                VariableBinding[] c = row.getColumns();
+                OID index = row.getIndex(); // timeMark.localPortNum.index
+                tables.getLldpNeighbors().add(new SNMPTables.LldpNeighbor(index.size() > 1 ? index.get(1) : 0,
+                        text(c[0]), text(c[1]), text(c[2]), text(c[3]), text(c[4])));
+            }
+            return tables;
+        });
+    }
+
+    private CompletableFuture<List<TableEvent>> table(Target<?> target, OID[] columns, String name, SNMPTables tables) {
+        CompletableFuture<List<TableEvent>> future = new CompletableFuture<>();
+        List<TableEvent> rows = new ArrayList<>();
+        tableUtils.getTable(target, columns, new TableListener() {
+            private volatile boolean finished;
+
+            @Override
+            public boolean next(TableEvent event) {
+                rows.add(event);
+                return true;
+            }
+
+            @Override
+            public void finished(TableEvent event) {
+                if (event.isError()) {
+                    // Timeout o error del agente: se conservan las filas recibidas hasta entonces
+                    synchronized (tables) {
+                        tables.getErrors().put(name, event.getErrorMessage());
+                    }
+                }
+                finished = true;
+                future.complete(rows);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return finished;
+            }
+        }, null, null, null);
+        return future;
+    }
+
+    private static OID[] columns(String entry, int... columns) {
+        OID[] oids = new OID[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            oids[i] = new OID(entry + "." + columns[i]);
+        }
+        return oids;
+    }
+
+    private static boolean missing(VariableBinding binding) {
+        return binding == null || binding.isException();
+    }
+
+    private static String text(VariableBinding binding) {
+        if (missing(binding)) {
+            return null;
+        }
+        Variable value = binding.getVariable();
+        // Identificadores LLDP y similares pueden ser binarios (ej. una MAC)
+        if (value instanceof OctetString && !((OctetString) value).isPrintable()) {
+            return ((OctetString) value).toHexString(':');
+        }
+        return value.toString();
+    }
+
+    private static String mac(VariableBinding binding) {
+        if (missing(binding) || !(binding.getVariable() instanceof OctetString)) {
+            return null;
+        }
+        return ((OctetString) binding.getVariable()).toHexString(':');
+    }
+
+    private static int integer(VariableBinding binding) {
+        return missing(binding) ? 0 : binding.getVariable().toInt();
+    }
+
+    private static long number(VariableBinding binding) {
+        return missing(binding) ? 0 : binding.getVariable().toLong();
+    }
+}
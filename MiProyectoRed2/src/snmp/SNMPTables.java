@@ -0,0 +1,124 @@
+package com.miproyectored.snmp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tablas SNMP de un dispositivo de red, ya interpretadas: interfaces (ifTable), caché ARP (ipNetToMediaTable),
+ * tabla de reenvío del bridge (dot1dTpFdbTable) y vecinos LLDP (lldpRemTable). Las MAC van en hexadecimal
+ * separado por ':'.
+ */
+public class SNMPTables {
+
+    public static class Interface {
+        private final int index;
+        private final String description;
+        private final int type;
+        private final long speed;
+        private final String mac;
+        private final boolean adminUp;
+        private final boolean operUp;
+
+        public Interface(int index, String description, int type, long speed, String mac, boolean adminUp, boolean operUp) {
+            this.index = index;
+            this.description = description;
+            this.type = type;
+            this.speed = speed;
+            this.mac = mac;
+            this.adminUp = adminUp;
+            this.operUp = operUp;
+        }
+
+        public int getIndex() { return index; }
+        public String getDescription() { return description; }
+        /** ifType de IANA (6 = ethernetCsmacd, 24 = softwareLoopback...). */
+        public int getType() { return type; }
+        /** Velocidad en bits por segundo. */
+        public long getSpeed() { return speed; }
+        public String getMac() { return mac; }
+        public boolean isAdminUp() { return adminUp; }
+        public boolean isOperUp() { return operUp; }
+    }
+
+    public static class ArpEntry {
+        private final int ifIndex;
+        private final String ip;
+        private final String mac;
+        private final int type;
+
+        public ArpEntry(int ifIndex, String ip, String mac, int type) {
+            this.ifIndex = ifIndex;
+            this.ip = ip;
+            this.mac = mac;
+            this.type = type;
+        }
+
+        public int getIfIndex() { return ifIndex; }
+        public String getIp() { return ip; }
+        public String getMac() { return mac; }
+        /** 2 = inválida, 3 = dinámica, 4 = estática. */
+        public int getType() { return type; }
+    }
+
+    public static class ForwardingEntry {
+        private final String mac;
+        private final int bridgePort;
+        private final int ifIndex;
+        private final int status;
+
+        public ForwardingEntry(String mac, int bridgePort, int ifIndex, int status) {
+            this.mac = mac;
+            this.bridgePort = bridgePort;
+            this.ifIndex = ifIndex;
+            this.status = status;
+        }
+
+        public String getMac() { return mac; }
+        public int getBridgePort() { return bridgePort; }
+        /** Interfaz del puerto del bridge, o 0 si el dispositivo no da la correspondencia. */
+        public int getIfIndex() { return ifIndex; }
+        /** 3 = aprendida, 4 = propia del switch, 5 = estática. */
+        public int getStatus() { return status; }
+    }
+
+    public static class LldpNeighbor {
+        private final int localPort;
+        private final String chassisId;
+        private final String portId;
+        private final String portDescription;
+        private final String systemName;
+        private final String systemDescription;
+
+        public LldpNeighbor(int localPort, String chassisId, String portId, String portDescription,
+                            String systemName, String systemDescription) {
+            this.localPort = localPort;
+            this.chassisId = chassisId;
+            this.portId = portId;
+            this.portDescription = portDescription;
+            this.systemName = systemName;
+            this.systemDescription = systemDescription;
+        }
+
+        public int getLocalPort() { return localPort; }
+        public String getChassisId() { return chassisId; }
+        public String getPortId() { return portId; }
+        public String getPortDescription() { return portDescription; }
+        public String getSystemName() { return systemName; }
+        public String getSystemDescription() { return systemDescription; }
+    }
+
+    private final List<Interface> interfaces = new ArrayList<>();
+    private final List<ArpEntry> arp = new ArrayList<>();
+    private final List<ForwardingEntry> forwarding = new ArrayList<>();
+    private final List<LldpNeighbor> lldpNeighbors = new ArrayList<>();
+    private final Map<String, String> errors = new LinkedHashMap<>();
+
+    public List<Interface> getInterfaces() { return interfaces; }
+    public List<ArpEntry> getArp() { return arp; }
+    public List<ForwardingEntry> getForwarding() { return forwarding; }
+    public List<LldpNeighbor> getLldpNeighbors() { return lldpNeighbors; }
+    /** Tabla -> error, para las tablas que no se pudieron leer enteras. */
+    public Map<String, String> getErrors() { return errors; }
+}
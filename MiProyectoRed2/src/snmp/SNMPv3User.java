@@ -0,0 +1,114 @@
+package com.miproyectored.snmp;
+
+import org.snmp4j.security.AuthHMAC128SHA224;
+import org.snmp4j.security.AuthHMAC192SHA256;
+import org.snmp4j.security.AuthHMAC256SHA384;
+import org.snmp4j.security.AuthHMAC384SHA512;
+import org.snmp4j.security.AuthMD5;
+import org.snmp4j.security.AuthSHA;
+import org.snmp4j.security.Priv3DES;
+import org.snmp4j.security.PrivAES128;
+import org.snmp4j.security.PrivAES192;
+import org.snmp4j.security.PrivAES256;
+import org.snmp4j.security.PrivDES;
+import org.snmp4j.security.UsmUser;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.OctetString;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Usuario SNMPv3 (USM) con autenticación y cifrado (authPriv).
+ *
+ * El fichero tiene una línea con el usuario:
+ * <pre>
+ *   usuario;autenticación;clave-autenticación;cifrado;clave-cifrado
+ *   monitor;SHA256;clave-de-autenticacion;AES128;clave-de-cifrado
+ * </pre>
+ * Autenticación: MD5, SHA, SHA224, SHA256, SHA384 o SHA512. Cifrado: DES, 3DES, AES128, AES192 o AES256.
+ * Las líneas que empiezan por '#' son comentarios.
+ */
+public class SNMPv3User {
+
+    private static final Map<String, OID> AUTH_PROTOCOLS = new HashMap<>();
+    private static final Map<String, OID> PRIV_PROTOCOLS = new HashMap<>();
+
+    static {
+        AUTH_PROTOCOLS.put("MD5", AuthMD5.ID);
+        AUTH_PROTOCOLS.put("SHA", AuthSHA.ID);
+        AUTH_PROTOCOLS.put("SHA224", AuthHMAC128SHA224.ID);
+        AUTH_PROTOCOLS.put("SHA256", AuthHMAC192SHA256.ID);
+        AUTH_PROTOCOLS.put("SHA384", AuthHMAC256SHA384.ID);
+        AUTH_PROTOCOLS.put("SHA512", AuthHMAC384SHA512.ID);
+        PRIV_PROTOCOLS.put("DES", PrivDES.ID);
+        PRIV_PROTOCOLS.put("3DES", Priv3DES.ID);
+        PRIV_PROTOCOLS.put("AES", PrivAES128.ID);
+        PRIV_PROTOCOLS.put("AES128", PrivAES128.ID);
+        PRIV_PROTOCOLS.put("AES192", PrivAES192.ID);
+        PRIV_PROTOCOLS.put("AES256", PrivAES256.ID);
+    }
+
+    private final String securityName;
+    private final OID authProtocol;
+    private final String authPassphrase;
+    private final OID privProtocol;
+    private final String privPassphrase;
+
+    /**
+     * @throws IllegalArgumentException Si el protocolo no es uno de los admitidos.
+     */
+    public SNMPv3User(String securityName, String authProtocol, String authPassphrase,
+                      String privProtocol, String privPassphrase) {
+        this.securityName = securityName;
+        this.authProtocol = protocol(AUTH_PROTOCOLS, authProtocol, "autenticación");
+        this.authPassphrase = authPassphrase;
+        this.privProtocol = protocol(PRIV_PROTOCOLS, privProtocol, "cifrado");
+        this.privPassphrase = privPassphrase;
+    }
+
+    /**
+     * Lee el usuario de la primera línea válida del fichero.
+     */
+    public static SNMPv3User load(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(";", 5);
+                if (fields.length != 5) {
+                    throw new IOException("Usuario SNMPv3 no válido en " + file + " (se esperan 5 campos separados por ';')");
+                }
+                try {
+                    return new SNMPv3User(fields[0].trim(), fields[1].trim(), fields[2], fields[3].trim(), fields[4]);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(e.getMessage() + " en " + file, e);
+                }
+            }
+        }
+        throw new IOException("No hay ningún usuario SNMPv3 en " + file);
+    }
+
+    public String getSecurityName() { return securityName; }
+
+    UsmUser toUsmUser() {
+        return new UsmUser(new OctetString(securityName), authProtocol, new OctetString(authPassphrase),
+                privProtocol, new OctetString(privPassphrase));
+    }
+
+    private static OID protocol(Map<String, OID> protocols, String name, String kind) {
+        OID oid = protocols.get(name.toUpperCase(Locale.ROOT));
+        if (oid == null) {
+            throw new IllegalArgumentException("Protocolo de " + kind + " SNMPv3 no admitido: " + name);
+        }
+        return oid;
+    }
+}
@@ -0,0 +1,207 @@
+package com.miproyectored.ssh;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import com.miproyectored.ssh.SSHHandler.SSHResult;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Recoge el inventario SSH de muchos hosts a la vez, con un número máximo de conexiones simultáneas.
+ *
+ * Cada host se autentica con el perfil de credenciales de su subred (ver {@link SSHCredentials}). Las sesiones
+ * abiertas se guardan por host y se reutilizan en las siguientes recogidas, hasta que se cierra el colector.
+ *
+ * Con un {@link SSHInventoryStore} la recogida es incremental: primero se ejecuta un comando mínimo que da la
+ * huella del sistema y el inventario completo solo se repite si la huella cambió desde la última vez.
+ */
+public class SSHCollector implements Closeable {
+
+    private final JSch jsch = new JSch();
+    private final SSHCredentials credentials;
+    private final ExecutorService executor;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SSHInventoryStore store;
+
+    /**
+     * @param maxConcurrent Hosts que se consultan a la vez como máximo.
+     */
+    public SSHCollector(int maxConcurrent, SSHCredentials credentials) {
+        this(maxConcurrent, credentials, null);
+    }
+
+    /**
+     * @param store Inventarios anteriores para la recogida incremental (null para recoger siempre todo).
+     */
+    public SSHCollector(int maxConcurrent, SSHCredentials credentials, SSHInventoryStore store) {
+        this.credentials = credentials;
+        this.store = store;
+        this.executor = Executors.newFixedThreadPool(maxConcurrent, r -> {
+            Thread t = new Thread(r, "ssh-collector");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Recoge el inventario de todos los hosts y espera a que terminen.
+     * @return host -> resultado, en el mismo orden que hosts.
+     */
+    public Map<String, SSHResult> collectAll(List<String> hosts) throws InterruptedException {
+        Map<String, Future<SSHResult>> futures = new LinkedHashMap<>();
+        for (String host : hosts) {
+            futures.put(host, executor.submit(() -> collect(host)));
+        }
+        Map<String, SSHResult> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Future<SSHResult>> entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                System.err.println("Error recogiendo inventario SSH de " + entry.getKey() + ": " + e.getCause());
+                results.put(entry.getKey(), new SSHResult(entry.getKey()));
+            }
+        }
+        saveStore();
+        return results;
+    }
+
+    /**
+     * Recoge el inventario de un host, reutilizando su sesión si sigue abierta. Los errores se registran y
+     * devuelven un resultado vacío, como {@link SSHHandler#getSystemInfo}.
+     */
+    public SSHResult collect(String host) {
+        SSHResult result = new SSHResult(host);
+        try {
+            try {
+                collectInventory(host, session(host), result);
+            } catch (JSchException e) {
+                // La sesión guardada pudo cerrarse en el servidor: se reintenta una vez con una sesión nueva
+                if (!discard(host)) {
+                    throw e;
+                }
+                collectInventory(host, session(host), result);
+            }
+        } catch (JSchException e) {
+            System.err.println("Error de conexión SSH con " + host + ": " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error leyendo la salida SSH de " + host + ": " + e.getMessage());
+        }
+        return result;
+    }
+
+    private void collectInventory(String host, Session session, SSHResult result) throws JSchException, IOException {
+        if (store == null) {
+            SSHHandler.collectInventory(session, result);
+            return;
+        }
+        SSHInventoryStore.Entry previous = store.get(host);
+
+        // Huella y uptime (cambia siempre y es barato); la primera vez, también todo el inventario en el mismo viaje
+        Map<String, String> commands = new LinkedHashMap<>(SSHHandler.FINGERPRINT_COMMANDS);
+        commands.put("Uptime", SSHHandler.INVENTORY_COMMANDS.get("Uptime"));
+        if (previous == null) {
+            commands.putAll(SSHHandler.INVENTORY_COMMANDS);
+        }
+        Map<String, String> output = SSHHandler.executeBatch(session, commands);
+        String fingerprint = fingerprint(output);
+
+        if (previous != null && fingerprint != null && fingerprint.equals(previous.getFingerprint())) {
+            previous.getInfo().forEach(result::addInfo);
+            result.addInfo("Uptime", output.get("Uptime"));
+            result.addInfo("Inventario", "Sin cambios desde " + new Date(previous.getCollectedAt()));
+            return;
+        }
+        if (previous != null) {
+            output.putAll(SSHHandler.executeBatch(session, SSHHandler.INVENTORY_COMMANDS));
+        }
+        for (String key : SSHHandler.INVENTORY_COMMANDS.keySet()) {
+            result.addInfo(key, output.get(key));
+        }
+        if (fingerprint != null) {
+            store.put(host, fingerprint, result.getSystemInfo());
+        }
+        result.addInfo("Inventario", "Completo");
+    }
+
+    /**
+     * Une las salidas de los comandos de huella, o null si el sistema no da boot id (sin él no se puede saber si
+     * se ha reiniciado, y el inventario se recoge siempre entero) o si algún comando de huella no respondió.
+     */
+    private static String fingerprint(Map<String, String> output) {
+        if (output.get("boot_id") == null || output.get("boot_id").isEmpty()) {
+            return null;
+        }
+        StringBuilder fingerprint = new StringBuilder();
+        for (String key : SSHHandler.FINGERPRINT_COMMANDS.keySet()) {
+            String value = output.get(key);
+            if (value == null || value.equals(SSHHandler.NO_RESPONSE)) {
+                return null; // Una huella incompleta podría coincidir con otra incompleta de un sistema ya cambiado
+            }
+            fingerprint.append(key).append('=').append(value.replace('\n', ',')).append(';');
+        }
+        return fingerprint.toString();
+    }
+
+    private void saveStore() {
+        if (store != null) {
+            try {
+                store.save();
+            } catch (IOException e) {
+                System.err.println("No se pudo guardar el inventario SSH: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sesión abierta con el host (la guardada o una nueva).
+     */
+    public Session session(String host) throws JSchException {
+        Session session = sessions.get(host);
+        if (session != null && session.isConnected()) {
+            return session;
+        }
+        SSHCredentials.Credential credential = credentials.forHost(host);
+        session = SSHHandler.openSession(jsch, host, credential.getUsername(), credential.getPassword());
+        Session previous = sessions.put(host, session);
+        if (previous != null) {
+            previous.disconnect();
+        }
+        return session;
+    }
+
+    /**
+     * Cierra y olvida la sesión guardada del host.
+     * @return true si había una sesión guardada.
+     */
+    private boolean discard(String host) {
+        Session session = sessions.remove(host);
+        if (session == null) {
+            return false;
+        }
+        session.disconnect();
+        return true;
+    }
+
+    /**
+     * Cierra todas las sesiones guardadas y los hilos del colector.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (String host : sessions.keySet()) {
+            discard(host);
+        }
+        saveStore();
+    }
+}
@@ -0,0 +1,99 @@
+package com.miproyectored.ssh;
+
+import com.miproyectored.util.NetworkUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Perfiles de credenciales SSH por subred. Cada host usa el perfil de la subred más específica que lo contiene;
+ * si ninguna lo contiene, el perfil por defecto.
+ *
+ * El fichero tiene un perfil por línea:
+ * <pre>
+ *   red;usuario;contraseña
+ *   10.0.0.0/8;admin;admin
+ *   10.20.0.0/16;root;otra-clave
+ *   192.168.1.50;backup;clave-del-host
+ * </pre>
+ * Las líneas que empiezan por '#' son comentarios.
+ */
+public class SSHCredentials {
+
+    public static class Credential {
+        private final String username;
+        private final String password;
+
+        public Credential(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        public String getUsername() { return username; }
+        public String getPassword() { return password; }
+    }
+
+    private final Credential defaultCredential;
+    private final List<Long> networks = new ArrayList<>(); // CIDRs empaquetados (ver NetworkUtils.parseCidr)
+    private final List<Credential> credentials = new ArrayList<>();
+
+    public SSHCredentials(Credential defaultCredential) {
+        this.defaultCredential = defaultCredential;
+    }
+
+    /**
+     * Lee los perfiles de un fichero. Las líneas mal formadas se ignoran con un aviso.
+     */
+    public static SSHCredentials load(Path file, Credential defaultCredential) throws IOException {
+        SSHCredentials profiles = new SSHCredentials(defaultCredential);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.trim().startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(";", 3);
+                long network = fields.length == 3 ? NetworkUtils.parseCidr(fields[0].trim()) : -1;
+                if (network < 0) {
+                    System.err.println("Perfil SSH no válido en " + file + ":" + lineNumber + " (se ignora)");
+                    continue;
+                }
+                profiles.addProfile(network, new Credential(fields[1].trim(), fields[2]));
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Añade un perfil para la subred indicada (CIDR empaquetado con NetworkUtils.parseCidr).
+     */
+    public synchronized void addProfile(long packedCidr, Credential credential) {
+        // Se mantienen ordenados de más a menos específico: la primera subred que contiene al host es la buena
+        int index = 0;
+        while (index < networks.size()
+                && NetworkUtils.cidrPrefix(networks.get(index)) >= NetworkUtils.cidrPrefix(packedCidr)) {
+            index++;
+        }
+        networks.add(index, packedCidr);
+        credentials.add(index, credential);
+    }
+
+    public synchronized Credential forHost(String ip) {
+        long address = NetworkUtils.parseIpv4(ip);
+        if (address >= 0) {
+            for (int i = 0; i < networks.size(); i++) {
+                if (NetworkUtils.contains(networks.get(i), (int) address)) {
+                    return credentials.get(i);
+                }
+            }
+        }
+        return defaultCredential;
+    }
+}
@@ -2,12 +2,50 @@ package com.miproyectored.ssh;
 
 import com.jcraft.jsch.*;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class SSHHandler {
     private static final int SSH_PORT = 22;
     private static final int TIMEOUT = 10000;
+    private static final int COMMAND_TIMEOUT = 30000;
+
+    // Comandos de inventario: clave en SSHResult -> comando
+    static final Map<String, String> INVENTORY_COMMANDS = new LinkedHashMap<>();
+    static {
+        INVENTORY_COMMANDS.put("OS", "cat /etc/os-release | grep PRETTY_NAME");
+        INVENTORY_COMMANDS.put("Kernel", "uname -r");
+        INVENTORY_COMMANDS.put("Uptime", "uptime");
+        INVENTORY_COMMANDS.put("CPU", "lscpu | grep 'Model name'");
+        INVENTORY_COMMANDS.put("Memory", "free -h");
+        INVENTORY_COMMANDS.put("Disk", "df -h");
+    }
+
+    // Huella barata del sistema: si no cambia, el inventario anterior sigue siendo válido
+    static final Map<String, String> FINGERPRINT_COMMANDS = new LinkedHashMap<>();
+    static {
+        FINGERPRINT_COMMANDS.put("boot_id", "cat /proc/sys/kernel/random/boot_id");
+        FINGERPRINT_COMMANDS.put("kernel", "uname -r");
+        // Fecha de modificación de la base de datos de paquetes (dpkg, rpm, pacman o apk, la que exista)
+        FINGERPRINT_COMMANDS.put("packages",
+            "stat -c %Y /var/lib/dpkg/status /var/lib/rpm /var/lib/pacman/local /lib/apk/db/installed");
+    }
+
+    // Salida de un comando al que no llegó el script (conexión cortada o timeout)
+    static final String NO_RESPONSE = "Error ejecutando comando: sin respuesta";
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ssh-watchdog");
+        t.setDaemon(true);
+        return t;
+    });
 
     public static class SSHResult {
         private String hostname;
@@ -31,33 +69,13 @@ public class SSHHandler {
         Session session = null;
 
         try {
-            JSch jsch = new JSch();
-            session = jsch.getSession(username, host, SSH_PORT);
-            session.setPassword(password);
-
-            // No verificar la clave del host
-            java.util.Properties config = new java.util.Properties();
-            config.put("StrictHostKeyChecking", "no");
-            session.setConfig(config);
-
-            session.connect(TIMEOUT);
-
-            // Comandos para obtener información del sistema
-            Map<String, String> commands = new HashMap<>();
-            commands.put("OS", "cat /etc/os-release | grep PRETTY_NAME");
-            commands.put("Kernel", "uname -r");
-            commands.put("Uptime", "uptime");
-            commands.put("CPU", "lscpu | grep 'Model name'");
-            commands.put("Memory", "free -h");
-            commands.put("Disk", "df -h");
-
-            for (Map.Entry<String, String> entry : commands.entrySet()) {
-                String output = executeCommand(session, entry.getValue());
-                result.addInfo(entry.getKey(), output.trim());
-            }
+            session = openSession(new JSch(), host, username, password);
+            collectInventory(session, result);
 
         } catch (JSchException e) {
             System.err.println("Error de conexión SSH: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error leyendo la salida SSH de " + host + ": " + e.getMessage());
         } finally {
             if (session != null && session.isConnected()) {
                 session.disconnect();
@@ -67,32 +85,86 @@ public class SSHHandler {
         return result;
     }
 
-    private static String executeCommand(Session session, String command) {
-        StringBuilder output = new StringBuilder();
+    /**
+     * Abre y autentica una sesión SSH (sin verificar la clave del host).
+     */
+    static Session openSession(JSch jsch, String host, String username, String password) throws JSchException {
+        Session session = jsch.getSession(username, host, SSH_PORT);
+        session.setPassword(password);
+
+        // No verificar la clave del host
+        java.util.Properties config = new java.util.Properties();
+        config.put("StrictHostKeyChecking", "no");
+        session.setConfig(config);
+
+        session.connect(TIMEOUT);
+        return session;
+    }
+
+    /**
+     * Ejecuta los comandos de inventario sobre una sesión ya abierta y guarda su salida en result.
+     */
+    static void collectInventory(Session session, SSHResult result) throws JSchException, IOException {
+        // Todos los comandos en un único canal
+        Map<String, String> sections = executeBatch(session, INVENTORY_COMMANDS);
+        sections.forEach(result::addInfo);
+    }
+
+    /**
+     * Ejecuta varios comandos como un solo script en un único canal exec (un solo viaje de ida y vuelta) y separa
+     * la salida de cada uno por las líneas delimitadoras que el propio script imprime antes de cada comando.
+     * La lectura es bloqueante: termina cuando el servidor cierra el canal, o al cumplirse el tiempo límite.
+     *
+     * @param commands Clave -> comando. La salida de error de cada comando se descarta.
+     * @return Clave -> salida del comando (sin espacios al principio ni al final), en el mismo orden.
+     */
+    public static Map<String, String> executeBatch(Session session, Map<String, String> commands)
+            throws JSchException, IOException {
+        // Delimitador aleatorio: no puede aparecer por casualidad en la salida de los comandos
+        String delimiter = "@@MPR-" + UUID.randomUUID() + "@@";
+        StringBuilder script = new StringBuilder();
+        for (Map.Entry<String, String> entry : commands.entrySet()) {
+            script.append("printf '\\n%s\\n' '").append(delimiter).append(' ').append(entry.getKey()).append("'\n");
+            script.append("{ ").append(entry.getValue()).append("; } 2>/dev/null\n");
+        }
+
+        ChannelExec channel = (ChannelExec) session.openChannel("exec");
+        channel.setCommand(script.toString());
+        InputStream in = channel.getInputStream();
+        // Si el script no termina a tiempo se cierra el canal, y la lectura bloqueante acaba con lo recibido
+        ScheduledFuture<?> watchdog = WATCHDOG.schedule(channel::disconnect, COMMAND_TIMEOUT, TimeUnit.MILLISECONDS);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
         try {
-            Channel channel = session.openChannel("exec");
-            ((ChannelExec) channel).setCommand(command);
-
-            InputStream in = channel.getInputStream();
-            channel.connect();
-
-            byte[] tmp = new byte[1024];
-            while (true) {
-                while (in.available() > 0) {
-                    int i = in.read(tmp, 0, 1024);
-                    if (i < 0) break;
-                    output.append(new String(tmp, 0, i));
-                }
-                if (channel.isClosed()) {
-                    break;
-                }
-                Thread.sleep(100);
+            channel.connect(TIMEOUT);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                output.write(buffer, 0, n);
             }
+        } finally {
+            watchdog.cancel(false);
             channel.disconnect();
+        }
+        return parseSections(output.toString(StandardCharsets.UTF_8.name()), delimiter, commands);
+    }
 
-        } catch (Exception e) {
-            output.append("Error ejecutando comando: ").append(e.getMessage());
+    private static Map<String, String> parseSections(String output, String delimiter, Map<String, String> commands) {
+        Map<String, StringBuilder> sections = new LinkedHashMap<>();
+        StringBuilder current = null;
+        for (String line : output.split("\n", -1)) {
+            if (line.startsWith(delimiter + " ")) {
+                current = new StringBuilder();
+                sections.put(line.substring(delimiter.length() + 1), current);
+            } else if (current != null) {
+                current.append(line).append('\n');
+            }
+        }
+        Map<String, String> results = new LinkedHashMap<>();
+        for (String key : commands.keySet()) {
+            StringBuilder section = sections.get(key);
+            // Sin sección: el script se cortó antes de llegar a ese comando
+            results.put(key, section != null ? section.toString().trim() : NO_RESPONSE);
         }
-        return output.toString();
+        return results;
     }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package com.miproyectored.ssh;
+
+import com.miproyectored.util.JsonFileStore;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Último inventario SSH de cada host con la huella del sistema con la que se tomó (boot id, kernel y fecha de
+ * modificación de la base de datos de paquetes). Si la huella no cambia, el inventario guardado sigue valiendo
+ * y no hace falta volver a ejecutar lscpu, free, df...
+ *
+ * Se guarda como JSON; el fichero se reescribe entero al guardar.
+ */
+public class SSHInventoryStore {
+
+    /**
+     * Inventario guardado de un host. Bean con getters y setters para Jackson.
+     */
+    public static class Entry {
+        private String fingerprint;
+        private long collectedAt;
+        private Map<String, String> info = new LinkedHashMap<>();
+
+        public String getFingerprint() { return fingerprint; }
+        public void setFingerprint(String fingerprint) { this.fingerprint = fingerprint; }
+        /** Cuándo (epoch ms) se ejecutó el inventario completo. */
+        public long getCollectedAt() { return collectedAt; }
+        public void setCollectedAt(long collectedAt) { this.collectedAt = collectedAt; }
+        public Map<String, String> getInfo() { return info; }
+        public void setInfo(Map<String, String> info) { this.info = info; }
+    }
+
+    private final JsonFileStore<Entry> entries;
+
+    private SSHInventoryStore(JsonFileStore<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Carga el almacén del fichero indicado; si no existe se empieza vacío.
+     */
+    public static SSHInventoryStore load(Path file) throws IOException {
+        return new SSHInventoryStore(JsonFileStore.load(file, Entry.class));
+    }
+
+    public Entry get(String host) {
+        return entries.get(host);
+    }
+
+    public void put(String host, String fingerprint, Map<String, String> info) {
+        Entry entry = new Entry();
+        entry.fingerprint = fingerprint;
+        entry.collectedAt = System.currentTimeMillis();
+        entry.info = new LinkedHashMap<>(info);
+        entries.put(host, entry);
+    }
+
+    /**
+     * Escribe el almacén si ha cambiado.
+     */
+    public void save() throws IOException {
+        entries.save();
+    }
+}
@@ -0,0 +1,86 @@
+package com.miproyectored.util;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mapa clave -> entrada guardado en un fichero JSON entre ejecuciones (caché web, inventario SSH, engines
+ * SNMPv3...). Las entradas son beans que Jackson sabe leer y escribir.
+ *
+ * El fichero se reescribe entero al guardar, y solo si algo ha cambiado desde la carga o el último guardado.
+ */
+public class JsonFileStore<E> {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final Path file;
+    private final Map<String, E> entries;
+    private boolean dirty;
+
+    private JsonFileStore(Path file, Map<String, E> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Carga el almacén del fichero indicado; si no existe se empieza vacío.
+     */
+    public static <E> JsonFileStore<E> load(Path file, Class<E> entryType) throws IOException {
+        Map<String, E> entries = new HashMap<>();
+        if (Files.exists(file)) {
+            JavaType type = mapper.getTypeFactory().constructMapType(HashMap.class, String.class, entryType);
+            entries = mapper.readValue(file.toFile(), type);
+        }
+        return new JsonFileStore<>(file, entries);
+    }
+
+    public synchronized E get(String key) {
+        return entries.get(key);
+    }
+
+    /**
+     * @return La entrada que había antes con esa clave, o null.
+     */
+    public synchronized E put(String key, E entry) {
+        dirty = true;
+        return entries.put(key, entry);
+    }
+
+    public synchronized void remove(String key) {
+        dirty |= entries.remove(key) != null;
+    }
+
+    /** Copia de todas las entradas. */
+    public synchronized Map<String, E> getEntries() {
+        return new HashMap<>(entries);
+    }
+
+    /**
+     * Marca el almacén como modificado tras cambiar una entrada ya guardada (la obtenida con {@link #get}).
+     */
+    public synchronized void markDirty() {
+        dirty = true;
+    }
+
+    /**
+     * Escribe el almacén si ha cambiado (en un fichero temporal que luego reemplaza al anterior, para no dejar
+     * el fichero a medias si el proceso muere durante la escritura).
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty) {
+            return;
+        }
+        Path absolute = file.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        mapper.writeValue(temp.toFile(), entries);
+        Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+        dirty = false;
+    }
+}
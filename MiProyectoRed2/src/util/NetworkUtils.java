@@ -0,0 +1,296 @@
+package com.miproyectored.util;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Mismas utilidades IPv4/CIDR que NetworkUtils del módulo miproyectored.
+public class NetworkUtils {
+
+    // ------------------------------------------------------------------------------------------
+    // Aritmética IPv4/CIDR con enteros primitivos.
+    //
+    // Las direcciones se representan como 'int' (bits de la IP tal cual) y los rangos como 'long'
+    // sin signo (0 .. 2^32-1) para poder comparar y sumar sin desbordamientos. Un conjunto de rangos es
+    // un long[] plano con pares [primero0, ultimo0, primero1, ultimo1, ...], ambos extremos inclusivos.
+    // Ninguno de estos métodos reserva memoria salvo los que devuelven arrays o Strings nuevos.
+    // ------------------------------------------------------------------------------------------
+
+    public static final long IPV4_MAX = 0xFFFFFFFFL;
+
+    /**
+     * Parsea una IPv4 en notación decimal con puntos sin crear objetos intermedios.
+     * @param text Texto que contiene la IP.
+     * @param from Índice inicial (inclusivo).
+     * @param to Índice final (exclusivo).
+     * @return La IP como valor sin signo (0 .. 2^32-1), o -1 si el texto no es una IPv4 válida.
+     */
+    public static long parseIpv4(CharSequence text, int from, int to) {
+        long result = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                result = (result << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (octets != 3 || value < 0) {
+            return -1;
+        }
+        return (result << 8) | value;
+    }
+
+    public static long parseIpv4(CharSequence text) {
+        return parseIpv4(text, 0, text.length());
+    }
+
+    /**
+     * Escribe una IPv4 en notación decimal con puntos sobre un StringBuilder existente.
+     * @return El mismo StringBuilder, para encadenar llamadas.
+     */
+    public static StringBuilder appendIpv4(StringBuilder sb, int ip) {
+        return sb.append((ip >>> 24) & 0xFF).append('.')
+                 .append((ip >>> 16) & 0xFF).append('.')
+                 .append((ip >>> 8) & 0xFF).append('.')
+                 .append(ip & 0xFF);
+    }
+
+    public static String formatIpv4(int ip) {
+        return appendIpv4(new StringBuilder(15), ip).toString();
+    }
+
+    /**
+     * Máscara de red para una longitud de prefijo (0..32). Ojo: en Java "-1 << 32" vale -1, por eso /0 es un caso aparte.
+     */
+    public static int prefixMask(int prefixLength) {
+        return prefixLength <= 0 ? 0 : -1 << (32 - Math.min(prefixLength, 32));
+    }
+
+    public static int networkAddress(int ip, int prefixLength) {
+        return ip & prefixMask(prefixLength);
+    }
+
+    public static int broadcastAddress(int ip, int prefixLength) {
+        return ip | ~prefixMask(prefixLength);
+    }
+
+    /**
+     * Parsea "a.b.c.d/n" (o una IP suelta, que se trata como /32) y lo empaqueta en un long:
+     * los 32 bits altos son la dirección de red (ya normalizada con la máscara) y los 8 bajos el prefijo.
+     * @return El CIDR empaquetado, o -1 si el texto no es válido.
+     */
+    public static long parseCidr(CharSequence text) {
+        int length = text.length();
+        int slash = -1;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '/') {
+                slash = i;
+                break;
+            }
+        }
+        int prefix = 32;
+        if (slash >= 0) {
+            if (slash == length - 1 || length - slash > 3) {
+                return -1;
+            }
+            prefix = 0;
+            for (int i = slash + 1; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                prefix = prefix * 10 + (c - '0');
+            }
+            if (prefix > 32) {
+                return -1;
+            }
+        }
+        long ip = parseIpv4(text, 0, slash >= 0 ? slash : length);
+        if (ip < 0) {
+            return -1;
+        }
+        int network = networkAddress((int) ip, prefix);
+        return ((network & IPV4_MAX) << 8) | prefix;
+    }
+
+    public static int cidrNetwork(long packedCidr) {
+        return (int) (packedCidr >>> 8);
+    }
+
+    public static int cidrPrefix(long packedCidr) {
+        return (int) (packedCidr & 0xFF);
+    }
+
+    /** Primera dirección (sin signo) de un CIDR empaquetado. */
+    public static long cidrFirst(long packedCidr) {
+        return packedCidr >>> 8;
+    }
+
+    /** Última dirección (sin signo) de un CIDR empaquetado. */
+    public static long cidrLast(long packedCidr) {
+        return broadcastAddress(cidrNetwork(packedCidr), cidrPrefix(packedCidr)) & IPV4_MAX;
+    }
+
+    public static boolean contains(int network, int prefixLength, int ip) {
+        int mask = prefixMask(prefixLength);
+        return (ip & mask) == (network & mask);
+    }
+
+    public static boolean contains(long packedCidr, int ip) {
+        return contains(cidrNetwork(packedCidr), cidrPrefix(packedCidr), ip);
+    }
+
+    /**
+     * Recorre todas las direcciones de un rango (extremos inclusivos, valores sin signo).
+     */
+    public static void forEachAddress(long first, long last, IntConsumer consumer) {
+        for (long ip = first; ip <= last; ip++) {
+            consumer.accept((int) ip);
+        }
+    }
+
+    /**
+     * Recorre las direcciones de host de un CIDR: en prefijos menores de /31 se omiten la dirección de red y la de broadcast.
+     */
+    public static void forEachHost(long packedCidr, IntConsumer consumer) {
+        long first = cidrFirst(packedCidr);
+        long last = cidrLast(packedCidr);
+        if (cidrPrefix(packedCidr) < 31) {
+            first++;
+            last--;
+        }
+        forEachAddress(first, last, consumer);
+    }
+
+    /**
+     * Divide un rango en como máximo 'shards' subrangos contiguos de tamaño casi igual (difieren como mucho en 1).
+     * @return Pares [primero, ultimo] en un long[] plano.
+     */
+    public static long[] splitRange(long first, long last, int shards) {
+        long size = last - first + 1;
+        if (size <= 0 || shards <= 0) {
+            return new long[0];
+        }
+        int count = (int) Math.min(shards, size);
+        long base = size / count;
+        long remainder = size % count;
+        long[] result = new long[count * 2];
+        long start = first;
+        for (int i = 0; i < count; i++) {
+            long end = start + base - 1 + (i < remainder ? 1 : 0);
+            result[i * 2] = start;
+            result[i * 2 + 1] = end;
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Ordena y fusiona rangos solapados o adyacentes.
+     * @param ranges Pares [primero, ultimo] en un long[] plano (no se modifica).
+     * @return Un conjunto de rangos ordenado y disjunto.
+     */
+    public static long[] mergeRanges(long[] ranges) {
+        int count = ranges.length / 2;
+        if (count == 0) {
+            return new long[0];
+        }
+        // Se empaqueta (primero, índice) para ordenar con Arrays.sort de primitivos, sin objetos por rango.
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (ranges[i * 2] << 31) | i; // primero ocupa 32 bits, índice < 2^31
+        }
+        Arrays.sort(order);
+
+        long[] merged = new long[count * 2];
+        int size = 0;
+        for (long packed : order) {
+            int i = (int) (packed & 0x7FFFFFFF);
+            long first = ranges[i * 2];
+            long last = ranges[i * 2 + 1];
+            if (first > last) {
+                continue;
+            }
+            if (size > 0 && first <= merged[size - 1] + 1) {
+                merged[size - 1] = Math.max(merged[size - 1], last);
+            } else {
+                merged[size++] = first;
+                merged[size++] = last;
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Resta a un conjunto de rangos una lista de exclusiones.
+     * @param ranges Pares [primero, ultimo] (pueden estar desordenados o solapados).
+     * @param exclusions Pares [primero, ultimo] a eliminar.
+     * @return Conjunto ordenado y disjunto con las direcciones de 'ranges' que no están en 'exclusions'.
+     */
+    public static long[] subtractRanges(long[] ranges, long[] exclusions) {
+        long[] base = mergeRanges(ranges);
+        long[] minus = mergeRanges(exclusions);
+        long[] result = new long[base.length + minus.length];
+        int size = 0;
+        int e = 0;
+        for (int r = 0; r < base.length; r += 2) {
+            long first = base[r];
+            long last = base[r + 1];
+            while (e < minus.length && minus[e + 1] < first) {
+                e += 2; // Exclusión completamente anterior al rango
+            }
+            int k = e;
+            while (first <= last && k < minus.length && minus[k] <= last) {
+                if (minus[k] > first) {
+                    result[size++] = first;
+                    result[size++] = minus[k] - 1;
+                }
+                first = Math.max(first, minus[k + 1] + 1);
+                k += 2;
+            }
+            if (first <= last) {
+                result[size++] = first;
+                result[size++] = last;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Comprueba si una dirección pertenece a un conjunto de rangos ordenado y disjunto (búsqueda binaria).
+     */
+    public static boolean rangesContain(long[] sortedRanges, int ip) {
+        long value = ip & IPV4_MAX;
+        int lo = 0;
+        int hi = sortedRanges.length / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value < sortedRanges[mid * 2]) {
+                hi = mid - 1;
+            } else if (value > sortedRanges[mid * 2 + 1]) {
+                lo = mid + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Número de direcciones de un conjunto de rangos disjunto. */
+    public static long rangesSize(long[] ranges) {
+        long total = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            total += ranges[i + 1] - ranges[i] + 1;
+        }
+        return total;
+    }
+}
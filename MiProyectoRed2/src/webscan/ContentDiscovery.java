@@ -0,0 +1,442 @@
+package com.miproyectored.webscan;
+
+import com.miproyectored.webscan.HttpProbeEngine.ProbeResult;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Descubrimiento de contenido a partir de diccionarios de rutas (decenas de miles de líneas).
+ *
+ * El diccionario se lee en streaming y las rutas se envían por el {@link HttpProbeEngine}, que reutiliza las
+ * conexiones keep-alive del host. Antes de empezar se piden unas rutas aleatorias para tomar la huella de las
+ * respuestas "no encontrado" del servidor (soft-404: páginas de error con código 200, redirecciones al login...),
+ * y las respuestas con esa huella se descartan. Si una misma respuesta se repite para muchas rutas distintas se
+ * vuelven a pedir rutas aleatorias: si también dan esa respuesta, el servidor responde a todo (comodín) y se deja
+ * de sondear ese host, o responde igual a todo lo que tiene esa forma (ej. Apache con cualquier ".ht*") y esas
+ * rutas se descartan. Si las rutas aleatorias no la reproducen, las rutas encontradas son reales y se conservan.
+ * Las redirecciones de "ruta" a "ruta/" son directorios reales y no cuentan como respuesta repetida.
+ *
+ * El ritmo de peticiones por host está limitado para no saturar servidores en producción.
+ */
+public class ContentDiscovery {
+
+    private static final int BASELINE_PROBES = 3;
+    private static final int WILDCARD_REPEATS = 10;        // Misma huella en tantas rutas distintas: se comprueba
+    private static final double LENGTH_TOLERANCE = 0.05;  // Diferencia de tamaño admitida frente a la línea base
+
+    // Limitadores compartidos: dos descubrimientos sobre el mismo host respetan juntos el mismo ritmo
+    private static final Map<String, RateLimiter> RATE_LIMITERS = new ConcurrentHashMap<>();
+
+    /**
+     * Ruta encontrada (respuesta distinta de 404 y de la huella soft-404).
+     */
+    public static class Finding {
+        private final String path;
+        private final int statusCode;
+        private final int length;
+
+        public Finding(String path, int statusCode, int length) {
+            this.path = path;
+            this.statusCode = statusCode;
+            this.length = length;
+        }
+
+        public String getPath() { return path; }
+        public int getStatusCode() { return statusCode; }
+        public int getLength() { return length; }
+
+        @Override
+        public String toString() {
+            return path + " (Código: " + statusCode + ", " + length + " bytes)";
+        }
+    }
+
+    public static class DiscoveryResult {
+        private final String baseUrl;
+        private final List<Finding> findings = new ArrayList<>();
+        private int requestCount;
+        private int softNotFoundCount;
+        private String stopReason; // null si se recorrió todo el diccionario
+
+        DiscoveryResult(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        public String getBaseUrl() { return baseUrl; }
+        public List<Finding> getFindings() { return findings; }
+        public int getRequestCount() { return requestCount; }
+        public int getSoftNotFoundCount() { return softNotFoundCount; }
+        public String getStopReason() { return stopReason; }
+    }
+
+    private final HttpProbeEngine engine;
+    private final double maxRequestsPerSecond;
+    private final int maxInFlight;
+
+    /**
+     * @param maxRequestsPerSecond Límite de peticiones por segundo a cada host.
+     * @param maxInFlight Rutas pendientes de respuesta como máximo (el diccionario no se carga entero en memoria).
+     */
+    public ContentDiscovery(HttpProbeEngine engine, double maxRequestsPerSecond, int maxInFlight) {
+        this.engine = engine;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Prueba cada ruta del diccionario contra baseUrl (ej. "https://192.168.1.10:443"). Líneas vacías y las que
+     * empiezan por '#' se ignoran. Bloquea hasta terminar el diccionario o detenerse por comodín.
+     */
+    public DiscoveryResult discover(String baseUrl, Path wordlist) throws IOException, InterruptedException {
+        String base = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        DiscoveryResult result = new DiscoveryResult(base);
+        URI baseUri = URI.create(base);
+        RateLimiter limiter = RATE_LIMITERS.computeIfAbsent(baseUri.getHost() + ":" + baseUri.getPort(),
+                k -> new RateLimiter(maxRequestsPerSecond));
+
+        // 1. Línea base: respuestas a rutas que no pueden existir
+        Scan scan = new Scan(base, limiter, result);
+        for (int i = 0; i < BASELINE_PROBES; i++) {
+            String token = randomToken();
+            String path = i == 0 ? "/" + token : i == 1 ? "/" + token + ".php" : "/" + token + "/";
+            ProbeResult probe = scan.probe(path);
+            if (probe.isSuccess() && probe.getStatusCode() != 404) {
+                if (i == 0 && isDirectoryRedirect(probe, base, path)) {
+                    scan.redirectsAnyPath = true; // Redirigir a "ruta/" no indica que el directorio exista
+                }
+                scan.notFound.add(new SoftNotFound("/", "", Fingerprint.of(probe, path)));
+            }
+        }
+
+        // 2. Diccionario en streaming, con un número acotado de peticiones pendientes
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        try (BufferedReader reader = Files.newBufferedReader(wordlist, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                verifyRepeated(scan);
+                synchronized (result) {
+                    if (result.stopReason != null) {
+                        break;
+                    }
+                }
+                String word = line.trim();
+                if (word.isEmpty() || word.startsWith("#")) {
+                    continue;
+                }
+                String path = word.startsWith("/") ? word : "/" + word;
+                URI uri;
+                try {
+                    uri = URI.create(base + path);
+                } catch (IllegalArgumentException e) {
+                    continue; // Caracteres no válidos en una URI
+                }
+
+                inFlight.acquire();
+                limiter.acquire();
+                CompletableFuture<ProbeResult> probe = engine.probe("GET", uri);
+                probe.thenAccept(response -> {
+                    try {
+                        record(scan, path, response);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        inFlight.acquire(maxInFlight); // Esperar a las últimas respuestas
+        verifyRepeated(scan);
+
+        synchronized (result) {
+            for (List<Finding> findings : scan.hitsByFingerprint.values()) {
+                result.findings.addAll(findings);
+            }
+            result.findings.sort((a, b) -> a.getPath().compareTo(b.getPath()));
+        }
+        return result;
+    }
+
+    /**
+     * Estado de un descubrimiento. Las respuestas se registran desde los hilos del motor HTTP (con el lock de
+     * result); las comprobaciones con rutas aleatorias las hace el hilo de discover(), entre línea y línea.
+     */
+    private class Scan {
+        final String base;
+        final RateLimiter limiter;
+        final DiscoveryResult result;
+        final List<SoftNotFound> notFound = new ArrayList<>();
+        final Map<Fingerprint, List<Finding>> hitsByFingerprint = new HashMap<>();
+        final Set<Fingerprint> pending = new LinkedHashSet<>(); // Huellas repetidas pendientes de comprobar
+        final Set<Fingerprint> confirmed = new HashSet<>();     // Huellas que las rutas aleatorias no reproducen
+        boolean redirectsAnyPath;
+
+        Scan(String base, RateLimiter limiter, DiscoveryResult result) {
+            this.base = base;
+            this.limiter = limiter;
+            this.result = result;
+        }
+
+        ProbeResult probe(String path) throws InterruptedException {
+            limiter.acquire();
+            ProbeResult probe = engine.probe("GET", URI.create(base + path)).join();
+            synchronized (result) {
+                result.requestCount++;
+            }
+            return probe;
+        }
+    }
+
+    private static String randomToken() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    private static void record(Scan scan, String path, ProbeResult response) {
+        DiscoveryResult result = scan.result;
+        synchronized (result) {
+            result.requestCount++;
+            if (!response.isSuccess() || response.getStatusCode() == 404 || result.stopReason != null) {
+                return;
+            }
+            Finding finding = new Finding(path, response.getStatusCode(), response.getBody().length);
+            if (!scan.redirectsAnyPath && isDirectoryRedirect(response, scan.base, path)) {
+                // Redirección a "ruta/": el directorio existe (cada una tiene su propio destino)
+                result.findings.add(finding);
+                return;
+            }
+            Fingerprint fingerprint = Fingerprint.of(response, path);
+            for (SoftNotFound baseline : scan.notFound) {
+                if (baseline.covers(path, fingerprint)) {
+                    result.softNotFoundCount++;
+                    return;
+                }
+            }
+            List<Finding> hits = scan.hitsByFingerprint.computeIfAbsent(fingerprint, k -> new ArrayList<>());
+            hits.add(finding);
+            if (hits.size() >= WILDCARD_REPEATS && !scan.confirmed.contains(fingerprint)) {
+                scan.pending.add(fingerprint); // Lo comprueba verifyRepeated con rutas aleatorias
+            }
+        }
+    }
+
+    /**
+     * Comprueba con rutas aleatorias las huellas que se han repetido en muchas rutas distintas:
+     * <ul>
+     *   <li>Una ruta aleatoria cualquiera da esa respuesta: el servidor es un comodín. Se descartan esas rutas y se
+     *       detiene el descubrimiento.</li>
+     *   <li>Solo la da una ruta aleatoria con el mismo prefijo y extensión que las encontradas (ej. ".ht" + token):
+     *       se descartan esas rutas y se añade a la línea base para las rutas con esa forma.</li>
+     *   <li>Ninguna la da: las rutas son reales y se conservan.</li>
+     * </ul>
+     */
+    private static void verifyRepeated(Scan scan) throws InterruptedException {
+        DiscoveryResult result = scan.result;
+        while (true) {
+            Fingerprint fingerprint;
+            List<Finding> sample;
+            synchronized (result) {
+                if (scan.pending.isEmpty() || result.stopReason != null) {
+                    return;
+                }
+                fingerprint = scan.pending.iterator().next();
+                scan.pending.remove(fingerprint);
+                sample = new ArrayList<>(scan.hitsByFingerprint.getOrDefault(fingerprint, new ArrayList<>()));
+            }
+            if (sample.size() < WILDCARD_REPEATS) {
+                continue; // Ya se descartaron por otra comprobación
+            }
+
+            // Forma común de las rutas: directorio, prefijo del nombre y extensión
+            String directory = null;
+            String prefix = null;
+            String suffix = null;
+            for (Finding finding : sample) {
+                String path = finding.getPath().replaceAll("/+$", "");
+                int slash = path.lastIndexOf('/');
+                String parent = path.substring(0, slash + 1);
+                String name = path.substring(slash + 1);
+                int dot = name.lastIndexOf('.');
+                String extension = dot > 0 ? name.substring(dot) : "";
+                directory = directory == null || directory.equals(parent) ? parent : "/";
+                prefix = prefix == null ? name : commonPrefix(prefix, name);
+                suffix = suffix == null || suffix.equals(extension) ? extension : "";
+            }
+
+            String anyPath = directory + randomToken();
+            if (reproduces(scan, anyPath, fingerprint)) {
+                synchronized (result) {
+                    result.softNotFoundCount += scan.hitsByFingerprint.remove(fingerprint).size();
+                    result.stopReason = "Respuesta comodín (Código: " + fingerprint.statusCode + ") para "
+                            + WILDCARD_REPEATS + " rutas distintas y para rutas aleatorias";
+                }
+                return;
+            }
+            String shapedPath = directory + prefix + randomToken() + suffix;
+            if ((!prefix.isEmpty() || !suffix.isEmpty()) && reproduces(scan, shapedPath, fingerprint)) {
+                SoftNotFound shaped = new SoftNotFound(directory + prefix, suffix, fingerprint);
+                synchronized (result) {
+                    scan.notFound.add(shaped);
+                    List<Finding> hits = scan.hitsByFingerprint.remove(fingerprint);
+                    for (Finding finding : hits) {
+                        if (shaped.covers(finding.getPath(), fingerprint)) {
+                            result.softNotFoundCount++;
+                        } else {
+                            scan.hitsByFingerprint.computeIfAbsent(fingerprint, k -> new ArrayList<>()).add(finding);
+                        }
+                    }
+                }
+                continue;
+            }
+            synchronized (result) {
+                scan.confirmed.add(fingerprint);
+            }
+        }
+    }
+
+    private static boolean reproduces(Scan scan, String path, Fingerprint fingerprint) throws InterruptedException {
+        ProbeResult probe = scan.probe(path);
+        return probe.isSuccess() && fingerprint.matches(Fingerprint.of(probe, path));
+    }
+
+    private static String commonPrefix(String a, String b) {
+        int length = 0;
+        while (length < a.length() && length < b.length() && a.charAt(length) == b.charAt(length)) {
+            length++;
+        }
+        return a.substring(0, length);
+    }
+
+    /**
+     * Redirección (3xx) cuyo destino es la misma ruta terminada en '/', como hacen los servidores con los
+     * directorios pedidos sin la barra final.
+     */
+    private static boolean isDirectoryRedirect(ProbeResult response, String base, String path) {
+        int status = response.getStatusCode();
+        String location = response.getHeader("Location");
+        if (status < 300 || status >= 400 || location == null || path.endsWith("/")) {
+            return false;
+        }
+        try {
+            URI target = URI.create(base + path).resolve(location.trim());
+            return (path + "/").equals(target.getRawPath());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Respuesta "no encontrado" conocida para las rutas que empiezan por prefix y terminan en suffix (la línea base
+     * general usa "/" y "").
+     */
+    private static class SoftNotFound {
+        private final String prefix;
+        private final String suffix;
+        private final Fingerprint fingerprint;
+
+        SoftNotFound(String prefix, String suffix, Fingerprint fingerprint) {
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.fingerprint = fingerprint;
+        }
+
+        boolean covers(String path, Fingerprint other) {
+            String trimmed = path.length() > 1 ? path.replaceAll("/+$", "") : path;
+            return trimmed.startsWith(prefix) && trimmed.endsWith(suffix) && fingerprint.matches(other);
+        }
+    }
+
+    /**
+     * Huella de una respuesta: código, tamaño y hash del cuerpo sin la ruta pedida ni los dígitos (las páginas de
+     * error suelen repetir la ruta e incluir fechas o identificadores de petición).
+     */
+    private static class Fingerprint {
+        private final int statusCode;
+        private final int length;
+        private final int bodyHash;
+
+        private Fingerprint(int statusCode, int length, int bodyHash) {
+            this.statusCode = statusCode;
+            this.length = length;
+            this.bodyHash = bodyHash;
+        }
+
+        static Fingerprint of(ProbeResult response, String path) {
+            String body = new String(response.getBody(), StandardCharsets.ISO_8859_1);
+            String segment = path.replaceAll("^/+|/+$", "");
+            if (!segment.isEmpty()) {
+                body = body.replace(segment, "");
+            }
+            body = body.replaceAll("[0-9]", "");
+            String location = response.getHeader("Location"); // Las redirecciones se distinguen por su destino
+            int hash = body.hashCode() * 31 + (location != null ? location.replace(segment, "").hashCode() : 0);
+            return new Fingerprint(response.getStatusCode(), response.getBody().length, hash);
+        }
+
+        /** Misma respuesta, o mismo código con un tamaño casi igual (páginas que cambian poco entre peticiones). */
+        boolean matches(Fingerprint other) {
+            if (statusCode != other.statusCode) {
+                return false;
+            }
+            return bodyHash == other.bodyHash
+                    || Math.abs(length - other.length) <= Math.max(16, length * LENGTH_TOLERANCE);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint other = (Fingerprint) o;
+            return statusCode == other.statusCode && bodyHash == other.bodyHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return statusCode * 31 + bodyHash;
+        }
+    }
+
+    /**
+     * Reparte las peticiones a intervalos fijos (1 / peticiones por segundo).
+     */
+    private static class RateLimiter {
+        private final long intervalNanos;
+        private long nextSlot = System.nanoTime();
+
+        RateLimiter(double requestsPerSecond) {
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        }
+
+        void acquire() throws InterruptedException {
+            long slot;
+            synchronized (this) {
+                long now = System.nanoTime();
+                slot = Math.max(nextSlot, now);
+                nextSlot = slot + intervalNanos;
+            }
+            long wait;
+            while ((wait = slot - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.miproyectored.webscan;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.ByteArrayOutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Motor de sondeo HTTP/HTTPS asíncrono para WebScanner.
+ *
+ * Usa un único {@link HttpClient} compartido: las conexiones keep-alive se reutilizan entre todas las peticiones
+ * al mismo host. La concurrencia está limitada de forma global y por host, y cada petición tiene un tiempo
+ * límite completo (conexión, cabeceras y cuerpo). Las peticiones nunca bloquean al hilo que las lanza: las que
+ * superan el límite esperan en cola y se envían al terminar otras.
+ *
+ * Acepta cualquier certificado (es una herramienta de auditoría de la red local, donde abundan los
+ * autofirmados), pero solo en su propio SSLContext: no cambia la configuración SSL global de la JVM.
+ */
+public class HttpProbeEngine {
+
+    private static final int DEFAULT_MAX_CONCURRENT = 64;
+    private static final int DEFAULT_MAX_PER_HOST = 6;
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(10);
+    private static final int MAX_BODY_BYTES = 1024 * 1024; // Los cuerpos más grandes se truncan sin descargar el resto
+
+    private static HttpProbeEngine defaultEngine;
+
+    /**
+     * Resultado de un sondeo. Si la petición falló (conexión rechazada, timeout...) el código es -1 y
+     * {@link #getError()} describe el problema.
+     */
+    public static class ProbeResult {
+        private final URI uri;
+        private final String method;
+        private final int statusCode;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+        private final SSLSession sslSession;
+        private final long elapsedNanos;
+        private final String error;
+
+        ProbeResult(URI uri, String method, int statusCode, Map<String, List<String>> headers, byte[] body,
+                    SSLSession sslSession, long elapsedNanos, String error) {
+            this.uri = uri;
+            this.method = method;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.body = body;
+            this.sslSession = sslSession;
+            this.elapsedNanos = elapsedNanos;
+            this.error = error;
+        }
+
+        public URI getUri() { return uri; }
+        public String getMethod() { return method; }
+        public int getStatusCode() { return statusCode; }
+        public Map<String, List<String>> getHeaders() { return headers; }
+        public byte[] getBody() { return body; }
+        /** Sesión TLS de la respuesta (null en HTTP o si hubo error). */
+        public SSLSession getSslSession() { return sslSession; }
+        public long getElapsedMillis() { return TimeUnit.NANOSECONDS.toMillis(elapsedNanos); }
+        public String getError() { return error; }
+        public boolean isSuccess() { return error == null; }
+
+        /** Primer valor de la cabecera (sin distinguir mayúsculas), o null. */
+        public String getHeader(String name) {
+            for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+                if (entry.getKey().equalsIgnoreCase(name) && !entry.getValue().isEmpty()) {
+                    return entry.getValue().get(0);
+                }
+            }
+            return null;
+        }
+    }
+
+    private final HttpClient client;
+    private final ExecutorService executor;
+    private final Duration requestTimeout;
+    private final int maxPerHost;
+    private final AsyncPermits globalPermits;
+    // Solo están los hosts con peticiones en curso o en cola: la entrada se elimina al quedar libre
+    private final Map<String, AsyncPermits> hostPermits = new ConcurrentHashMap<>();
+
+    public HttpProbeEngine(int maxConcurrent, int maxPerHost, Duration connectTimeout, Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+        this.maxPerHost = maxPerHost;
+        this.globalPermits = new AsyncPermits(maxConcurrent);
+        this.executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "http-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1) // Conexiones keep-alive por host; muchos equipos no hablan HTTP/2
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER) // Las redirecciones son información del sondeo
+                .sslContext(trustAllContext())
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Motor compartido por todo el proceso (las conexiones abiertas y los límites se comparten entre escaneos).
+     */
+    public static synchronized HttpProbeEngine getDefault() {
+        if (defaultEngine == null) {
+            defaultEngine = new HttpProbeEngine(DEFAULT_MAX_CONCURRENT, DEFAULT_MAX_PER_HOST,
+                    DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+        }
+        return defaultEngine;
+    }
+
+    /**
+     * Lanza una petición (método "GET" o "HEAD") sin esperar su respuesta. El futuro nunca termina con excepción:
+     * los errores se devuelven en el {@link ProbeResult}.
+     */
+    public CompletableFuture<ProbeResult> probe(String method, URI uri) {
+        return probe(method, uri, Collections.emptyMap());
+    }
+
+    public CompletableFuture<ProbeResult> probe(String method, URI uri, Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(requestTimeout)
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .header("User-Agent", "MiProyectoRed-WebScanner");
+        headers.forEach(builder::header);
+        HttpRequest request = builder.build();
+
+        CompletableFuture<ProbeResult> result = new CompletableFuture<>();
+        String hostKey = uri.getHost() + ":" + uri.getPort();
+        AsyncPermits perHost = hostPermits.compute(hostKey, (key, permits) -> {
+            permits = permits != null ? permits : new AsyncPermits(maxPerHost);
+            permits.users++;
+            return permits;
+        });
+        // Orden fijo (host y después global) para que dos hosts no se bloqueen mutuamente
+        perHost.acquire(() -> globalPermits.acquire(() -> {
+            long start = System.nanoTime();
+            AtomicReference<LimitedBodySubscriber> bodySubscriber = new AtomicReference<>();
+            AtomicBoolean timedOut = new AtomicBoolean();
+            CompletableFuture<HttpResponse<byte[]>> exchange = client.sendAsync(request, responseInfo -> {
+                LimitedBodySubscriber subscriber = new LimitedBodySubscriber(MAX_BODY_BYTES);
+                bodySubscriber.set(subscriber);
+                return subscriber;
+            });
+            // Tiempo límite completo (incluye la lectura del cuerpo). Se corta el intercambio, no solo el futuro:
+            // si no, un servidor que envía el cuerpo gota a gota seguiría ocupando una conexión con el permiso ya
+            // liberado. Cancelar la suscripción cierra la conexión; cancel(true) corta también antes del cuerpo.
+            CompletableFuture.delayedExecutor(requestTimeout.toMillis(), TimeUnit.MILLISECONDS, executor).execute(() -> {
+                if (!exchange.isDone()) {
+                    timedOut.set(true);
+                    LimitedBodySubscriber subscriber = bodySubscriber.get();
+                    if (subscriber != null) {
+                        subscriber.abort(new HttpTimeoutException("Sin respuesta completa en " + requestTimeout.toMillis() + " ms"));
+                    }
+                    exchange.cancel(true);
+                }
+            });
+            // En otro hilo: si el envío falla al instante, liberar el permiso no anida la siguiente petición
+            exchange.whenCompleteAsync((response, error) -> {
+                globalPermits.release();
+                perHost.release();
+                hostPermits.computeIfPresent(hostKey, (key, permits) -> --permits.users == 0 ? null : permits);
+                long elapsed = System.nanoTime() - start;
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    String description = timedOut.get()
+                            ? "HttpTimeoutException: Sin respuesta completa en " + requestTimeout.toMillis() + " ms"
+                            : cause.getClass().getSimpleName() + ": " + cause.getMessage();
+                    result.complete(new ProbeResult(uri, method, -1, Collections.emptyMap(), new byte[0], null,
+                            elapsed, description));
+                } else {
+                    result.complete(new ProbeResult(uri, method, response.statusCode(), response.headers().map(),
+                            response.body(), response.sslSession().orElse(null), elapsed, null));
+                }
+            }, executor);
+        }));
+        return result;
+    }
+
+    /**
+     * Lanza a la vez una petición por cada URI (respetando los límites de concurrencia).
+     * @return Los futuros en el mismo orden que las URIs.
+     */
+    public List<CompletableFuture<ProbeResult>> probeAll(String method, List<URI> uris) {
+        List<CompletableFuture<ProbeResult>> futures = new ArrayList<>();
+        for (URI uri : uris) {
+            futures.add(probe(method, uri));
+        }
+        return futures;
+    }
+
+    /**
+     * Lee el cuerpo de la respuesta hasta 'limit' bytes. Si el cuerpo es más largo, cancela la suscripción (el resto
+     * no se descarga ni se guarda en memoria; la conexión se cierra) y completa con lo leído.
+     */
+    private static class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final int limit;
+        private volatile Flow.Subscription subscription;
+
+        LimitedBodySubscriber(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (body.isDone()) {
+                return;
+            }
+            for (ByteBuffer item : items) {
+                byte[] chunk = new byte[Math.min(item.remaining(), limit - buffer.size())];
+                item.get(chunk);
+                buffer.write(chunk, 0, chunk.length);
+                if (item.hasRemaining()) {
+                    subscription.cancel(); // Cuerpo truncado
+                    body.complete(buffer.toByteArray());
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            body.completeExceptionally(error);
+        }
+
+        /**
+         * Deja de leer (la conexión se cierra) y termina el cuerpo con el error indicado. Se llama desde otro hilo.
+         */
+        void abort(Throwable error) {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            body.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(buffer.toByteArray());
+        }
+    }
+
+    /**
+     * Semáforo que no bloquea: si no hay permisos, la tarea espera en cola y se ejecuta al liberarse uno.
+     */
+    private static class AsyncPermits {
+        private final Deque<Runnable> waiting = new ArrayDeque<>();
+        private int available;
+        private int users; // Peticiones que usan este host (en curso o en cola); solo se modifica dentro de hostPermits.compute
+
+        AsyncPermits(int permits) {
+            this.available = permits;
+        }
+
+        void acquire(Runnable task) {
+            synchronized (this) {
+                if (available == 0) {
+                    waiting.add(task);
+                    return;
+                }
+                available--;
+            }
+            task.run();
+        }
+
+        void release() {
+            Runnable next;
+            synchronized (this) {
+                next = waiting.poll();
+                if (next == null) {
+                    available++;
+                    return;
+                }
+            }
+            next.run(); // El permiso pasa directamente a la siguiente tarea en cola
+        }
+    }
+
+    /**
+     * SSLContext que acepta cualquier certificado y no verifica el nombre de host. Solo para los sockets propios
+     * del escáner web; nunca se instala como contexto por defecto de la JVM.
+     */
+    static SSLContext trustAllContext() {
+        try {
+            // X509ExtendedTrustManager: si fuera un X509TrustManager simple, la JVM añadiría la verificación del
+            // nombre de host, que falla siempre al conectar por IP.
+            TrustManager[] trustAll = {new X509ExtendedTrustManager() {
+                public X509Certificate[] getAcceptedIssuers() { return new X509Certificate[0]; }
+                public void checkClientTrusted(X509Certificate[] chain, String authType) { }
+                public void checkServerTrusted(X509Certificate[] chain, String authType) { }
+                public void checkClientTrusted(X509Certificate[] chain, String authType, Socket socket) { }
+                public void checkServerTrusted(X509Certificate[] chain, String authType, Socket socket) { }
+                public void checkClientTrusted(X509Certificate[] chain, String authType, SSLEngine engine) { }
+                public void checkServerTrusted(X509Certificate[] chain, String authType, SSLEngine engine) { }
+            }};
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, trustAll, new SecureRandom());
+            return context;
+        } catch (Exception e) {
+            throw new IllegalStateException("No se pudo crear el contexto SSL del escáner web", e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.miproyectored.webscan;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Petición HTTP/1.1 mínima sobre un socket ya conectado (con o sin TLS). La usan LatencyProbe y TlsInspector,
+ * que necesitan controlar la conexión y cada fase por su cuenta, cosa que HttpClient no permite.
+ */
+final class HttpWire {
+
+    private static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    /**
+     * Respuesta leída: marcas de tiempo (System.nanoTime()), código y cabeceras (nombre en minúsculas, primer valor).
+     */
+    static final class Response {
+        final long sentNanos;
+        final long firstByteNanos;
+        final long completeNanos;
+        final int statusCode;
+        final Map<String, String> headers;
+        final boolean keepAlive; // La conexión puede reutilizarse para otra petición
+
+        Response(long sentNanos, long firstByteNanos, long completeNanos, int statusCode, Map<String, String> headers,
+                 boolean keepAlive) {
+            this.sentNanos = sentNanos;
+            this.firstByteNanos = firstByteNanos;
+            this.completeNanos = completeNanos;
+            this.statusCode = statusCode;
+            this.headers = headers;
+            this.keepAlive = keepAlive;
+        }
+
+        String header(String name) {
+            return headers.get(name.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private HttpWire() {
+    }
+
+    /**
+     * Envía method path y lee la respuesta.
+     * @param readBody false para quedarse solo con las cabeceras; la conexión no se puede reutilizar después.
+     */
+    static Response exchange(Socket socket, String method, String host, String path, boolean readBody) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        String request = method + " " + path + " HTTP/1.1\r\nHost: " + host + "\r\nUser-Agent: MiProyectoRed-WebScanner\r\n"
+                + "Accept: */*\r\nConnection: " + (readBody ? "keep-alive" : "close") + "\r\n\r\n";
+        out.write(request.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        long sent = System.nanoTime();
+
+        InputStream in = new BufferedInputStream(socket.getInputStream()) {
+            @Override
+            public void close() {
+                // No cerrar el socket al terminar con este buffer
+            }
+        };
+        int first = in.read();
+        long firstByte = System.nanoTime();
+        if (first < 0) {
+            throw new EOFException("El servidor cerró la conexión sin responder");
+        }
+
+        // Cabeceras hasta la línea vacía
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        headerBytes.write(first);
+        int lastFour = first; // Últimos 4 bytes leídos, para detectar "\r\n\r\n"
+        while (lastFour != 0x0D0A0D0A) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Respuesta HTTP incompleta");
+            }
+            headerBytes.write(b);
+            if (headerBytes.size() > MAX_HEADER_BYTES) {
+                throw new IOException("Cabeceras HTTP demasiado grandes");
+            }
+            lastFour = (lastFour << 8) | b;
+        }
+        String[] lines = headerBytes.toString(StandardCharsets.ISO_8859_1).split("\r\n");
+        int status = parseStatus(lines[0]);
+        Map<String, String> headers = parseHeaders(lines);
+
+        boolean keepAlive = readBody && !"close".equalsIgnoreCase(headers.get("connection"))
+                && !lines[0].startsWith("HTTP/1.0");
+        if (readBody) {
+            String transferEncoding = headers.get("transfer-encoding");
+            long contentLength = parseLong(headers.get("content-length"));
+            if (method.equals("HEAD") || status == 204 || status == 304 || (status >= 100 && status < 200)) {
+                // Sin cuerpo
+            } else if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+                readChunked(in);
+            } else if (contentLength >= 0) {
+                skipFully(in, contentLength);
+            } else {
+                skipFully(in, Long.MAX_VALUE); // Hasta que el servidor cierre
+                keepAlive = false;
+            }
+        }
+        return new Response(sent, firstByte, System.nanoTime(), status, headers, keepAlive);
+    }
+
+    private static int parseStatus(String statusLine) {
+        int space = statusLine.indexOf(' ');
+        try {
+            return Integer.parseInt(statusLine.substring(space + 1, space + 4));
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static Map<String, String> parseHeaders(String[] lines) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.putIfAbsent(lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        lines[i].substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void readChunked(InputStream in) throws IOException {
+        while (true) {
+            String sizeLine = readLine(in);
+            int semicolon = sizeLine.indexOf(';'); // Extensiones de chunk
+            long size;
+            try {
+                size = Long.parseLong((semicolon >= 0 ? sizeLine.substring(0, semicolon) : sizeLine).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new IOException("Tamaño de chunk no válido: " + sizeLine);
+            }
+            if (size == 0) {
+                while (!readLine(in).isEmpty()) {
+                    // Cabeceras finales (trailers)
+                }
+                return;
+            }
+            skipFully(in, size);
+            readLine(in); // CRLF tras los datos
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        if (b < 0) {
+            throw new EOFException("Respuesta chunked incompleta");
+        }
+        return line.toString();
+    }
+
+    private static void skipFully(InputStream in, long bytes) throws IOException {
+        byte[] buffer = new byte[8192];
+        long remaining = bytes;
+        while (remaining > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (n < 0) {
+                if (bytes == Long.MAX_VALUE) {
+                    return;
+                }
+                throw new EOFException("Cuerpo HTTP incompleto");
+            }
+            remaining -= n;
+        }
+    }
+
+    static void closeQuietly(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Ignorar
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.miproyectored.webscan;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histograma de latencias en nanosegundos con cubetas log-lineales: 32 cubetas por cada potencia de dos, así que
+ * cualquier percentil se obtiene con un error relativo menor del 3% y memoria fija, sin guardar las muestras.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[64 * SUB_BUCKETS];
+    private long count;
+    private long max;
+
+    public synchronized void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucketIndex(value)]++;
+        count++;
+        max = Math.max(max, value);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMaxNanos() {
+        return max;
+    }
+
+    /**
+     * @param percentile Entre 0 y 100 (ej. 99 para p99).
+     * @return El valor por debajo del cual está ese porcentaje de las muestras (límite superior de su cubeta,
+     *         nunca mayor que el máximo observado), o 0 si no hay muestras.
+     */
+    public synchronized long getPercentileNanos(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Resumen legible: "p50=1.20 ms p90=1.85 ms p99=3.10 ms max=3.40 ms (n=20)".
+     */
+    public synchronized String summary() {
+        return "p50=" + millis(getPercentileNanos(50)) + " p90=" + millis(getPercentileNanos(90))
+                + " p99=" + millis(getPercentileNanos(99)) + " max=" + millis(max) + " (n=" + count + ")";
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value); // >= SUB_BUCKET_BITS
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)); // SUB_BUCKETS .. 2*SUB_BUCKETS-1
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (mantissa - SUB_BUCKETS);
+    }
+
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
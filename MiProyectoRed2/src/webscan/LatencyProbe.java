@@ -0,0 +1,182 @@
+package com.miproyectored.webscan;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mide la latencia de un servicio web por fases, con N muestras y System.nanoTime():
+ * resolución DNS, conexión TCP, handshake TLS, tiempo hasta el primer byte (TTFB) y descarga del cuerpo.
+ *
+ * La fase DNS solo existe si el host es un nombre: con una IP literal no hay resolución que medir. Las muestras
+ * de un nombre pasan por la caché de InetAddress (networkaddress.cache.ttl), así que reflejan lo que ve la JVM.
+ *
+ * Hay dos variantes: "en frío" (cada muestra abre una conexión nueva y pasa por todas las fases) y "en caliente"
+ * (todas las muestras reutilizan una conexión keep-alive ya abierta, solo TTFB y cuerpo). Se usan sockets propios
+ * ({@link HttpWire}) y no HttpClient porque este no expone el tiempo de cada fase.
+ */
+public class LatencyProbe {
+
+    public static final String DNS = "dns";
+    public static final String TCP_CONNECT = "tcp_connect";
+    public static final String TLS_HANDSHAKE = "tls_handshake";
+    public static final String TTFB = "ttfb";
+    public static final String BODY = "body";
+    public static final String TOTAL = "total";
+
+    /**
+     * Histogramas por fase de una variante (fría o caliente) y errores encontrados al tomar las muestras.
+     */
+    public static class LatencyReport {
+        private final Map<String, LatencyHistogram> phases = new LinkedHashMap<>();
+        private int errors;
+        private String lastError;
+
+        LatencyHistogram phase(String name) {
+            return phases.computeIfAbsent(name, k -> new LatencyHistogram());
+        }
+
+        public Map<String, LatencyHistogram> getPhases() { return phases; }
+        public int getErrors() { return errors; }
+        public String getLastError() { return lastError; }
+
+        void recordError(Exception e) {
+            errors++;
+            lastError = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+
+        /** fase -> "p50=... p90=... p99=... max=..." (más "errors" si hubo fallos). */
+        public Map<String, String> toSummaryMap() {
+            Map<String, String> summary = new LinkedHashMap<>();
+            phases.forEach((name, histogram) -> summary.put(name, histogram.summary()));
+            if (errors > 0) {
+                summary.put("errors", errors + " (último: " + lastError + ")");
+            }
+            return summary;
+        }
+    }
+
+    private final int samples;
+    private final int timeoutMs;
+
+    public LatencyProbe(int samples, int timeoutMs) {
+        this.samples = samples;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Toma N muestras en frío de GET path, una conexión nueva por muestra.
+     */
+    public LatencyReport measureCold(boolean tls, String host, int port, String path) {
+        LatencyReport report = new LatencyReport();
+        boolean resolves = !isIpLiteral(host);
+        for (int i = 0; i < samples; i++) {
+            // Contexto TLS nuevo por muestra (fuera de la medida): sin sesiones que reanudar, handshake completo
+            SSLSocketFactory factory = tls ? HttpProbeEngine.trustAllContext().getSocketFactory() : null;
+            long start = System.nanoTime();
+            try {
+                InetAddress address = InetAddress.getByName(host);
+                long resolved = System.nanoTime();
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress(address, port), timeoutMs);
+                    socket.setSoTimeout(timeoutMs);
+                    long connected = System.nanoTime();
+                    Socket channel = socket;
+                    long handshaken = connected;
+                    if (tls) {
+                        channel = startTls(factory, socket, host, port);
+                        handshaken = System.nanoTime();
+                    }
+                    HttpWire.Response response = HttpWire.exchange(channel, "GET", host, path, true);
+
+                    if (resolves) {
+                        report.phase(DNS).record(resolved - start);
+                    }
+                    report.phase(TCP_CONNECT).record(connected - resolved);
+                    if (tls) {
+                        report.phase(TLS_HANDSHAKE).record(handshaken - connected);
+                    }
+                    report.phase(TTFB).record(response.firstByteNanos - response.sentNanos);
+                    report.phase(BODY).record(response.completeNanos - response.firstByteNanos);
+                    report.phase(TOTAL).record(response.completeNanos - start);
+                }
+            } catch (IOException e) {
+                report.recordError(e);
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Toma N muestras en caliente: una conexión keep-alive (abierta y calentada con una petición previa que no
+     * cuenta) para todas. Si el servidor cierra la conexión se abre otra, también sin contarla.
+     */
+    public LatencyReport measureWarm(boolean tls, String host, int port, String path) {
+        LatencyReport report = new LatencyReport();
+        Socket connection = null;
+        try {
+            int taken = 0;
+            int attempts = 0;
+            while (taken < samples && attempts < samples * 2) {
+                attempts++;
+                try {
+                    if (connection == null) {
+                        connection = open(tls, host, port);
+                        if (!HttpWire.exchange(connection, "GET", host, path, true).keepAlive) { // Petición de calentamiento
+                            HttpWire.closeQuietly(connection);
+                            connection = null;
+                            report.recordError(new IOException("El servidor no mantiene la conexión abierta (keep-alive)"));
+                            break;
+                        }
+                    }
+                    HttpWire.Response response = HttpWire.exchange(connection, "GET", host, path, true);
+                    report.phase(TTFB).record(response.firstByteNanos - response.sentNanos);
+                    report.phase(BODY).record(response.completeNanos - response.firstByteNanos);
+                    report.phase(TOTAL).record(response.completeNanos - response.sentNanos);
+                    taken++;
+                    if (!response.keepAlive) {
+                        HttpWire.closeQuietly(connection);
+                        connection = null;
+                    }
+                } catch (IOException e) {
+                    report.recordError(e);
+                    HttpWire.closeQuietly(connection);
+                    connection = null;
+                }
+            }
+        } finally {
+            HttpWire.closeQuietly(connection);
+        }
+        return report;
+    }
+
+    /**
+     * IPv4 con puntos o IPv6 (con ':'): InetAddress.getByName la convierte sin consultar al DNS.
+     */
+    private static boolean isIpLiteral(String host) {
+        return host.indexOf(':') >= 0 || host.matches("[0-9.]+");
+    }
+
+    private Socket open(boolean tls, String host, int port) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            socket.setSoTimeout(timeoutMs);
+            return tls ? startTls(HttpProbeEngine.trustAllContext().getSocketFactory(), socket, host, port) : socket;
+        } catch (IOException e) {
+            HttpWire.closeQuietly(socket);
+            throw e;
+        }
+    }
+
+    private static Socket startTls(SSLSocketFactory factory, Socket socket, String host, int port) throws IOException {
+        SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+        sslSocket.startHandshake();
+        return sslSocket;
+    }
+}
@@ -0,0 +1,128 @@
+package com.miproyectored.webscan;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Detecta con una sola conexión si un puerto habla TLS o texto plano: envía un ClientHello TLS real (generado por
+ * SSLEngine) y mira el primer byte de la respuesta. Un servidor TLS contesta con un registro de handshake o de
+ * alerta; un servidor HTTP en claro contesta con un error "HTTP/1.x 400" a lo que para él es una petición inválida.
+ */
+public class ProtocolSniffer {
+
+    public enum Protocol {
+        TLS,        // Contesta con un registro TLS
+        HTTP,       // Contesta en claro con una línea de estado HTTP
+        SILENT,     // Acepta la conexión pero no responde al ClientHello (o responde otra cosa)
+        CLOSED      // No acepta conexiones
+    }
+
+    private static final int TLS_HANDSHAKE = 0x16;
+    private static final int TLS_ALERT = 0x15;
+
+    private static final SSLContext SSL_CONTEXT = HttpProbeEngine.trustAllContext();
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "protocol-sniffer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Sondea todos los puertos a la vez.
+     * @return puerto -> protocolo, en el mismo orden que ports.
+     */
+    public static Map<Integer, Protocol> sniffAll(String host, List<Integer> ports, int timeoutMs) {
+        Map<Integer, CompletableFuture<Protocol>> futures = new LinkedHashMap<>();
+        for (int port : ports) {
+            futures.put(port, CompletableFuture.supplyAsync(() -> sniff(host, port, timeoutMs), EXECUTOR));
+        }
+        Map<Integer, Protocol> protocols = new LinkedHashMap<>();
+        futures.forEach((port, future) -> protocols.put(port, future.join()));
+        return protocols;
+    }
+
+    public static Protocol sniff(String host, int port, int timeoutMs) {
+        byte[] clientHello;
+        try {
+            clientHello = clientHello(host, port);
+        } catch (SSLException e) {
+            throw new IllegalStateException("No se pudo generar el ClientHello TLS", e);
+        }
+
+        try (Socket socket = new Socket()) {
+            try {
+                socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            } catch (IOException e) {
+                return Protocol.CLOSED;
+            }
+            socket.setSoTimeout(timeoutMs);
+            OutputStream out = socket.getOutputStream();
+            out.write(clientHello);
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            byte[] head = new byte[5];
+            int read = 0;
+            try {
+                while (read < head.length) {
+                    int n = in.read(head, read, head.length - read);
+                    if (n < 0) {
+                        break;
+                    }
+                    read += n;
+                }
+            } catch (SocketTimeoutException e) {
+                // Sin respuesta en el tiempo límite: se clasifica con lo recibido hasta ahora
+            }
+            return classify(head, read);
+        } catch (IOException e) {
+            // Conexión aceptada y cortada al enviar (reset): el puerto está abierto pero no habla TLS
+            return Protocol.SILENT;
+        }
+    }
+
+    private static Protocol classify(byte[] head, int length) {
+        if (length >= 2 && (head[0] == TLS_HANDSHAKE || head[0] == TLS_ALERT) && head[1] == 0x03) {
+            return Protocol.TLS;
+        }
+        if (length == head.length && new String(head, StandardCharsets.US_ASCII).equals("HTTP/")) {
+            return Protocol.HTTP;
+        }
+        return Protocol.SILENT;
+    }
+
+    /**
+     * Primer mensaje del handshake, tal y como lo enviaría un cliente TLS de la JVM.
+     */
+    private static byte[] clientHello(String host, int port) throws SSLException {
+        SSLEngine engine = SSL_CONTEXT.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        engine.beginHandshake();
+        ByteBuffer out = ByteBuffer.allocate(engine.getSession().getPacketBufferSize());
+        SSLEngineResult result = engine.wrap(ByteBuffer.allocate(0), out);
+        if (result.getStatus() != SSLEngineResult.Status.OK) {
+            throw new SSLException("Estado inesperado al generar el ClientHello: " + result.getStatus());
+        }
+        out.flip();
+        byte[] bytes = new byte[out.remaining()];
+        out.get(bytes);
+        return bytes;
+    }
+}
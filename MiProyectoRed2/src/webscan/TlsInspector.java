@@ -0,0 +1,236 @@
+package com.miproyectored.webscan;
+
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.CertificateParsingException;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inspección TLS de un servicio HTTPS con un único handshake: sobre la misma conexión se obtienen el protocolo y
+ * el cifrado negociados, la cadena de certificados completa y, con un GET, el código, el servidor y las cabeceras
+ * de seguridad.
+ *
+ * Los certificados se guardan en una caché de todo el proceso indexada por su huella SHA-256: en una red con
+ * cientos de equipos que presentan el mismo certificado comodín, sus datos se extraen y almacenan una sola vez.
+ */
+public class TlsInspector {
+
+    private static final String[] SECURITY_HEADERS = {
+        "X-Frame-Options", "X-XSS-Protection", "X-Content-Type-Options", "Strict-Transport-Security"
+    };
+
+    private static final Map<String, CertificateInfo> CERTIFICATE_CACHE = new ConcurrentHashMap<>();
+
+    // Un solo contexto para todas las inspecciones (acepta cualquier certificado, solo en estos sockets)
+    private static final SSLSocketFactory SOCKET_FACTORY = HttpProbeEngine.trustAllContext().getSocketFactory();
+
+    /**
+     * Datos de un certificado. Inmutable: la misma instancia se comparte entre todos los hosts que lo presentan.
+     */
+    public static class CertificateInfo {
+        private final String sha256;
+        private final String subject;
+        private final String issuer;
+        private final Date notBefore;
+        private final Date notAfter;
+        private final String serialNumber;
+        private final String signatureAlgorithm;
+        private final String publicKey;
+        private final List<String> subjectAltNames;
+
+        private CertificateInfo(String sha256, X509Certificate cert) {
+            this.sha256 = sha256;
+            this.subject = cert.getSubjectX500Principal().getName();
+            this.issuer = cert.getIssuerX500Principal().getName();
+            this.notBefore = cert.getNotBefore();
+            this.notAfter = cert.getNotAfter();
+            this.serialNumber = cert.getSerialNumber().toString(16);
+            this.signatureAlgorithm = cert.getSigAlgName();
+            this.publicKey = describeKey(cert.getPublicKey());
+            this.subjectAltNames = Collections.unmodifiableList(readSubjectAltNames(cert));
+        }
+
+        public String getSha256() { return sha256; }
+        public String getSubject() { return subject; }
+        public String getIssuer() { return issuer; }
+        public Date getNotBefore() { return new Date(notBefore.getTime()); }
+        public Date getNotAfter() { return new Date(notAfter.getTime()); }
+        public String getSerialNumber() { return serialNumber; }
+        public String getSignatureAlgorithm() { return signatureAlgorithm; }
+        public String getPublicKey() { return publicKey; }
+        public List<String> getSubjectAltNames() { return subjectAltNames; }
+        public boolean isSelfSigned() { return subject.equals(issuer); }
+
+        public boolean isExpired() {
+            return notAfter.before(new Date());
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("sha256", sha256);
+            map.put("subject", subject);
+            map.put("issuer", issuer);
+            map.put("valid_from", getNotBefore());
+            map.put("valid_until", getNotAfter());
+            map.put("serial_number", serialNumber);
+            map.put("signature_algorithm", signatureAlgorithm);
+            map.put("public_key", publicKey);
+            map.put("subject_alt_names", subjectAltNames);
+            map.put("self_signed", isSelfSigned());
+            return map;
+        }
+
+        private static String describeKey(PublicKey key) {
+            if (key instanceof RSAPublicKey) {
+                return "RSA " + ((RSAPublicKey) key).getModulus().bitLength() + " bits";
+            }
+            if (key instanceof ECPublicKey) {
+                return "EC " + ((ECPublicKey) key).getParams().getCurve().getField().getFieldSize() + " bits";
+            }
+            return key.getAlgorithm();
+        }
+
+        private static List<String> readSubjectAltNames(X509Certificate cert) {
+            List<String> names = new ArrayList<>();
+            try {
+                Collection<List<?>> altNames = cert.getSubjectAlternativeNames();
+                if (altNames != null) {
+                    for (List<?> entry : altNames) {
+                        // Tipo 2 = dNSName, 7 = iPAddress
+                        if (entry.size() == 2 && entry.get(1) instanceof String) {
+                            names.add((String) entry.get(1));
+                        }
+                    }
+                }
+            } catch (CertificateParsingException e) {
+                // Extensión mal formada: el certificado se registra sin nombres alternativos
+            }
+            return names;
+        }
+    }
+
+    /**
+     * Resultado de la inspección de un host:puerto. Si el handshake falla, {@link #getError()} lo describe y el
+     * resto de campos queda vacío; si falla solo la petición HTTP, los datos TLS sí están disponibles.
+     */
+    public static class TlsInspection {
+        private final String host;
+        private final int port;
+        private String protocol;
+        private String cipherSuite;
+        private List<CertificateInfo> chain = Collections.emptyList();
+        private int statusCode = -1;
+        private String server;
+        private Map<String, String> securityHeaders = Collections.emptyMap();
+        private String error;
+
+        TlsInspection(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        public String getHost() { return host; }
+        public int getPort() { return port; }
+        public String getProtocol() { return protocol; }
+        public String getCipherSuite() { return cipherSuite; }
+        public List<CertificateInfo> getChain() { return chain; }
+        public int getStatusCode() { return statusCode; }
+        public String getServer() { return server; }
+        public Map<String, String> getSecurityHeaders() { return securityHeaders; }
+        public String getError() { return error; }
+
+        /** Hubo handshake TLS (aunque la petición HTTP posterior fallara). */
+        public boolean isHandshakeCompleted() { return protocol != null; }
+        /** Handshake y respuesta HTTP correctos. */
+        public boolean isSuccess() { return error == null; }
+
+        /** Certificado del servidor (primero de la cadena), o null. */
+        public CertificateInfo getLeafCertificate() {
+            return chain.isEmpty() ? null : chain.get(0);
+        }
+    }
+
+    /**
+     * Conecta con host:puerto, hace el handshake y un GET / sobre la misma conexión.
+     */
+    public static TlsInspection inspect(String host, int port, int timeoutMs) {
+        TlsInspection inspection = new TlsInspection(host, port);
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            socket.setSoTimeout(timeoutMs);
+            SSLSocket sslSocket = (SSLSocket) SOCKET_FACTORY.createSocket(socket, host, port, true);
+            socket = sslSocket;
+            sslSocket.startHandshake();
+
+            SSLSession session = sslSocket.getSession();
+            inspection.protocol = session.getProtocol();
+            inspection.cipherSuite = session.getCipherSuite();
+            inspection.chain = toCertificateInfos(session.getPeerCertificates());
+
+            HttpWire.Response response = HttpWire.exchange(sslSocket, "GET", host, "/", false);
+            inspection.statusCode = response.statusCode;
+            inspection.server = response.header("Server");
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (String name : SECURITY_HEADERS) {
+                headers.put(name, response.header(name));
+            }
+            inspection.securityHeaders = headers;
+        } catch (IOException e) {
+            inspection.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } finally {
+            HttpWire.closeQuietly(socket);
+        }
+        return inspection;
+    }
+
+    /**
+     * Certificados distintos vistos hasta ahora en todo el proceso.
+     */
+    public static int getCachedCertificateCount() {
+        return CERTIFICATE_CACHE.size();
+    }
+
+    private static List<CertificateInfo> toCertificateInfos(Certificate[] certificates) throws IOException {
+        List<CertificateInfo> chain = new ArrayList<>();
+        for (Certificate certificate : certificates) {
+            if (certificate instanceof X509Certificate) {
+                X509Certificate cert = (X509Certificate) certificate;
+                chain.add(CERTIFICATE_CACHE.computeIfAbsent(fingerprint(cert), sha256 -> new CertificateInfo(sha256, cert)));
+            }
+        }
+        return Collections.unmodifiableList(chain);
+    }
+
+    private static String fingerprint(X509Certificate cert) throws IOException {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(cert.getEncoded());
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (CertificateEncodingException | NoSuchAlgorithmException e) {
+            throw new IOException("No se pudo calcular la huella del certificado", e);
+        }
+    }
+}
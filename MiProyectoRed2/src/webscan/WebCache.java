@@ -0,0 +1,160 @@
+package com.miproyectored.webscan;
+
+import com.miproyectored.util.JsonFileStore;
+import com.miproyectored.webscan.HttpProbeEngine.ProbeResult;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché persistente de metadatos por URL para escaneos web repetidos (ej. diarios): ETag, Last-Modified, código
+ * de estado, hash del cuerpo y el análisis que se hizo de la respuesta.
+ *
+ * En el siguiente escaneo la petición lleva If-None-Match / If-Modified-Since; si el servidor contesta
+ * 304 Not Modified no se descarga el cuerpo y se reutiliza el análisis guardado.
+ *
+ * Se activa con -Dmiproyectored.webcache=cache_web.json. El fichero es JSON y se reescribe entero al guardar,
+ * así que se guarda una sola vez al final del escaneo y no tras cada host.
+ */
+public class WebCache {
+
+    private static final String CACHE_PROPERTY = "miproyectored.webcache";
+
+    private static WebCache defaultCache;
+    private static boolean defaultLoaded;
+
+    /**
+     * Metadatos de una URL. Bean con getters y setters para Jackson.
+     */
+    public static class Entry {
+        private String etag;
+        private String lastModified;
+        private int statusCode;
+        private String bodySha256;
+        private long checkedAt;
+        private Map<String, Object> analysis = new LinkedHashMap<>();
+
+        public String getEtag() { return etag; }
+        public void setEtag(String etag) { this.etag = etag; }
+        public String getLastModified() { return lastModified; }
+        public void setLastModified(String lastModified) { this.lastModified = lastModified; }
+        public int getStatusCode() { return statusCode; }
+        public void setStatusCode(int statusCode) { this.statusCode = statusCode; }
+        public String getBodySha256() { return bodySha256; }
+        public void setBodySha256(String bodySha256) { this.bodySha256 = bodySha256; }
+        /** Última vez (epoch ms) que el servidor confirmó o envió este contenido. */
+        public long getCheckedAt() { return checkedAt; }
+        public void setCheckedAt(long checkedAt) { this.checkedAt = checkedAt; }
+        public Map<String, Object> getAnalysis() { return analysis; }
+        public void setAnalysis(Map<String, Object> analysis) { this.analysis = analysis; }
+    }
+
+    private final JsonFileStore<Entry> entries;
+
+    private WebCache(JsonFileStore<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Carga la caché del fichero indicado; si no existe se empieza vacía.
+     */
+    public static WebCache load(Path file) throws IOException {
+        return new WebCache(JsonFileStore.load(file, Entry.class));
+    }
+
+    /**
+     * Caché configurada con -Dmiproyectored.webcache, o null si no está activada (o no se pudo leer).
+     */
+    public static synchronized WebCache getDefault() {
+        if (!defaultLoaded) {
+            defaultLoaded = true;
+            String path = System.getProperty(CACHE_PROPERTY);
+            if (path != null) {
+                try {
+                    defaultCache = load(Paths.get(path));
+                } catch (IOException e) {
+                    System.err.println("No se pudo leer la caché web " + path + ": " + e.getMessage());
+                }
+            }
+        }
+        return defaultCache;
+    }
+
+    public synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+
+    /**
+     * Cabeceras condicionales para la siguiente petición a url (vacías si no hay validadores guardados).
+     */
+    public synchronized Map<String, String> conditionalHeaders(String url) {
+        Entry entry = entries.get(url);
+        if (entry == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> headers = new HashMap<>();
+        if (entry.etag != null) {
+            headers.put("If-None-Match", entry.etag);
+        }
+        if (entry.lastModified != null) {
+            headers.put("If-Modified-Since", entry.lastModified);
+        }
+        return headers;
+    }
+
+    /**
+     * Respuesta 304 a una petición condicional: el contenido guardado sigue vigente.
+     * @return La entrada con el análisis a reutilizar, o null si la caché no tiene esa URL.
+     */
+    public synchronized Entry confirm(String url) {
+        Entry entry = entries.get(url);
+        if (entry != null) {
+            entry.checkedAt = System.currentTimeMillis();
+            entries.markDirty();
+        }
+        return entry;
+    }
+
+    /**
+     * Guarda los metadatos de una respuesta completa y su análisis.
+     * @return true si el cuerpo es distinto del guardado la vez anterior (o no había nada guardado).
+     */
+    public synchronized boolean update(String url, ProbeResult response, Map<String, Object> analysis) {
+        Entry entry = new Entry();
+        entry.etag = response.getHeader("ETag");
+        entry.lastModified = response.getHeader("Last-Modified");
+        entry.statusCode = response.getStatusCode();
+        entry.bodySha256 = sha256(response.getBody());
+        entry.checkedAt = System.currentTimeMillis();
+        entry.analysis = new LinkedHashMap<>(analysis);
+        Entry previous = entries.put(url, entry);
+        return previous == null || !entry.bodySha256.equals(previous.bodySha256);
+    }
+
+    /**
+     * Escribe la caché si ha cambiado.
+     */
+    public void save() throws IOException {
+        entries.save();
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
@@ -1,22 +1,44 @@
 package com.miproyectored.webscan;
 
-import java.net.HttpURLConnection;
-import java.net.URL;
+import com.miproyectored.webscan.HttpProbeEngine.ProbeResult;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.io.*;
-import java.security.cert.X509Certificate;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class WebScanner {
-    private static final int TIMEOUT = 5000;
     private static final String[] COMMON_VULNERABILITIES = {
         "/admin", "/login", "/phpmyadmin", "/wp-admin",
         "/config", "/backup", "/.env", "/.git"
     };
+    // Modo descubrimiento de contenido: -Dmiproyectored.wordlist=rutas.txt (opcional: -Dmiproyectored.web.rps=20)
+    private static final String WORDLIST_PROPERTY = "miproyectored.wordlist";
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 20;
+    private static final int DISCOVERY_MAX_IN_FLIGHT = 32;
+    // Latencia por fases, solo si se pide: -Dmiproyectored.web.muestras=10 (muestras por variante fría/caliente)
+    private static final String LATENCY_SAMPLES_PROPERTY = "miproyectored.web.muestras";
+    private static final int LATENCY_TIMEOUT_MS = 5000;
+    private static final int TLS_TIMEOUT_MS = 10000;
+    private static final int SNIFF_TIMEOUT_MS = 3000;
+    // Puertos que se analizan como web aunque Nmap no identifique el servicio como HTTP
+    private static final Set<Integer> KNOWN_WEB_PORTS = new HashSet<>(Arrays.asList(
+        80, 443, 591, 3000, 5000, 5985, 5986, 8000, 8008, 8080, 8081, 8443, 8888, 9000, 9443
+    ));
+    // Fragmentos del nombre de servicio de Nmap que indican HTTP (http, https, http-proxy, ssl/http, wsman...)
+    private static final String[] WEB_SERVICE_HINTS = {"http", "ssl", "www", "wsman"};
 
     public static class WebScanResult {
         private String ipAddress;
@@ -49,163 +71,315 @@ public class WebScanner {
         public Map<String, Object> getVulnerabilityInfo() { return vulnerabilityInfo; }
     }
 
+    /**
+     * Puerto web que respondió a la comprobación inicial, con las peticiones de su análisis detallado.
+     */
+    private static class WebEndpoint {
+        private final int port;
+        private final boolean tls;
+        private final String key;     // "http", "https" en los puertos estándar; "http_8080", "https_8443"...
+        private final String baseUrl; // "http://192.168.1.10:8080"
+        private TlsInspector.TlsInspection inspection;
+        private List<CompletableFuture<ProbeResult>> vulnerabilityProbes;
+        private CompletableFuture<ProbeResult> performanceProbe;
+
+        WebEndpoint(String ipAddress, int port, boolean tls) {
+            this.port = port;
+            this.tls = tls;
+            String scheme = tls ? "https" : "http";
+            this.key = port == (tls ? 443 : 80) ? scheme : scheme + "_" + port;
+            this.baseUrl = scheme + "://" + ipAddress + (port == (tls ? 443 : 80) ? "" : ":" + port);
+        }
+    }
+
+    /**
+     * Escanea los puertos 80 y 443 (sin información previa del escáner de puertos).
+     */
     public static WebScanResult scanWebServices(String ipAddress) {
+        return scanWebServices(ipAddress, Arrays.asList(80, 443), Collections.emptyMap());
+    }
+
+    /**
+     * Analiza cada puerto abierto que pueda ser web: los que Nmap identifica como HTTP/SSL y los puertos web
+     * habituales. Cada candidato se sondea una sola vez para saber si habla TLS o texto plano (ver
+     * {@link ProtocolSniffer}); los puertos que no aceptan conexiones no se vuelven a tocar.
+     *
+     * @param openPorts Puertos abiertos según el escáner.
+     * @param services Puerto -> servicio según el escáner (puede estar vacío).
+     */
+    public static WebScanResult scanWebServices(String ipAddress, List<Integer> openPorts, Map<Integer, String> services) {
         WebScanResult result = new WebScanResult(ipAddress);
-        
+        HttpProbeEngine engine = HttpProbeEngine.getDefault();
+        WebCache cache = WebCache.getDefault(); // null si no se usa caché entre escaneos
+
         try {
-            // Configurar SSL para evitar errores de certificados
-            configurarSSL();
-            
-            // Escanear puertos web comunes
-            checkWebPort(result, "http", 80);
-            checkWebPort(result, "https", 443);
-            
-            // Si hay servicios web, realizar análisis detallado
-            if (result.getSecurityInfo().containsKey("http_enabled") || 
-                result.getSecurityInfo().containsKey("https_enabled")) {
-                
+            List<Integer> candidates = webCandidates(openPorts, services);
+            if (candidates.isEmpty()) {
+                return result;
+            }
+
+            // Un sondeo por puerto: TLS, HTTP en claro, abierto sin respuesta o cerrado
+            Map<Integer, ProtocolSniffer.Protocol> protocols = ProtocolSniffer.sniffAll(ipAddress, candidates, SNIFF_TIMEOUT_MS);
+            Map<Integer, String> webPorts = new LinkedHashMap<>();
+            protocols.forEach((port, protocol) -> webPorts.put(port, protocol.name()));
+            result.addSecurityInfo("web_ports", webPorts);
+
+            // Comprobación de cada puerto que responde (las de texto plano a la vez). En TLS, un solo handshake
+            // da el estado del puerto, los datos TLS y las cabeceras de seguridad.
+            Map<Integer, CompletableFuture<ProbeResult>> plainChecks = new LinkedHashMap<>();
+            protocols.forEach((port, protocol) -> {
+                if (protocol == ProtocolSniffer.Protocol.HTTP || protocol == ProtocolSniffer.Protocol.SILENT) {
+                    plainChecks.put(port, engine.probe("HEAD", URI.create("http://" + ipAddress + ":" + port + "/")));
+                }
+            });
+            List<WebEndpoint> endpoints = new ArrayList<>();
+            for (Map.Entry<Integer, ProtocolSniffer.Protocol> entry : protocols.entrySet()) {
+                int port = entry.getKey();
+                if (entry.getValue() == ProtocolSniffer.Protocol.TLS) {
+                    WebEndpoint endpoint = new WebEndpoint(ipAddress, port, true);
+                    endpoint.inspection = TlsInspector.inspect(ipAddress, port, TLS_TIMEOUT_MS);
+                    if (checkTlsPort(result, endpoint.key, endpoint.inspection)) {
+                        endpoints.add(endpoint);
+                    }
+                } else if (plainChecks.containsKey(port)) {
+                    WebEndpoint endpoint = new WebEndpoint(ipAddress, port, false);
+                    if (checkWebPort(result, endpoint.key, plainChecks.get(port).join())) {
+                        endpoints.add(endpoint);
+                    }
+                }
+            }
+
+            // Análisis detallado de los puertos web: todas las peticiones se lanzan a la vez
+            for (WebEndpoint endpoint : endpoints) {
                 // Análisis de vulnerabilidades comunes
-                scanVulnerabilities(result);
-                
-                // Análisis de rendimiento
-                measurePerformance(result);
-                
-                // Análisis de seguridad
-                analyzeSecurity(result);
+                List<URI> paths = new ArrayList<>();
+                for (String path : COMMON_VULNERABILITIES) {
+                    paths.add(URI.create(endpoint.baseUrl + path));
+                }
+                endpoint.vulnerabilityProbes = engine.probeAll("HEAD", paths);
+
+                // Análisis de rendimiento (petición condicional si la página está en la caché)
+                String pageUrl = endpoint.baseUrl + "/";
+                endpoint.performanceProbe = engine.probe("GET", URI.create(pageUrl),
+                        cache != null ? cache.conditionalHeaders(pageUrl) : Collections.emptyMap());
+            }
+
+            String wordlist = System.getProperty(WORDLIST_PROPERTY);
+            for (WebEndpoint endpoint : endpoints) {
+                scanVulnerabilities(result, endpoint.baseUrl, endpoint.vulnerabilityProbes);
+                boolean unchanged = measurePerformance(result, endpoint.key, endpoint.performanceProbe.join(), cache);
+                if (!unchanged) {
+                    measureLatency(result, ipAddress, endpoint);
+                }
+                if (endpoint.tls) {
+                    analyzeSecurity(result, endpoint.key, endpoint.inspection);
+                }
+
+                // Descubrimiento de contenido con diccionario (si está configurado)
+                if (wordlist != null) {
+                    discoverContent(result, engine, endpoint.baseUrl, Paths.get(wordlist));
+                }
             }
-            
+
         } catch (Exception e) {
             result.addSecurityInfo("error", "Error durante el escaneo: " + e.getMessage());
         }
-        
-        return result;
+        return result; // La caché web la guarda Main una sola vez, al terminar todos los hosts
     }
 
-    private static void checkWebPort(WebScanResult result, String protocol, int port) {
-        String urlStr = protocol + "://" + result.getIpAddress() + ":" + port;
-        try {
-            URL url = new URL(urlStr);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setConnectTimeout(TIMEOUT);
-            conn.setRequestMethod("HEAD");
-            
-            int responseCode = conn.getResponseCode();
-            result.addSecurityInfo(protocol + "_enabled", true);
-            result.addSecurityInfo(protocol + "_response_code", responseCode);
-            result.addSecurityInfo(protocol + "_server", conn.getHeaderField("Server"));
-            
-        } catch (Exception e) {
-            result.addSecurityInfo(protocol + "_enabled", false);
-        }
+    /**
+     * Si alguno de los puertos abiertos puede ser web (y, por tanto, scanWebServices hará algo).
+     */
+    public static boolean hasWebPorts(List<Integer> openPorts, Map<Integer, String> services) {
+        return !webCandidates(openPorts, services).isEmpty();
     }
 
-    private static void scanVulnerabilities(WebScanResult result) {
-        for (String path : COMMON_VULNERABILITIES) {
-            String urlStr = "http://" + result.getIpAddress() + path;
-            try {
-                URL url = new URL(urlStr);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setConnectTimeout(TIMEOUT);
-                conn.setRequestMethod("HEAD");
-                
-                int responseCode = conn.getResponseCode();
-                if (responseCode == 403) {
-                    result.addVulnerabilityInfo(
-                        "vulnerable_path_" + path,
-                        "Acceso Denegado - Requiere autenticación (Código: 403)"
-                    );
-                } else if (responseCode == 401) {
-                    result.addVulnerabilityInfo(
-                        "vulnerable_path_" + path,
-                        "No Autorizado - Requiere credenciales (Código: 401)"
-                    );
-                } else if (responseCode != 404) {
-                    result.addVulnerabilityInfo(
-                        "vulnerable_path_" + path,
-                        "Accesible (Código: " + responseCode + ")"
-                    );
+    private static List<Integer> webCandidates(List<Integer> openPorts, Map<Integer, String> services) {
+        List<Integer> candidates = new ArrayList<>();
+        for (int port : openPorts) {
+            String service = services.get(port);
+            boolean webService = false;
+            if (service != null) {
+                String name = service.toLowerCase(Locale.ROOT);
+                for (String hint : WEB_SERVICE_HINTS) {
+                    webService |= name.contains(hint);
                 }
-            } catch (Exception e) {
+            }
+            if ((webService || KNOWN_WEB_PORTS.contains(port)) && !candidates.contains(port)) {
+                candidates.add(port);
+            }
+        }
+        return candidates;
+    }
+
+    private static boolean checkWebPort(WebScanResult result, String key, ProbeResult probe) {
+        if (probe.isSuccess()) {
+            result.addSecurityInfo(key + "_enabled", true);
+            result.addSecurityInfo(key + "_response_code", probe.getStatusCode());
+            result.addSecurityInfo(key + "_server", probe.getHeader("Server"));
+            return true;
+        }
+        result.addSecurityInfo(key + "_enabled", false);
+        return false;
+    }
+
+    private static boolean checkTlsPort(WebScanResult result, String key, TlsInspector.TlsInspection tls) {
+        if (tls.isSuccess()) {
+            result.addSecurityInfo(key + "_enabled", true);
+            result.addSecurityInfo(key + "_response_code", tls.getStatusCode());
+            result.addSecurityInfo(key + "_server", tls.getServer());
+            return true;
+        }
+        result.addSecurityInfo(key + "_enabled", false);
+        if (tls.isHandshakeCompleted()) {
+            // Hay TLS pero no responde HTTP: se conservan los datos del handshake
+            result.addSecurityInfo(key + "_ssl_protocol", tls.getProtocol());
+            result.addSecurityInfo(key + "_ssl_error", "Error analizando seguridad: " + tls.getError());
+        }
+        return false;
+    }
+
+    private static void scanVulnerabilities(WebScanResult result, String baseUrl,
+                                            List<CompletableFuture<ProbeResult>> probes) {
+        for (CompletableFuture<ProbeResult> future : probes) {
+            ProbeResult probe = future.join();
+            String path = baseUrl + probe.getUri().getPath();
+            if (!probe.isSuccess()) {
+                result.addVulnerabilityInfo(
+                    "vulnerable_path_" + path,
+                    "Error de acceso: " + probe.getError()
+                );
+                continue;
+            }
+            int responseCode = probe.getStatusCode();
+            if (responseCode == 403) {
+                result.addVulnerabilityInfo(
+                    "vulnerable_path_" + path,
+                    "Acceso Denegado - Requiere autenticación (Código: 403)"
+                );
+            } else if (responseCode == 401) {
                 result.addVulnerabilityInfo(
                     "vulnerable_path_" + path,
-                    "Error de acceso: " + e.getMessage()
+                    "No Autorizado - Requiere credenciales (Código: 401)"
+                );
+            } else if (responseCode != 404) {
+                result.addVulnerabilityInfo(
+                    "vulnerable_path_" + path,
+                    "Accesible (Código: " + responseCode + ")"
                 );
             }
         }
     }
 
-    private static void measurePerformance(WebScanResult result) {
-        String urlStr = "http://" + result.getIpAddress();
+    private static void discoverContent(WebScanResult result, HttpProbeEngine engine, String baseUrl, Path wordlist) {
+        double requestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
         try {
-            URL url = new URL(urlStr);
-            long startTime = System.currentTimeMillis();
-            
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setConnectTimeout(TIMEOUT);
-            conn.connect();
-            
-            long endTime = System.currentTimeMillis();
-            result.addPerformanceInfo("response_time_ms", endTime - startTime);
-            
-            // Analizar headers de rendimiento
-            String cacheControl = conn.getHeaderField("Cache-Control");
-            String contentEncoding = conn.getHeaderField("Content-Encoding");
-            
-            result.addPerformanceInfo("uses_caching", cacheControl != null);
-            result.addPerformanceInfo("uses_compression", contentEncoding != null);
-            
-        } catch (Exception e) {
-            result.addPerformanceInfo("error", "Error midiendo rendimiento: " + e.getMessage());
+            requestsPerSecond = Double.parseDouble(System.getProperty("miproyectored.web.rps", String.valueOf(requestsPerSecond)));
+        } catch (NumberFormatException e) {
+            System.err.println("Valor no válido para miproyectored.web.rps; se usan " + requestsPerSecond + " peticiones/s");
+        }
+        try {
+            ContentDiscovery discovery = new ContentDiscovery(engine, requestsPerSecond, DISCOVERY_MAX_IN_FLIGHT);
+            ContentDiscovery.DiscoveryResult discovered = discovery.discover(baseUrl, wordlist);
+            for (ContentDiscovery.Finding finding : discovered.getFindings()) {
+                result.addVulnerabilityInfo("discovered_path_" + baseUrl + finding.getPath(),
+                    "Encontrado (Código: " + finding.getStatusCode() + ", " + finding.getLength() + " bytes)");
+            }
+            String summary = discovered.getFindings().size() + " rutas encontradas en " + discovered.getRequestCount()
+                    + " peticiones, " + discovered.getSoftNotFoundCount() + " soft-404 descartados";
+            if (discovered.getStopReason() != null) {
+                summary += ". Detenido: " + discovered.getStopReason();
+            }
+            result.addVulnerabilityInfo("content_discovery_" + baseUrl, summary);
+        } catch (IOException e) {
+            result.addVulnerabilityInfo("content_discovery_" + baseUrl, "Error leyendo el diccionario: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.addVulnerabilityInfo("content_discovery_" + baseUrl, "Descubrimiento interrumpido");
         }
     }
 
-    private static void analyzeSecurity(WebScanResult result) {
-        String urlStr = "https://" + result.getIpAddress();
-        try {
-            URL url = new URL(urlStr);
-            HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
-            conn.setConnectTimeout(TIMEOUT);
-            conn.connect();
-            
-            // Analizar certificado SSL
-            X509Certificate[] certs = (X509Certificate[]) conn.getServerCertificates();
-            if (certs.length > 0) {
-                X509Certificate cert = certs[0];
-                result.addSecurityInfo("ssl_valid_from", cert.getNotBefore());
-                result.addSecurityInfo("ssl_valid_until", cert.getNotAfter());
-                result.addSecurityInfo("ssl_issuer", cert.getIssuerDN().getName());
+    /**
+     * @return true si la caché confirmó que la página no cambió (304) y se reutilizó su análisis.
+     */
+    private static boolean measurePerformance(WebScanResult result, String key, ProbeResult probe, WebCache cache) {
+        if (!probe.isSuccess()) {
+            result.addPerformanceInfo(key + "_error", "Error midiendo rendimiento: " + probe.getError());
+            return false;
+        }
+        String url = probe.getUri().toString();
+        result.addPerformanceInfo(key + "_response_time_ms", probe.getElapsedMillis());
+
+        // Sin cambios desde el escaneo anterior: se reutiliza su análisis
+        if (probe.getStatusCode() == 304 && cache != null) {
+            WebCache.Entry cached = cache.confirm(url);
+            if (cached != null) {
+                cached.getAnalysis().forEach((name, value) -> result.addPerformanceInfo(key + "_" + name, value));
+                result.addPerformanceInfo(key + "_cache", "304 Not Modified, análisis reutilizado");
+                return true;
             }
-            
-            // Analizar headers de seguridad
-            Map<String, String> securityHeaders = new HashMap<>();
-            securityHeaders.put("X-Frame-Options", conn.getHeaderField("X-Frame-Options"));
-            securityHeaders.put("X-XSS-Protection", conn.getHeaderField("X-XSS-Protection"));
-            securityHeaders.put("X-Content-Type-Options", conn.getHeaderField("X-Content-Type-Options"));
-            securityHeaders.put("Strict-Transport-Security", conn.getHeaderField("Strict-Transport-Security"));
-            
-            result.addSecurityInfo("security_headers", securityHeaders);
-            
-        } catch (Exception e) {
-            result.addSecurityInfo("ssl_error", "Error analizando seguridad: " + e.getMessage());
         }
+
+        // Analizar headers de rendimiento
+        String cacheControl = probe.getHeader("Cache-Control");
+        String contentEncoding = probe.getHeader("Content-Encoding");
+
+        Map<String, Object> analysis = new LinkedHashMap<>();
+        analysis.put("uses_caching", cacheControl != null);
+        analysis.put("uses_compression", contentEncoding != null);
+        analysis.forEach((name, value) -> result.addPerformanceInfo(key + "_" + name, value));
+
+        if (cache != null) {
+            boolean changed = cache.update(url, probe, analysis);
+            result.addPerformanceInfo(key + "_content_changed", changed);
+        }
+        return false;
     }
 
-    private static void configurarSSL() {
-        try {
-            TrustManager[] trustAllCerts = new TrustManager[] {
-                new X509TrustManager() {
-                    public X509Certificate[] getAcceptedIssuers() { return null; }
-                    public void checkClientTrusted(X509Certificate[] certs, String authType) { }
-                    public void checkServerTrusted(X509Certificate[] certs, String authType) { }
-                }
-            };
+    /**
+     * Latencia por fases (DNS, TCP, TLS, TTFB, cuerpo) con varias muestras, en frío y en caliente. Las muestras se
+     * toman en serie para que no se interfieran entre sí, así que solo se miden si se pide con
+     * -Dmiproyectored.web.muestras: con N muestras son 2N peticiones por puerto.
+     */
+    private static void measureLatency(WebScanResult result, String ipAddress, WebEndpoint endpoint) {
+        int samples = Integer.getInteger(LATENCY_SAMPLES_PROPERTY, 0);
+        if (samples <= 0) {
+            return;
+        }
+        LatencyProbe probe = new LatencyProbe(samples, LATENCY_TIMEOUT_MS);
+        LatencyProbe.LatencyReport cold = probe.measureCold(endpoint.tls, ipAddress, endpoint.port, "/");
+        LatencyProbe.LatencyReport warm = probe.measureWarm(endpoint.tls, ipAddress, endpoint.port, "/");
+        result.addPerformanceInfo("latency_" + endpoint.key + "_cold", cold.toSummaryMap());
+        result.addPerformanceInfo("latency_" + endpoint.key + "_warm", warm.toSummaryMap());
 
-            SSLContext sc = SSLContext.getInstance("SSL");
-            sc.init(null, trustAllCerts, new java.security.SecureRandom());
-            HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
-            HttpsURLConnection.setDefaultHostnameVerifier((hostname, session) -> true);
-        } catch (Exception e) {
-            e.printStackTrace();
+        LatencyHistogram total = cold.getPhases().get(LatencyProbe.TOTAL);
+        if (total != null) {
+            // Mediana de las peticiones completas en frío, más representativa que la única muestra de measurePerformance
+            result.addPerformanceInfo(endpoint.key + "_response_time_ms",
+                    TimeUnit.NANOSECONDS.toMillis(total.getPercentileNanos(50)));
         }
     }
+
+    private static void analyzeSecurity(WebScanResult result, String key, TlsInspector.TlsInspection tls) {
+        result.addSecurityInfo(key + "_ssl_protocol", tls.getProtocol());
+        result.addSecurityInfo(key + "_ssl_cipher", tls.getCipherSuite());
+
+        // Analizar certificado SSL (los datos vienen de la caché compartida por huella SHA-256)
+        TlsInspector.CertificateInfo cert = tls.getLeafCertificate();
+        if (cert != null) {
+            result.addSecurityInfo(key + "_ssl_valid_from", cert.getNotBefore());
+            result.addSecurityInfo(key + "_ssl_valid_until", cert.getNotAfter());
+            result.addSecurityInfo(key + "_ssl_issuer", cert.getIssuer());
+            result.addSecurityInfo(key + "_ssl_self_signed", cert.isSelfSigned());
+            result.addSecurityInfo(key + "_ssl_expired", cert.isExpired());
+        }
+        List<Map<String, Object>> chain = new ArrayList<>();
+        for (TlsInspector.CertificateInfo info : tls.getChain()) {
+            chain.add(info.toMap());
+        }
+        result.addSecurityInfo(key + "_ssl_certificate_chain", chain);
+
+        // Analizar headers de seguridad
+        result.addSecurityInfo(key + "_security_headers", new HashMap<>(tls.getSecurityHeaders()));
+    }
 }
\ No newline at end of file
@@ -1,30 +1,101 @@
 package com.miproyectored;
 
+import com.miproyectored.journal.ScanJournal;
 import com.miproyectored.model.Device;
 import com.miproyectored.model.NetworkReport;
+import com.miproyectored.model.Vulnerability;
+import com.miproyectored.risk.RiskAnalyzer;
+import com.miproyectored.vuln.VulnerabilityDatabase;
+import com.miproyectored.vuln.VulnerabilityMatcher;
 import com.miproyectored.scanner.NmapScanner;
+import com.miproyectored.util.NetworkInterfaceWatcher;
 import com.miproyectored.util.NetworkUtils;
+import com.miproyectored.util.TargetPlanner;
 // Asegúrate de crear estas clases e importarlas correctamente
 // import com.miproyectored.inventory.InventoryManager; // Aún no lo usamos
 import com.miproyectored.export.JsonExporter; // <--- AÑADIR ESTA IMPORTACIÓN
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList; // Para el fallback
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Date; // Para new java.util.Date
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 public class Main {
 
+    // Componentes compartidos por todos los escaneos (el inicial y los lanzados por el modo vigilancia)
+    private static NmapScanner scanner;
+    private static JsonExporter jsonExporter;
+    private static RiskAnalyzer riskAnalyzer;
+    private static VulnerabilityMatcher vulnerabilityMatcher; // null si no hay base de datos de CVEs
+    private static ScanJournal journal;                       // null si no se pudo abrir el diario
+
     public static void main(String[] args) {
         System.out.println("Iniciando MiProyectoRed...");
 
         // 1. Instanciar componentes principales
-        NmapScanner scanner = new NmapScanner();
+        scanner = new NmapScanner();
+        Runtime.getRuntime().addShutdownHook(new Thread(scanner::cancel)); // Ctrl+C no deja procesos de Nmap huérfanos
         // InventoryManager inventoryManager = new InventoryManager(); // Descomenta cuando la clase exista
-        JsonExporter jsonExporter = new JsonExporter();             // <--- DESCOMENTAR E INSTANCIAR
+        jsonExporter = new JsonExporter();             // <--- DESCOMENTAR E INSTANCIAR
+        riskAnalyzer = new RiskAnalyzer();             // Reglas compiladas una sola vez para todos los objetivos
+
+        // Base de datos local de CVEs (opcional). Funciona sin conexión: solo se lee el fichero indicado.
+        Path vulnDbPath = Paths.get(System.getProperty("miproyectored.vulndb", "vulnerabilidades.csv"));
+        if (Files.isRegularFile(vulnDbPath)) {
+            try {
+                VulnerabilityDatabase vulnDb = VulnerabilityDatabase.open(vulnDbPath);
+                vulnerabilityMatcher = new VulnerabilityMatcher(vulnDb);
+                System.out.println("Base de datos de vulnerabilidades cargada: " + vulnDb.getEntryCount() + " entradas.");
+            } catch (IOException e) {
+                System.err.println("No se pudo cargar la base de datos de vulnerabilidades '" + vulnDbPath + "': " + e.getMessage());
+            }
+        } else {
+            System.out.println("No se encontró '" + vulnDbPath + "'. Se omite la búsqueda de CVEs.");
+        }
 
-        // 2. Detectar redes locales para escanear
-        List<String> networksToScan = NetworkUtils.detectLocalNetworks();
+        // 1b. Recuperar reportes parciales de una ejecución anterior interrumpida y abrir un diario nuevo
+        Path journalPath = Paths.get(System.getProperty("miproyectored.journal", "escaneo.journal"));
+        for (NetworkReport partialReport : ScanJournal.recoverPartialReports(journalPath)) {
+            String safeName = partialReport.getScannedNetworkTarget().replaceAll("[^a-zA-Z0-9.-]", "_");
+            jsonExporter.exportReportToFile(partialReport, "reporte_recuperado_" + safeName + "_" + partialReport.getScanTimestamp() + ".json");
+        }
+        try {
+            journal = ScanJournal.open(journalPath);
+            scanner.setJournal(journal);
+        } catch (IOException e) {
+            System.err.println("No se pudo abrir el diario de escaneo '" + journalPath + "': " + e.getMessage()
+                    + ". Se continúa sin diario.");
+        }
+
+        // 2. Detectar redes locales y planificar los objetivos: las redes solapadas entre interfaces se fusionan,
+        //    se aplican las exclusiones (-Dmiproyectored.excluir=10.0.0.1,10.0.9.0/24) y cada dirección se
+        //    escanea desde una sola interfaz.
+        TargetPlanner planner = new TargetPlanner();
+        for (Map.Entry<String, List<String>> entry : NetworkUtils.detectLocalNetworksByInterface().entrySet()) {
+            planner.addTargets(entry.getKey(), entry.getValue());
+        }
+        long[] excludedRanges = new long[0];
+        for (String exclusion : System.getProperty("miproyectored.excluir", "").split(",")) {
+            if (!exclusion.trim().isEmpty()) {
+                planner.addExclusion(exclusion.trim());
+                long[] range = TargetPlanner.parseRange(exclusion);
+                if (range != null) {
+                    excludedRanges = concat(excludedRanges, range);
+                }
+            }
+        }
+        List<String> networksToScan = new ArrayList<>();
+        for (TargetPlanner.Plan plan : planner.plan()) {
+            System.out.println("Plan de escaneo: " + plan);
+            networksToScan.add(String.join(" ", plan.getTargets())); // NmapScanner acepta varios objetivos separados por espacios
+        }
 
         if (networksToScan == null || networksToScan.isEmpty()) {
             System.out.println("No se pudieron detectar redes locales automáticamente.");
@@ -38,96 +109,255 @@ public class Main {
 
         System.out.println("Se escanearán las siguientes redes/objetivos: " + networksToScan);
 
+        // 8a. Modo vigilancia (-Dmiproyectored.vigilar=true): se empieza a vigilar antes de los escaneos iniciales,
+        //     así las redes que aparezcan mientras duran quedan en cola y se escanean al terminar.
+        BlockingQueue<String[]> networkEvents = new LinkedBlockingQueue<>();
+        NetworkInterfaceWatcher watcher = null;
+        if (Boolean.getBoolean("miproyectored.vigilar")) {
+            watcher = startWatcher(networkEvents, planner.coveredRanges(), excludedRanges);
+        }
+
         int reportCounter = 1; // Para nombres de archivo únicos si hay múltiples reportes
 
         for (String targetNetwork : networksToScan) {
-            System.out.println("\n========================================================");
-            System.out.println("Iniciando escaneo para el objetivo: " + targetNetwork);
-            System.out.println("========================================================");
-
-            // 3. Ejecutar el escaneo para el objetivo actual
-            List<Device> detectedDevices = scanner.scan(targetNetwork);
-
-            // 4. Crear y poblar el NetworkReport
-            NetworkReport report = new NetworkReport();
-            report.setScannedNetworkTarget(targetNetwork);
-            // Podrías obtener la versión de Nmap del scanner si la expone,
-            // o directamente del XML si modificas el POJO NmapRun para capturarla.
-            // report.setScanEngineInfo(scanner.getNmapVersion()); // Suponiendo que NmapScanner expone la versión
-
-            if (detectedDevices != null) {
-                for (Device device : detectedDevices) {
-                    report.addDevice(device);
-                }
+            scanTarget(targetNetwork, reportCounter);
+            reportCounter++;
+        }
+
+        // 8b. Modo vigilancia: se siguen las interfaces de red y solo se escanean las redes que aparezcan después
+        //     (ej. al levantar una VLAN o conectar una VPN), sin repetir lo ya escaneado.
+        if (watcher != null) {
+            watchNetworks(watcher, networkEvents, planner.coveredRanges(), excludedRanges, reportCounter);
+        }
+
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar el diario de escaneo: " + e.getMessage());
             }
+        }
 
-            // 5. Guardar el reporte usando InventoryManager (cuando esté implementado)
-            // System.out.println("\n--- Guardando Reporte en Inventario ---");
-            // inventoryManager.saveReport(report);
-            // System.out.println("Reporte para " + targetNetwork + " guardado.");
-
-            // 6. Exportar el reporte a JSON
-            System.out.println("\n--- Exportando Reporte a JSON ---");
-            String jsonReportString = jsonExporter.exportReportToJsonString(report); // <--- OBTENER JSON COMO STRING
-            System.out.println("Contenido JSON del Reporte para " + targetNetwork + ":");
-            System.out.println(jsonReportString); // <--- MOSTRAR JSON EN CONSOLA
-
-            // Opcional: Guardar el reporte JSON en un archivo
-            // Crear un nombre de archivo descriptivo. Reemplazar caracteres no válidos para nombres de archivo.
-            String safeTargetNetworkName = targetNetwork.replaceAll("[^a-zA-Z0-9.-]", "_");
-            String reportFileName = "reporte_escaneo_" + safeTargetNetworkName + "_" + reportCounter + ".json";
-            jsonExporter.exportReportToFile(report, reportFileName); // <--- GUARDAR JSON EN ARCHIVO
-            reportCounter++;
+        System.out.println("\n========================================================");
+        System.out.println("Todos los escaneos han finalizado.");
+        System.out.println("========================================================");
 
+        // Próximos pasos podrían incluir:
+        // - Implementar InventoryManager para persistencia real (BD, archivos).
+    }
 
-            // 7. Mostrar los resultados del reporte actual en consola (resumen)
-            System.out.println("\n--- Reporte del Escaneo para: " + report.getScannedNetworkTarget() + " ---");
-            System.out.println("Fecha del escaneo: " + new Date(report.getScanTimestamp()));
-            System.out.println("Objetivo: " + report.getScannedNetworkTarget());
-            System.out.println("Dispositivos encontrados: " + report.getDeviceCount());
+    /**
+     * Escanea un objetivo, analiza sus dispositivos, exporta el reporte a JSON y muestra el resumen en consola.
+     * @param targetNetwork Uno o varios objetivos de Nmap separados por espacios.
+     * @param reportNumber Número usado para que el nombre del archivo del reporte sea único.
+     */
+    private static void scanTarget(String targetNetwork, int reportNumber) {
+        System.out.println("\n========================================================");
+        System.out.println("Iniciando escaneo para el objetivo: " + targetNetwork);
+        System.out.println("========================================================");
 
-            if (report.getDevices() != null && !report.getDevices().isEmpty()) {
-                System.out.println("\nDetalles de los dispositivos:");
-                for (Device device : report.getDevices()) {
-                    System.out.println("------------------------------------");
-                    System.out.println("  IP: " + device.getIp());
-                    if (device.getHostname() != null && !device.getHostname().isEmpty()) {
-                        System.out.println("  Hostname: " + device.getHostname());
-                    }
-                    if (device.getMac() != null && !device.getMac().isEmpty()) {
-                        System.out.println("  MAC: " + device.getMac() +
-                                           (device.getManufacturer() != null ? " (" + device.getManufacturer() + ")" : ""));
-                    }
-                    if (device.getOs() != null && !device.getOs().isEmpty()) {
-                        System.out.println("  OS: " + device.getOs());
+        // 3. Ejecutar el escaneo para el objetivo actual
+        NetworkReport report = new NetworkReport();
+        if (journal != null) {
+            journal.targetStarted(targetNetwork, report.getScanTimestamp());
+        }
+        List<Device> detectedDevices = scanner.scan(targetNetwork);
+
+        // 4. Poblar el NetworkReport
+        report.setScannedNetworkTarget(targetNetwork);
+        // Podrías obtener la versión de Nmap del scanner si la expone,
+        // o directamente del XML si modificas el POJO NmapRun para capturarla.
+        // report.setScanEngineInfo(scanner.getNmapVersion()); // Suponiendo que NmapScanner expone la versión
+
+        if (detectedDevices != null) {
+            for (Device device : detectedDevices) {
+                report.addDevice(device);
+            }
+        }
+
+        // 4b. Buscar CVEs conocidos para los servicios y calcular el nivel de riesgo de cada dispositivo
+        if (vulnerabilityMatcher != null) {
+            int vulnerabilityCount = vulnerabilityMatcher.match(report.getDevices());
+            System.out.println("Vulnerabilidades conocidas encontradas: " + vulnerabilityCount);
+        }
+        riskAnalyzer.analyze(report.getDevices());
+
+        // 5. Guardar el reporte usando InventoryManager (cuando esté implementado)
+        // System.out.println("\n--- Guardando Reporte en Inventario ---");
+        // inventoryManager.saveReport(report);
+        // System.out.println("Reporte para " + targetNetwork + " guardado.");
+
+        // 6. Exportar el reporte a JSON
+        System.out.println("\n--- Exportando Reporte a JSON ---");
+        String jsonReportString = jsonExporter.exportReportToJsonString(report); // <--- OBTENER JSON COMO STRING
+        System.out.println("Contenido JSON del Reporte para " + targetNetwork + ":");
+        System.out.println(jsonReportString); // <--- MOSTRAR JSON EN CONSOLA
+
+        // Opcional: Guardar el reporte JSON en un archivo
+        // Crear un nombre de archivo descriptivo. Reemplazar caracteres no válidos para nombres de archivo.
+        String safeTargetNetworkName = targetNetwork.replaceAll("[^a-zA-Z0-9.-]", "_");
+        if (safeTargetNetworkName.length() > 100) { // Un plan puede tener muchos bloques CIDR
+            safeTargetNetworkName = safeTargetNetworkName.substring(0, 100);
+        }
+        String reportFileName = "reporte_escaneo_" + safeTargetNetworkName + "_" + reportNumber + ".json";
+        jsonExporter.exportReportToFile(report, reportFileName); // <--- GUARDAR JSON EN ARCHIVO
+        if (journal != null) {
+            journal.targetFinished(targetNetwork); // El reporte ya está en disco: el objetivo no se recuperará
+        }
+
+
+        // 7. Mostrar los resultados del reporte actual en consola (resumen)
+        System.out.println("\n--- Reporte del Escaneo para: " + report.getScannedNetworkTarget() + " ---");
+        System.out.println("Fecha del escaneo: " + new Date(report.getScanTimestamp()));
+        System.out.println("Objetivo: " + report.getScannedNetworkTarget());
+        System.out.println("Dispositivos encontrados: " + report.getDeviceCount());
+
+        if (report.getDevices() != null && !report.getDevices().isEmpty()) {
+            System.out.println("\nDetalles de los dispositivos:");
+            for (Device device : report.getDevices()) {
+                System.out.println("------------------------------------");
+                System.out.println("  IP: " + device.getIp());
+                if (device.getHostname() != null && !device.getHostname().isEmpty()) {
+                    System.out.println("  Hostname: " + device.getHostname());
+                }
+                if (device.getMac() != null && !device.getMac().isEmpty()) {
+                    System.out.println("  MAC: " + device.getMac() +
+                                       (device.getManufacturer() != null ? " (" + device.getManufacturer() + ")" : ""));
+                }
+                if (device.getOs() != null && !device.getOs().isEmpty()) {
+                    System.out.println("  OS: " + device.getOs());
+                }
+                if (device.getRiskLevel() != null) {
+                    System.out.println("  Nivel de riesgo: " + device.getRiskLevel() + " " + riskAnalyzer.matchedRuleNames(device));
+                }
+                if (device.getVulnerabilities() != null && !device.getVulnerabilities().isEmpty()) {
+                    System.out.println("  Vulnerabilidades: ");
+                    for (Vulnerability vulnerability : device.getVulnerabilities()) {
+                        System.out.println("    - " + vulnerability);
                     }
-                    if (device.getOpenPorts() != null && !device.getOpenPorts().isEmpty()) {
-                        System.out.println("  Puertos abiertos: " + device.getOpenPorts());
-                        if (device.getServices() != null && !device.getServices().isEmpty()) {
-                            System.out.println("  Servicios detectados: ");
-                            for (Map.Entry<Integer, String> entry : device.getServices().entrySet()) {
-                                System.out.println("    - Puerto " + entry.getKey() + ": " + entry.getValue());
-                            }
-                        } else {
-                             System.out.println("  No se detectaron servicios detallados para los puertos abiertos.");
+                }
+                if (device.getOpenPorts() != null && !device.getOpenPorts().isEmpty()) {
+                    System.out.println("  Puertos abiertos: " + device.getOpenPorts());
+                    if (device.getServices() != null && !device.getServices().isEmpty()) {
+                        System.out.println("  Servicios detectados: ");
+                        for (Map.Entry<Integer, String> entry : device.getServices().entrySet()) {
+                            System.out.println("    - Puerto " + entry.getKey() + ": " + entry.getValue());
                         }
                     } else {
-                        System.out.println("  No se detectaron puertos abiertos.");
+                         System.out.println("  No se detectaron servicios detallados para los puertos abiertos.");
                     }
+                } else {
+                    System.out.println("  No se detectaron puertos abiertos.");
                 }
-                System.out.println("------------------------------------");
-            } else {
-                System.out.println("No se encontraron dispositivos activos o con información relevante para " + targetNetwork + ".");
             }
-            System.out.println("\nEscaneo para " + targetNetwork + " finalizado.");
+            System.out.println("------------------------------------");
+        } else {
+            System.out.println("No se encontraron dispositivos activos o con información relevante para " + targetNetwork + ".");
         }
+        System.out.println("\nEscaneo para " + targetNetwork + " finalizado.");
+    }
 
-        System.out.println("\n========================================================");
-        System.out.println("Todos los escaneos han finalizado.");
-        System.out.println("========================================================");
+    /**
+     * Arranca el vigilante de interfaces; sus eventos se encolan en 'events' hasta que los procese watchNetworks.
+     * La instantánea inicial del vigilante no genera eventos, así que las redes que ya contiene y que el plan no
+     * cubre (aparecidas entre la detección inicial y el arranque) se encolan aquí como redes nuevas.
+     * @param coveredRanges Rangos del plan inicial ([primero, ultimo] planos).
+     * @param excludedRanges Rangos que nunca se escanean.
+     */
+    private static NetworkInterfaceWatcher startWatcher(BlockingQueue<String[]> events, long[] coveredRanges, long[] excludedRanges) {
+        long pollIntervalMs = Long.getLong("miproyectored.vigilar.intervaloMs", 5000L);
+        // Los eventos llegan desde el hilo del vigilante; los escaneos se ejecutan en el hilo principal, de uno en uno
+        NetworkInterfaceWatcher watcher = new NetworkInterfaceWatcher(pollIntervalMs, new NetworkInterfaceWatcher.Listener() {
+            @Override
+            public void onNetworkAdded(String interfaceName, String networkCIDR) {
+                events.add(new String[]{"+", networkCIDR});
+            }
 
-        // Próximos pasos podrían incluir:
-        // - Implementar InventoryManager para persistencia real (BD, archivos).
-        // - Implementar RiskAnalyzer.
+            @Override
+            public void onNetworkRemoved(String interfaceName, String networkCIDR) {
+                events.add(new String[]{"-", networkCIDR});
+            }
+        });
+        watcher.start();
+
+        long[] known = NetworkUtils.mergeRanges(concat(coveredRanges, excludedRanges));
+        for (List<String> networks : watcher.getCurrentNetworks().values()) {
+            for (String network : networks) {
+                long[] range = TargetPlanner.parseRange(network);
+                if (range != null && NetworkUtils.subtractRanges(range, known).length > 0) {
+                    events.add(new String[]{"+", network});
+                }
+            }
+        }
+        System.out.println("\nVigilando las interfaces de red cada " + pollIntervalMs + " ms. Pulsa Ctrl+C para terminar.");
+        return watcher;
+    }
+
+    /**
+     * Modo vigilancia: procesa los cambios de red del vigilante y escanea solo las direcciones de las redes nuevas
+     * que no se hayan escaneado ya. Si una red desaparece, se olvida la parte que ya no cubre ninguna interfaz,
+     * para volver a escanearla si reaparece (ej. una VPN que se reconecta). Termina cuando se interrumpe el hilo
+     * principal.
+     * @param scannedRanges Rangos ya escaneados ([primero, ultimo] planos).
+     * @param excludedRanges Rangos que nunca se escanean.
+     */
+    private static void watchNetworks(NetworkInterfaceWatcher watcher, BlockingQueue<String[]> events,
+                                      long[] scannedRanges, long[] excludedRanges, int reportCounter) {
+        long[] scanned = scannedRanges;
+        try {
+            while (true) {
+                String[] event = events.take();
+                long[] range = TargetPlanner.parseRange(event[1]);
+                if (range == null) {
+                    continue;
+                }
+                if (event[0].equals("-")) {
+                    // Si otra interfaz sigue cubriendo la red (o parte de ella, ej. un /16 que contiene el /24
+                    // eliminado), esa parte sigue contando como escaneada
+                    long[] gone = NetworkUtils.subtractRanges(range, visibleRanges(watcher));
+                    scanned = NetworkUtils.subtractRanges(scanned, gone);
+                    continue;
+                }
+
+                long[] pending = NetworkUtils.subtractRanges(range, NetworkUtils.mergeRanges(concat(scanned, excludedRanges)));
+                if (pending.length == 0) {
+                    System.out.println("La red " + event[1] + " ya está escaneada. No se repite el escaneo.");
+                    continue;
+                }
+                List<String> targets = new ArrayList<>();
+                for (int i = 0; i < pending.length; i += 2) {
+                    NetworkUtils.appendRangeAsCidrs(pending[i], pending[i + 1], targets);
+                }
+                scanned = NetworkUtils.mergeRanges(concat(scanned, pending));
+                scanTarget(String.join(" ", targets), reportCounter);
+                reportCounter++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watcher.close();
+        }
+    }
+
+    /**
+     * Rangos ([primero, ultimo] planos, ordenados y disjuntos) de todas las redes vistas en el último sondeo.
+     */
+    private static long[] visibleRanges(NetworkInterfaceWatcher watcher) {
+        long[] visible = new long[0];
+        for (List<String> networks : watcher.getCurrentNetworks().values()) {
+            for (String network : networks) {
+                long[] range = TargetPlanner.parseRange(network);
+                if (range != null) {
+                    visible = concat(visible, range);
+                }
+            }
+        }
+        return NetworkUtils.mergeRanges(visible);
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
     }
 }
\ No newline at end of file
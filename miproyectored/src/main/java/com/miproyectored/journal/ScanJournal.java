@@ -0,0 +1,415 @@
+package com.miproyectored.journal;
+
+import com.miproyectored.model.Device;
+import com.miproyectored.model.NetworkReport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Diario (journal) de solo-anexado para los eventos del escaneo, escrito sobre un
+ * {@link MappedByteBuffer}. Si la JVM muere a mitad de un escaneo, {@link #recoverPartialReports(Path)}
+ * reconstruye los reportes de los objetivos que no llegaron a terminar.
+ *
+ * Formato de cada registro: [int longitud del payload][int CRC32 del payload][payload].
+ * El payload empieza con un byte de tipo de evento. Una longitud 0 marca el final del diario
+ * (el resto del fichero mapeado está relleno de ceros).
+ */
+public class ScanJournal implements Closeable {
+
+    // Tipos de evento
+    public static final byte TARGET_START = 1;
+    public static final byte HOST_UP = 2;
+    public static final byte PORT_OPEN = 3;
+    public static final byte SERVICE = 4;
+    public static final byte OS_MATCH = 5;
+    public static final byte TARGET_END = 6;
+
+    private static final int MAGIC = 0x4D50524A; // "MPRJ"
+    private static final int FILE_HEADER_SIZE = 8; // magic + versión
+    private static final int VERSION = 1;
+    private static final int RECORD_HEADER_SIZE = 8; // longitud + crc
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final long MAP_CHUNK_SIZE = 4L * 1024 * 1024; // El fichero crece en bloques de 4 MB
+    private static final long DEFAULT_SYNC_INTERVAL_MS = 1000;
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService syncScheduler;
+
+    private volatile MappedByteBuffer buffer;
+    private ByteBuffer crcView; // Vista reutilizada del buffer para calcular el CRC sin reservar memoria
+    private long mappedSize;
+    private int position;
+    private volatile boolean dirty;
+
+    private ScanJournal(Path path, long syncIntervalMs) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        remap(MAP_CHUNK_SIZE);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        this.position = FILE_HEADER_SIZE;
+        buffer.force();
+
+        // fsync periódico en segundo plano: escribir un registro nunca espera al disco.
+        this.syncScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "scan-journal-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        syncScheduler.scheduleWithFixedDelay(this::sync, syncIntervalMs, syncIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Crea un diario nuevo en la ruta indicada, descartando cualquier contenido anterior.
+     * Llama antes a {@link #recoverPartialReports(Path)} si quieres rescatar un escaneo interrumpido.
+     * @param path Ruta del fichero del diario.
+     * @return El diario abierto, listo para anexar eventos.
+     */
+    public static ScanJournal open(Path path) throws IOException {
+        return new ScanJournal(path, DEFAULT_SYNC_INTERVAL_MS);
+    }
+
+    public static ScanJournal open(Path path, long syncIntervalMs) throws IOException {
+        return new ScanJournal(path, syncIntervalMs);
+    }
+
+    // --- Eventos del escaneo ---
+
+    public void targetStarted(String target, long timestamp) {
+        synchronized (this) {
+            int start = beginRecord(1 + 8 + stringSize(target));
+            buffer.put(position++, TARGET_START);
+            buffer.putLong(position, timestamp);
+            position += 8;
+            putString(target);
+            endRecord(start);
+        }
+    }
+
+    public void hostUp(String ip, String hostname, String mac, String manufacturer) {
+        synchronized (this) {
+            int start = beginRecord(1 + stringSize(ip) + stringSize(hostname) + stringSize(mac) + stringSize(manufacturer));
+            buffer.put(position++, HOST_UP);
+            putString(ip);
+            putString(hostname);
+            putString(mac);
+            putString(manufacturer);
+            endRecord(start);
+        }
+    }
+
+    public void portOpen(String ip, int port) {
+        synchronized (this) {
+            int start = beginRecord(1 + stringSize(ip) + 4);
+            buffer.put(position++, PORT_OPEN);
+            putString(ip);
+            buffer.putInt(position, port);
+            position += 4;
+            endRecord(start);
+        }
+    }
+
+    public void serviceIdentified(String ip, int port, String service) {
+        synchronized (this) {
+            int start = beginRecord(1 + stringSize(ip) + 4 + stringSize(service));
+            buffer.put(position++, SERVICE);
+            putString(ip);
+            buffer.putInt(position, port);
+            position += 4;
+            putString(service);
+            endRecord(start);
+        }
+    }
+
+    public void osMatch(String ip, String os) {
+        synchronized (this) {
+            int start = beginRecord(1 + stringSize(ip) + stringSize(os));
+            buffer.put(position++, OS_MATCH);
+            putString(ip);
+            putString(os);
+            endRecord(start);
+        }
+    }
+
+    public void targetFinished(String target) {
+        synchronized (this) {
+            int start = beginRecord(1 + stringSize(target));
+            buffer.put(position++, TARGET_END);
+            putString(target);
+            endRecord(start);
+        }
+        sync(); // El fin de un objetivo es un punto de control: se persiste de inmediato.
+    }
+
+    /**
+     * Vuelca al disco las páginas modificadas. Se ejecuta periódicamente en segundo plano.
+     */
+    public void sync() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncScheduler.shutdownNow();
+        synchronized (this) {
+            dirty = true;
+            sync();
+            channel.close();
+        }
+    }
+
+    // --- Escritura de registros ---
+
+    /**
+     * Reserva espacio para un registro con el payload indicado y deja 'position' al inicio del payload.
+     * @return La posición donde empieza la cabecera del registro.
+     */
+    private int beginRecord(int payloadSize) {
+        // Se deja sitio también para el marcador de fin (longitud 0) que sigue al registro.
+        long required = (long) position + RECORD_HEADER_SIZE + payloadSize + 4;
+        if (required > mappedSize) {
+            try {
+                buffer.force();
+                remap(Math.max(mappedSize + MAP_CHUNK_SIZE, required));
+            } catch (IOException e) {
+                throw new IllegalStateException("No se pudo ampliar el diario del escaneo: " + e.getMessage(), e);
+            }
+        }
+        int start = position;
+        position += RECORD_HEADER_SIZE;
+        return start;
+    }
+
+    private void endRecord(int start) {
+        int payloadStart = start + RECORD_HEADER_SIZE;
+        int payloadLength = position - payloadStart;
+
+        crcView.limit(position).position(payloadStart);
+        crc.reset();
+        crc.update(crcView);
+
+        // La longitud se escribe la última: un registro a medias queda con longitud 0 y se ignora al recuperar.
+        buffer.putInt(start + 4, (int) crc.getValue());
+        buffer.putInt(start, payloadLength);
+        dirty = true;
+    }
+
+    private void remap(long newSize) throws IOException {
+        if (newSize > Integer.MAX_VALUE) {
+            throw new IOException("El diario supera el tamaño máximo mapeable (2 GB)");
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        crcView = buffer.duplicate();
+        mappedSize = newSize;
+    }
+
+    private static int stringSize(String value) {
+        if (value == null) {
+            return 2;
+        }
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                bytes = value.getBytes(StandardCharsets.UTF_8).length;
+                return 2 + Math.min(bytes, MAX_STRING_BYTES);
+            }
+            bytes++;
+        }
+        return 2 + Math.min(bytes, MAX_STRING_BYTES);
+    }
+
+    /**
+     * Escribe un string como [unsigned short longitud][bytes UTF-8]. La longitud 0xFFFF representa null.
+     * Los strings ASCII (el caso habitual: IPs, MACs, nombres de servicio) se copian sin reservar memoria.
+     */
+    private void putString(String value) {
+        if (value == null) {
+            buffer.putShort(position, (short) 0xFFFF);
+            position += 2;
+            return;
+        }
+        int length = value.length();
+        boolean ascii = length < MAX_STRING_BYTES;
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = value.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            buffer.putShort(position, (short) length);
+            position += 2;
+            for (int i = 0; i < length; i++) {
+                buffer.put(position++, (byte) value.charAt(i));
+            }
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int n = Math.min(bytes.length, MAX_STRING_BYTES - 1);
+            buffer.putShort(position, (short) n);
+            position += 2;
+            for (int i = 0; i < n; i++) {
+                buffer.put(position++, bytes[i]);
+            }
+        }
+    }
+
+    // --- Recuperación ---
+
+    /**
+     * Reproduce un diario existente y reconstruye los reportes de los objetivos cuyo escaneo
+     * no llegó a terminar (sin evento TARGET_END). La lectura se detiene en el primer registro
+     * incompleto o con CRC inválido, que es lo que queda cuando el proceso muere a mitad de una escritura.
+     * @param path Ruta del fichero del diario.
+     * @return Lista de reportes parciales; vacía si no hay diario o si todos los objetivos terminaron.
+     */
+    public static List<NetworkReport> recoverPartialReports(Path path) {
+        List<NetworkReport> partialReports = new ArrayList<>();
+        if (path == null || !Files.isRegularFile(path)) {
+            return partialReports;
+        }
+
+        try (FileChannel readChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = readChannel.size();
+            if (size < FILE_HEADER_SIZE) {
+                return partialReports;
+            }
+            MappedByteBuffer in = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE));
+            if (in.getInt(0) != MAGIC) {
+                System.err.println("El fichero '" + path + "' no es un diario de escaneo válido.");
+                return partialReports;
+            }
+
+            Map<String, NetworkReport> openReports = new LinkedHashMap<>();
+            Map<String, Device> currentDevices = new LinkedHashMap<>();
+            NetworkReport currentReport = null;
+            CRC32 checksum = new CRC32();
+            int pos = FILE_HEADER_SIZE;
+            int recovered = 0;
+
+            while (pos + RECORD_HEADER_SIZE <= in.limit()) {
+                int length = in.getInt(pos);
+                if (length <= 0 || pos + RECORD_HEADER_SIZE + length > in.limit()) {
+                    break;
+                }
+                int expectedCrc = in.getInt(pos + 4);
+                ByteBuffer payload = in.duplicate();
+                payload.limit(pos + RECORD_HEADER_SIZE + length).position(pos + RECORD_HEADER_SIZE);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != expectedCrc) {
+                    System.err.println("Registro corrupto en el diario (posición " + pos + "). Se descarta el resto.");
+                    break;
+                }
+
+                byte type = payload.get();
+                switch (type) {
+                    case TARGET_START: {
+                        long timestamp = payload.getLong();
+                        String target = readString(payload);
+                        currentReport = new NetworkReport();
+                        currentReport.setScannedNetworkTarget(target);
+                        currentReport.setScanTimestamp(timestamp);
+                        currentDevices = new LinkedHashMap<>();
+                        openReports.put(target, currentReport);
+                        break;
+                    }
+                    case HOST_UP: {
+                        String ip = readString(payload);
+                        Device device = deviceFor(currentReport, currentDevices, ip);
+                        if (device != null) {
+                            String hostname = readString(payload);
+                            if (hostname != null) device.setHostname(hostname);
+                            device.setMac(readString(payload));
+                            device.setManufacturer(readString(payload));
+                        }
+                        break;
+                    }
+                    case PORT_OPEN: {
+                        Device device = deviceFor(currentReport, currentDevices, readString(payload));
+                        int port = payload.getInt();
+                        if (device != null && !device.getOpenPorts().contains(port)) {
+                            device.getOpenPorts().add(port);
+                        }
+                        break;
+                    }
+                    case SERVICE: {
+                        Device device = deviceFor(currentReport, currentDevices, readString(payload));
+                        int port = payload.getInt();
+                        String service = readString(payload);
+                        if (device != null) {
+                            device.getServices().put(port, service);
+                        }
+                        break;
+                    }
+                    case OS_MATCH: {
+                        Device device = deviceFor(currentReport, currentDevices, readString(payload));
+                        String os = readString(payload);
+                        if (device != null) {
+                            device.setOs(os);
+                        }
+                        break;
+                    }
+                    case TARGET_END: {
+                        openReports.remove(readString(payload));
+                        currentReport = null;
+                        break;
+                    }
+                    default:
+                        System.err.println("Tipo de registro desconocido en el diario: " + type);
+                }
+                recovered++;
+                pos += RECORD_HEADER_SIZE + length;
+            }
+
+            partialReports.addAll(openReports.values());
+            if (!partialReports.isEmpty()) {
+                System.out.println("Diario '" + path + "': " + recovered + " registros reproducidos, "
+                        + partialReports.size() + " reporte(s) parcial(es) recuperado(s).");
+            }
+        } catch (IOException e) {
+            System.err.println("Error al leer el diario de escaneo '" + path + "': " + e.getMessage());
+        }
+        return partialReports;
+    }
+
+    private static Device deviceFor(NetworkReport report, Map<String, Device> devices, String ip) {
+        if (report == null || ip == null) {
+            return null; // Evento fuera de un objetivo: no se puede asociar a ningún reporte
+        }
+        Device device = devices.get(ip);
+        if (device == null) {
+            device = new Device(ip);
+            devices.put(ip, device);
+            report.addDevice(device);
+        }
+        return device;
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        if (length == 0xFFFF) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -14,12 +14,14 @@ public class Device {
     private String manufacturer;           // Fabricante (basado en la MAC, opcional)
     private String os;                     // Sistema operativo detectado (opcional)
     private String riskLevel;              // Nivel de riesgo ("low", "medium", "high")
+    private List<Vulnerability> vulnerabilities; // CVEs conocidos para los servicios detectados
 
     // Constructor
     public Device(String ip) {
         this.ip = ip;
         this.openPorts = new ArrayList<>(); // Inicializa la lista de puertos vacía
         this.services = new HashMap<>();    // Inicializa el mapa de servicios vacío
+        this.vulnerabilities = new ArrayList<>();
         // Otros campos se pueden inicializar a null o valores por defecto si es necesario
         this.hostname = ip; // Por defecto, el hostname es la IP hasta que se resuelva
     }
@@ -57,6 +59,10 @@ public class Device {
         return riskLevel;
     }
 
+    public List<Vulnerability> getVulnerabilities() {
+        return vulnerabilities;
+    }
+
     // Setters (para establecer o modificar los valores de los atributos)
     public void setIp(String ip) {
         this.ip = ip;
@@ -90,6 +96,10 @@ public class Device {
         this.riskLevel = riskLevel;
     }
 
+    public void setVulnerabilities(List<Vulnerability> vulnerabilities) {
+        this.vulnerabilities = vulnerabilities;
+    }
+
     // Método toString (útil para depuración, para imprimir el objeto de forma legible)
     @Override
     public String toString() {
@@ -101,6 +111,7 @@ public class Device {
                ", mac='" + mac + '\'' +
                ", os='" + os + '\'' +
                ", riskLevel='" + riskLevel + '\'' +
+               ", vulnerabilities=" + vulnerabilities +
                '}';
     }
 }
\ No newline at end of file
@@ -30,6 +30,10 @@ public class NetworkReport {
         return scanTimestamp;
     }
 
+    public void setScanTimestamp(long scanTimestamp) { // Usado al reconstruir reportes desde el diario
+        this.scanTimestamp = scanTimestamp;
+    }
+
     public String getScannedNetworkTarget() { // Getter para scannedNetworkTarget
         return scannedNetworkTarget;
     }
@@ -0,0 +1,42 @@
+package com.miproyectored.model;
+
+public class Vulnerability {
+    private String cveId;   // Identificador CVE (ej. "CVE-2019-0708")
+    private double cvss;    // Puntuación CVSS base (0.0 - 10.0)
+    private int port;       // Puerto del servicio afectado
+    private String product; // Producto del índice que coincidió con el servicio
+    private String version; // Versión detectada del servicio (puede ser null)
+
+    public Vulnerability(String cveId, double cvss, int port, String product, String version) {
+        this.cveId = cveId;
+        this.cvss = cvss;
+        this.port = port;
+        this.product = product;
+        this.version = version;
+    }
+
+    public String getCveId() {
+        return cveId;
+    }
+
+    public double getCvss() {
+        return cvss;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getProduct() {
+        return product;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return cveId + " (CVSS " + cvss + ") puerto " + port + ": " + product + (version != null ? " " + version : "");
+    }
+}
@@ -0,0 +1,256 @@
+package com.miproyectored.risk;
+
+import com.miproyectored.model.Device;
+import com.miproyectored.model.Vulnerability;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Calcula el nivel de riesgo ("low", "medium", "high") de cada dispositivo a partir de sus puertos abiertos,
+ * sus servicios y su OS.
+ *
+ * Las reglas se compilan una única vez en el constructor:
+ * - Una tabla indexada por puerto con la máscara de bits de las reglas que dispara cada puerto,
+ *   de modo que evaluar los puertos de un dispositivo es un OR por puerto.
+ * - Patrones regex precompilados para servicios y OS, que solo se evalúan para reglas que los puertos no
+ *   hayan disparado ya. Como las mismas descripciones de servicio y de OS se repiten en miles de dispositivos,
+ *   el resultado de los patrones se memoriza por texto.
+ */
+public class RiskAnalyzer {
+
+    public static final String LOW = "low";
+    public static final String MEDIUM = "medium";
+    public static final String HIGH = "high";
+
+    private static final int MAX_RULES = 64; // Una máscara 'long' por puerto
+    private static final int MAX_PORT = 65535;
+    private static final int MAX_CACHED_TEXTS = 10000; // Límite de textos memorizados para no crecer sin control
+
+    private final RiskRule[] rules;
+    private final int[] weights;
+    private final long[] portRuleMasks = new long[MAX_PORT + 1];
+    private final Pattern[] servicePatterns; // Indexado por regla; null si la regla no tiene patrón de servicio
+    private final Pattern[] osPatterns;      // Indexado por regla; null si la regla no tiene patrón de OS
+    private final long serviceRuleMask;      // Reglas con patrón de servicio
+    private final long osRuleMask;           // Reglas con patrón de OS
+    private final int mediumThreshold;
+    private final int highThreshold;
+    private final Map<String, Long> serviceMaskCache = new ConcurrentHashMap<>();
+    private final Map<String, Long> osMaskCache = new ConcurrentHashMap<>();
+
+    public RiskAnalyzer() {
+        this(defaultRules(), 25, 60);
+    }
+
+    /**
+     * @param rules Reglas a aplicar (máximo 64).
+     * @param mediumThreshold Puntuación mínima para considerar el riesgo "medium".
+     * @param highThreshold Puntuación mínima para considerar el riesgo "high".
+     */
+    public RiskAnalyzer(List<RiskRule> rules, int mediumThreshold, int highThreshold) {
+        if (rules.size() > MAX_RULES) {
+            throw new IllegalArgumentException("RiskAnalyzer admite como máximo " + MAX_RULES + " reglas, recibidas: " + rules.size());
+        }
+        this.rules = rules.toArray(new RiskRule[0]);
+        this.weights = new int[this.rules.length];
+        this.servicePatterns = new Pattern[this.rules.length];
+        this.osPatterns = new Pattern[this.rules.length];
+        this.mediumThreshold = mediumThreshold;
+        this.highThreshold = highThreshold;
+
+        long serviceMask = 0;
+        long osMask = 0;
+        for (int i = 0; i < this.rules.length; i++) {
+            RiskRule rule = this.rules[i];
+            long bit = 1L << i;
+            weights[i] = rule.getWeight();
+            for (int port : rule.getPorts()) {
+                if (port >= 0 && port <= MAX_PORT) {
+                    portRuleMasks[port] |= bit;
+                }
+            }
+            if (rule.getServicePattern() != null) {
+                servicePatterns[i] = Pattern.compile(rule.getServicePattern(), Pattern.CASE_INSENSITIVE);
+                serviceMask |= bit;
+            }
+            if (rule.getOsPattern() != null) {
+                osPatterns[i] = Pattern.compile(rule.getOsPattern(), Pattern.CASE_INSENSITIVE);
+                osMask |= bit;
+            }
+        }
+        this.serviceRuleMask = serviceMask;
+        this.osRuleMask = osMask;
+    }
+
+    /**
+     * Reglas por defecto: servicios de administración remota y de compartición expuestos, bases de datos
+     * accesibles en red, protocolos en texto plano y sistemas operativos sin soporte.
+     */
+    public static List<RiskRule> defaultRules() {
+        List<RiskRule> rules = new ArrayList<>();
+        rules.add(new RiskRule("RDP expuesto", 40, new int[]{3389}, "ms-wbt-server|\\brdp\\b", null));
+        rules.add(new RiskRule("SMB/NetBIOS expuesto", 35, new int[]{139, 445}, "microsoft-ds|netbios-ssn|\\bsmb", null));
+        rules.add(new RiskRule("Telnet en texto plano", 40, new int[]{23}, "^telnet", null));
+        rules.add(new RiskRule("MSSQL accesible", 30, new int[]{1433, 1434}, "ms-sql", null));
+        rules.add(new RiskRule("VNC expuesto", 30, new int[]{5800, 5900, 5901, 5902}, "^vnc", null));
+        rules.add(new RiskRule("WinRM expuesto", 25, new int[]{5985, 5986}, "wsman|winrm", null));
+        rules.add(new RiskRule("Base de datos accesible", 25, new int[]{3306, 5432, 1521, 27017, 6379, 9200, 11211}, "^(mysql|postgresql|oracle|mongodb|redis|memcache)", null));
+        rules.add(new RiskRule("FTP en texto plano", 20, new int[]{21}, "^ftp\\b", null));
+        rules.add(new RiskRule("MSRPC expuesto", 10, new int[]{135, 593}, "^msrpc", null));
+        rules.add(new RiskRule("SNMP expuesto", 10, new int[]{161}, "^snmp", null));
+        rules.add(new RiskRule("SSH accesible", 5, new int[]{22}, null, null));
+        rules.add(new RiskRule("HTTP sin cifrar", 5, new int[]{80, 8000, 8080}, null, null));
+        rules.add(new RiskRule("Sistema operativo sin soporte", 30, null, null,
+                "windows (xp|2000|vista|7\\b)|windows server (2003|2008)|linux 2\\.[46]"));
+        return rules;
+    }
+
+    /**
+     * Calcula y asigna el nivel de riesgo de todos los dispositivos, en paralelo.
+     * @param devices Dispositivos a evaluar; se modifica su 'riskLevel'.
+     */
+    public void analyze(List<Device> devices) {
+        if (devices == null || devices.isEmpty()) {
+            return;
+        }
+        devices.parallelStream().forEach(device -> device.setRiskLevel(levelFor(score(device))));
+    }
+
+    /**
+     * Devuelve la puntuación de riesgo de un dispositivo: suma de los pesos de las reglas cumplidas más
+     * los puntos por la vulnerabilidad conocida más grave (ver {@link #vulnerabilityPoints(double)}).
+     */
+    public int score(Device device) {
+        long matched = matchRules(device);
+        int score = 0;
+        while (matched != 0) {
+            int rule = Long.numberOfTrailingZeros(matched);
+            score += weights[rule];
+            matched &= matched - 1; // Limpia el bit menos significativo
+        }
+        return score + vulnerabilityPoints(maxCvss(device));
+    }
+
+    /**
+     * Puntos por la CVSS máxima: una vulnerabilidad crítica basta por sí sola para un riesgo "high".
+     */
+    public int vulnerabilityPoints(double maxCvss) {
+        if (maxCvss >= 9.0) {
+            return highThreshold;
+        }
+        if (maxCvss >= 7.0) {
+            return 30;
+        }
+        if (maxCvss >= 4.0) {
+            return 15;
+        }
+        return maxCvss > 0 ? 5 : 0;
+    }
+
+    private static double maxCvss(Device device) {
+        double max = 0;
+        List<Vulnerability> vulnerabilities = device.getVulnerabilities();
+        if (vulnerabilities != null) {
+            for (int i = 0, n = vulnerabilities.size(); i < n; i++) {
+                max = Math.max(max, vulnerabilities.get(i).getCvss());
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Devuelve los nombres de las reglas que cumple un dispositivo (útil para explicar su nivel de riesgo).
+     */
+    public List<String> matchedRuleNames(Device device) {
+        List<String> names = new ArrayList<>();
+        long matched = matchRules(device);
+        while (matched != 0) {
+            names.add(rules[Long.numberOfTrailingZeros(matched)].getName());
+            matched &= matched - 1;
+        }
+        double maxCvss = maxCvss(device);
+        if (maxCvss > 0) {
+            names.add("Vulnerabilidades conocidas (CVSS máx. " + maxCvss + ")");
+        }
+        return names;
+    }
+
+    public String levelFor(int score) {
+        if (score >= highThreshold) {
+            return HIGH;
+        }
+        if (score >= mediumThreshold) {
+            return MEDIUM;
+        }
+        return LOW;
+    }
+
+    private long matchRules(Device device) {
+        long matched = 0;
+
+        List<Integer> openPorts = device.getOpenPorts();
+        if (openPorts != null) {
+            for (int i = 0, n = openPorts.size(); i < n; i++) {
+                Integer port = openPorts.get(i);
+                if (port != null && port >= 0 && port <= MAX_PORT) {
+                    matched |= portRuleMasks[port];
+                }
+            }
+        }
+
+        // Los patrones solo hacen falta si queda alguna regla que los puertos no hayan disparado ya.
+        if ((serviceRuleMask & ~matched) != 0 && device.getServices() != null) {
+            for (String service : device.getServices().values()) {
+                if (service != null) {
+                    matched |= textMask(service, serviceMaskCache, servicePatterns, serviceRuleMask);
+                }
+                if ((serviceRuleMask & ~matched) == 0) {
+                    break;
+                }
+            }
+        }
+
+        String os = device.getOs();
+        if ((osRuleMask & ~matched) != 0 && os != null && !os.isEmpty()) {
+            matched |= textMask(os, osMaskCache, osPatterns, osRuleMask);
+        }
+        return matched;
+    }
+
+    /**
+     * Devuelve la máscara de reglas cuyos patrones coinciden con el texto, memorizada por texto.
+     */
+    private static long textMask(String text, Map<String, Long> cache, Pattern[] patterns, long ruleMask) {
+        Long cached = cache.get(text);
+        if (cached != null) {
+            return cached;
+        }
+        long mask = 0;
+        long pending = ruleMask;
+        while (pending != 0) {
+            int rule = Long.numberOfTrailingZeros(pending);
+            if (patterns[rule].matcher(text).find()) {
+                mask |= 1L << rule;
+            }
+            pending &= pending - 1;
+        }
+        if (cache.size() < MAX_CACHED_TEXTS) {
+            cache.put(text, mask);
+        }
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return "RiskAnalyzer{" +
+               "rules=" + Arrays.toString(rules) +
+               ", mediumThreshold=" + mediumThreshold +
+               ", highThreshold=" + highThreshold +
+               '}';
+    }
+}
@@ -0,0 +1,50 @@
+package com.miproyectored.risk;
+
+/**
+ * Regla de riesgo declarativa. Una regla se cumple si el dispositivo tiene abierto alguno de sus puertos,
+ * si alguno de sus servicios coincide con el patrón de servicio, o si su OS coincide con el patrón de OS.
+ * Las reglas no se evalúan directamente: {@link RiskAnalyzer} las compila una sola vez.
+ */
+public class RiskRule {
+    private final String name;           // Descripción legible de la regla (ej. "RDP expuesto")
+    private final int weight;            // Puntos que suma al riesgo del dispositivo
+    private final int[] ports;           // Puertos TCP que disparan la regla (puede estar vacío)
+    private final String servicePattern; // Regex (sin distinguir mayúsculas) sobre la descripción del servicio, o null
+    private final String osPattern;      // Regex (sin distinguir mayúsculas) sobre el OS detectado, o null
+
+    public RiskRule(String name, int weight, int[] ports, String servicePattern, String osPattern) {
+        this.name = name;
+        this.weight = weight;
+        this.ports = ports != null ? ports : new int[0];
+        this.servicePattern = servicePattern;
+        this.osPattern = osPattern;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int[] getPorts() {
+        return ports;
+    }
+
+    public String getServicePattern() {
+        return servicePattern;
+    }
+
+    public String getOsPattern() {
+        return osPattern;
+    }
+
+    @Override
+    public String toString() {
+        return "RiskRule{" +
+               "name='" + name + '\'' +
+               ", weight=" + weight +
+               '}';
+    }
+}
@@ -1,23 +1,46 @@
 package com.miproyectored.scanner;
 
+import com.miproyectored.journal.ScanJournal;
 import com.miproyectored.model.Device;
-// import com.miproyectored.util.NetworkUtils; // Descomentar si se usa getHostname como fallback
+import com.miproyectored.util.NetworkUtils;
+import com.miproyectored.util.ProcessRunner;
 
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
 import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 public class NmapScanner {
 
+    private static final XmlMapper XML_MAPPER = new XmlMapper();
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Nmap incluye <!DOCTYPE nmaprun>: no se procesan DTDs ni entidades externas
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
     private String nmapPath;
+    private ScanJournal journal; // Opcional: si está configurado, cada host parseado se registra en el diario
+    private volatile ProcessRunner currentRun; // Ejecución de Nmap en curso, para poder cancelarla
 
     public NmapScanner(String nmapPath) {
         this.nmapPath = nmapPath;
@@ -61,23 +84,32 @@ public class NmapScanner {
 
     private boolean isNmapAvailable(String commandOrPath) {
         try {
-            ProcessBuilder pb = new ProcessBuilder(commandOrPath, "-V"); // Nmap version check
-            Process process = pb.start();
-            // Consumir salida para evitar bloqueo del proceso
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                 BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                while (reader.readLine() != null || errorReader.readLine() != null) {
-                    // Descartar salida
-                }
-            }
-            process.waitFor();
-            return process.exitValue() == 0;
+            // Nmap version check; la salida se descarta
+            ProcessRunner.Result result = new ProcessRunner(Arrays.asList(commandOrPath, "-V"))
+                    .setTimeout(10, TimeUnit.SECONDS)
+                    .run();
+            return result.isSuccess();
         } catch (Exception e) {
             // System.err.println("Error verificando Nmap en '" + commandOrPath + "': " + e.getMessage());
             return false;
         }
     }
 
+    /**
+     * Cancela el escaneo en curso (si lo hay) terminando Nmap y sus procesos hijos. Se puede llamar desde
+     * cualquier hilo, por ejemplo un shutdown hook; {@link #scan(String)} devuelve entonces una lista vacía.
+     */
+    public void cancel() {
+        ProcessRunner runner = currentRun;
+        if (runner != null) {
+            runner.cancel();
+        }
+    }
+
+    public void setJournal(ScanJournal journal) {
+        this.journal = journal;
+    }
+
     public List<Device> scan(String target) {
         if (this.nmapPath == null) {
             System.err.println("Ruta de Nmap no configurada o Nmap no disponible. No se puede escanear.");
@@ -96,85 +128,72 @@ public class NmapScanner {
         // command.add("-T4");      // Timing template: Aggressive. Usar con cuidado, puede ser ruidoso. T3 es default.
         command.add("-Pn");         // Tratar todos los hosts como online (saltar descubrimiento de host por ping).
                                     // Útil si los hosts bloquean pings, pero puede ralentizar si muchos IPs no responden.
+        command.add("-n");          // Sin DNS inverso en Nmap: se resuelve después por lotes (ver resolveHostnames)
         // command.add("--max-retries"); command.add("1"); // Reducir reintentos para escaneos más rápidos en redes fiables.
         // command.add("--host-timeout"); command.add("5m"); // Tiempo máximo por host
 
         command.add("-oX");
         command.add("-");
-        command.add(target);
+        for (String singleTarget : target.trim().split("\\s+")) { // Uno o varios objetivos separados por espacios
+            command.add(singleTarget);
+        }
 
         System.out.println("Ejecutando Nmap: " + String.join(" ", command));
-        List<Device> devices = new ArrayList<>();
+        // Se llena desde el hilo que lee la salida de Nmap, host a host según Nmap los escribe
+        List<Device> devices = Collections.synchronizedList(new ArrayList<>());
         long timeoutMinutes = 15; // Establece un tiempo de espera máximo para Nmap (ej. 15 minutos)
 
         try {
-            ProcessBuilder processBuilder = new ProcessBuilder(command);
-            Process process = processBuilder.start();
-
-            StringBuilder xmlOutput = new StringBuilder();
             StringBuilder errorOutput = new StringBuilder();
+            String[] parseError = new String[1];
+            // stdout y stderr se leen a la vez mientras Nmap se ejecuta (ver ProcessRunner). Cada host se registra
+            // en el diario en cuanto se cierra su <host>: si el proceso muere a mitad, lo ya escaneado no se pierde.
+            ProcessRunner runner = new ProcessRunner(command)
+                    .setTimeout(timeoutMinutes, TimeUnit.MINUTES)
+                    .setStdoutConsumer(in -> {
+                        try {
+                            streamHosts(in, device -> {
+                                devices.add(device);
+                                journalDevice(device);
+                            });
+                        } catch (XMLStreamException | IOException e) {
+                            // XML cortado (timeout, cancelación) o no válido: se conservan los hosts ya leídos
+                            parseError[0] = e.getMessage();
+                        }
+                    })
+                    .setStderrConsumer(ProcessRunner.lines(line -> errorOutput.append(line).append(System.lineSeparator())));
+            currentRun = runner;
+            ProcessRunner.Result result;
+            try {
+                result = runner.run();
+            } finally {
+                currentRun = null;
+            }
+            System.out.println("Ejecución de Nmap: " + result + " (" + devices.size() + " hosts activos)");
 
-            // Hilo para leer la salida estándar (stdout) de Nmap
-            Thread outputThread = new Thread(() -> {
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        xmlOutput.append(line).append(System.lineSeparator());
-                    }
-                } catch (Exception e) {
-                    // Manejar o registrar la excepción si es necesario
-                    // System.err.println("Error leyendo stdout de Nmap: " + e.getMessage());
-                }
-            });
-
-            // Hilo para leer la salida de error (stderr) de Nmap
-            Thread errorThread = new Thread(() -> {
-                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                    String line;
-                    while ((line = errorReader.readLine()) != null) {
-                        errorOutput.append(line).append(System.lineSeparator());
-                    }
-                } catch (Exception e) {
-                    // Manejar o registrar la excepción si es necesario
-                    // System.err.println("Error leyendo stderr de Nmap: " + e.getMessage());
+            if (result.isSuccess()) {
+                if (parseError[0] != null) {
+                    System.err.println("Error crítico parseando XML de Nmap: " + parseError[0]);
                 }
-            });
-
-            outputThread.start();
-            errorThread.start();
-
-            // Esperar a que el proceso Nmap termine, con un tiempo de espera
-            boolean finishedInTime = process.waitFor(timeoutMinutes, java.util.concurrent.TimeUnit.MINUTES);
-            
-            // Asegurarse de que los hilos de lectura también terminen
-            // Esperar un poco más por si queda algo en los buffers, especialmente si Nmap terminó rápido o por timeout
-            outputThread.join(5000); 
-            errorThread.join(5000);
-
-            if (finishedInTime) {
-                int exitCode = process.exitValue();
-                if (exitCode == 0) {
-                    System.out.println("Nmap ejecutado correctamente. Parseando salida XML...");
-                    // System.out.println("XML Output:\n" + xmlOutput.toString()); // Para depuración
-                    devices = parseNmapXmlOutputWithJackson(xmlOutput.toString());
-                } else {
-                    System.err.println("Nmap terminó con errores. Código de salida: " + exitCode);
-                    if (errorOutput.length() > 0) {
-                        System.err.println("Errores de Nmap:\n" + errorOutput.toString());
-                    }
-                    if (xmlOutput.length() > 0 && xmlOutput.toString().contains("Failed to open Normal Output File")) {
-                        System.err.println("Nmap puede haber tenido problemas con la salida -oX -. Verifica la instalación y permisos de Nmap.");
-                    }
+                resolveHostnames(devices);
+            } else if (result.isCancelled()) {
+                System.err.println("El escaneo de Nmap fue cancelado (" + devices.size() + " hosts ya registrados en el diario).");
+                return new ArrayList<>();
+            } else if (result.isTimedOut()) {
+                // Nmap excedió el tiempo de espera (el proceso y sus hijos ya se han terminado)
+                System.err.println("Nmap excedió el tiempo de espera de " + timeoutMinutes + " minutos. Se conservan los "
+                        + devices.size() + " hosts recibidos antes del timeout.");
+                if (errorOutput.length() > 0) {
+                    System.err.println("Posibles errores de Nmap (antes del timeout):\n" + errorOutput.toString());
                 }
+                resolveHostnames(devices);
             } else {
-                // Nmap excedió el tiempo de espera
-                System.err.println("Nmap excedió el tiempo de espera de " + timeoutMinutes + " minutos.");
-                process.destroyForcibly(); // Intentar terminar el proceso Nmap
+                System.err.println("Nmap terminó con errores. Código de salida: " + result.getExitCode());
                 if (errorOutput.length() > 0) {
-                    System.err.println("Posibles errores de Nmap (antes del timeout):\n" + errorOutput.toString());
+                    System.err.println("Errores de Nmap:\n" + errorOutput.toString());
                 }
-                 if (xmlOutput.length() > 0) { // También mostrar la salida XML parcial si hubo timeout
-                    System.err.println("Salida XML parcial de Nmap (antes del timeout):\n" + xmlOutput.toString());
+                if (errorOutput.indexOf("Failed to open Normal Output File") >= 0) {
+                    System.err.println("Nmap puede haber tenido problemas con la salida -oX -. Verifica la instalación y permisos de Nmap.");
                 }
             }
 
@@ -185,119 +204,162 @@ public class NmapScanner {
             System.err.println("Error ejecutando Nmap o procesando su salida: " + e.getMessage());
             // e.printStackTrace(); // Para depuración
         }
-        return devices;
+        return new ArrayList<>(devices);
     }
 
-    private List<Device> parseNmapXmlOutputWithJackson(String xmlData) {
-        List<Device> devices = new ArrayList<>();
-        if (xmlData == null || xmlData.trim().isEmpty()) {
-            System.err.println("Datos XML de Nmap vacíos o nulos. No se puede parsear.");
-            return devices;
-        }
-
+    /**
+     * Lee la salida XML de Nmap según llega (StAX) y entrega cada host activo en cuanto se cierra su elemento
+     * &lt;host&gt;; cada &lt;host&gt; se convierte con Jackson igual que el documento completo.
+     */
+    private void streamHosts(InputStream in, Consumer<Device> deviceConsumer) throws XMLStreamException, IOException {
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
         try {
-            XmlMapper xmlMapper = new XmlMapper();
-            // Deshabilitar características que podrían causar problemas con XML complejo o inesperado
-            // xmlMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false); // Ya cubierto por @JsonIgnoreProperties
-            NmapRun nmapRun = xmlMapper.readValue(xmlData, NmapRun.class);
-
-            if (nmapRun != null && nmapRun.hosts != null) {
-                for (NmapHost nmapHost : nmapRun.hosts) {
-                    if (nmapHost.status == null || !"up".equalsIgnoreCase(nmapHost.status.state)) {
-                        continue; // Solo procesar hosts que están "up"
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && "host".equals(reader.getLocalName())) {
+                    Device device = toDevice(XML_MAPPER.readValue(reader, NmapHost.class));
+                    if (device != null) {
+                        deviceConsumer.accept(device);
                     }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
 
-                    String ipAddress = null;
-                    String macAddress = null;
-                    String manufacturer = null;
-
-                    if (nmapHost.addresses != null) {
-                        for (NmapAddress addr : nmapHost.addresses) {
-                            if ("ipv4".equalsIgnoreCase(addr.addrtype)) {
-                                ipAddress = addr.addr;
-                            } else if ("mac".equalsIgnoreCase(addr.addrtype)) {
-                                macAddress = addr.addr;
-                                manufacturer = addr.vendor;
-                            }
-                        }
-                    }
+    /**
+     * Convierte un &lt;host&gt; de Nmap en un Device, o null si el host no está "up" o no tiene dirección IPv4.
+     */
+    private Device toDevice(NmapHost nmapHost) {
+        if (nmapHost.status == null || !"up".equalsIgnoreCase(nmapHost.status.state)) {
+            return null; // Solo procesar hosts que están "up"
+        }
 
-                    if (ipAddress == null) {
-                        System.err.println("Host en XML de Nmap sin dirección IPv4. Saltando host.");
-                        continue; 
-                    }
+        String ipAddress = null;
+        String macAddress = null;
+        String manufacturer = null;
+
+        if (nmapHost.addresses != null) {
+            for (NmapAddress addr : nmapHost.addresses) {
+                if ("ipv4".equalsIgnoreCase(addr.addrtype)) {
+                    ipAddress = addr.addr;
+                } else if ("mac".equalsIgnoreCase(addr.addrtype)) {
+                    macAddress = addr.addr;
+                    manufacturer = addr.vendor;
+                }
+            }
+        }
 
-                    Device device = new Device(ipAddress);
-                    if (macAddress != null) {
-                        device.setMac(macAddress.toUpperCase());
-                        if (manufacturer != null && !manufacturer.isEmpty()) {
-                            device.setManufacturer(manufacturer);
-                        }
-                    }
+        if (ipAddress == null) {
+            System.err.println("Host en XML de Nmap sin dirección IPv4. Saltando host.");
+            return null;
+        }
 
-                    if (nmapHost.hostnames != null && nmapHost.hostnames.hostnames != null) {
-                        for (NmapHostname hn : nmapHost.hostnames.hostnames) {
-                            if ("PTR".equalsIgnoreCase(hn.type) || "user".equalsIgnoreCase(hn.type) || hn.type == null) { 
-                                // "user" es a veces el tipo para nombres de host resueltos, PTR es el más común.
-                                device.setHostname(hn.name);
-                                break; 
-                            }
-                        }
-                    }
-                    
-                    if (nmapHost.ports != null && nmapHost.ports.ports != null) {
-                        List<Integer> openPorts = new ArrayList<>();
-                        Map<Integer, String> services = new HashMap<>();
-                        for (NmapPort nmapPort : nmapHost.ports.ports) {
-                            if (nmapPort.state != null && "open".equalsIgnoreCase(nmapPort.state.state)) {
-                                try {
-                                    // La siguiente línea convierte el 'portid' (String) a 'int'.
-                                    // Esta es la forma correcta de hacerlo.
-                                    int portId = Integer.parseInt(nmapPort.portid); 
-                                    openPorts.add(portId);
-                                    if (nmapPort.service != null) {
-                                        StringBuilder serviceDesc = new StringBuilder(nmapPort.service.name != null ? nmapPort.service.name : "unknown");
-                                        if (nmapPort.service.product != null) serviceDesc.append(" (").append(nmapPort.service.product);
-                                        if (nmapPort.service.version != null) serviceDesc.append(" ").append(nmapPort.service.version);
-                                        if (nmapPort.service.extrainfo != null) serviceDesc.append(" ").append(nmapPort.service.extrainfo);
-                                        if (nmapPort.service.product != null) serviceDesc.append(")");
-                                        services.put(portId, serviceDesc.toString().trim());
-                                    } else {
-                                        services.put(portId, "Unknown service");
-                                    }
-                                } catch (NumberFormatException e) {
-                                    System.err.println("Error parseando portid: " + nmapPort.portid + " para IP: " + ipAddress);
-                                }
-                            }
+        Device device = new Device(ipAddress);
+        if (macAddress != null) {
+            device.setMac(macAddress.toUpperCase());
+            if (manufacturer != null && !manufacturer.isEmpty()) {
+                device.setManufacturer(manufacturer);
+            }
+        }
+
+        if (nmapHost.hostnames != null && nmapHost.hostnames.hostnames != null) {
+            for (NmapHostname hn : nmapHost.hostnames.hostnames) {
+                if ("PTR".equalsIgnoreCase(hn.type) || "user".equalsIgnoreCase(hn.type) || hn.type == null) { 
+                    // "user" es a veces el tipo para nombres de host resueltos, PTR es el más común.
+                    device.setHostname(hn.name);
+                    break; 
+                }
+            }
+        }
+        
+        if (nmapHost.ports != null && nmapHost.ports.ports != null) {
+            List<Integer> openPorts = new ArrayList<>();
+            Map<Integer, String> services = new HashMap<>();
+            for (NmapPort nmapPort : nmapHost.ports.ports) {
+                if (nmapPort.state != null && "open".equalsIgnoreCase(nmapPort.state.state)) {
+                    try {
+                        // La siguiente línea convierte el 'portid' (String) a 'int'.
+                        // Esta es la forma correcta de hacerlo.
+                        int portId = Integer.parseInt(nmapPort.portid); 
+                        openPorts.add(portId);
+                        if (nmapPort.service != null) {
+                            StringBuilder serviceDesc = new StringBuilder(nmapPort.service.name != null ? nmapPort.service.name : "unknown");
+                            if (nmapPort.service.product != null) serviceDesc.append(" (").append(nmapPort.service.product);
+                            if (nmapPort.service.version != null) serviceDesc.append(" ").append(nmapPort.service.version);
+                            if (nmapPort.service.extrainfo != null) serviceDesc.append(" ").append(nmapPort.service.extrainfo);
+                            if (nmapPort.service.product != null) serviceDesc.append(")");
+                            services.put(portId, serviceDesc.toString().trim());
+                        } else {
+                            services.put(portId, "Unknown service");
                         }
-                        device.setOpenPorts(openPorts);
-                        device.setServices(services);
+                    } catch (NumberFormatException e) {
+                        System.err.println("Error parseando portid: " + nmapPort.portid + " para IP: " + ipAddress);
                     }
+                }
+            }
+            device.setOpenPorts(openPorts);
+            device.setServices(services);
+        }
 
-                    if (nmapHost.os != null && nmapHost.os.osmatches != null && !nmapHost.os.osmatches.isEmpty()) {
-                        NmapOsMatch bestOsMatch = nmapHost.os.osmatches.get(0); // Tomar la primera por defecto
-                        // Opcionalmente, buscar la de mayor "accuracy" si hay varias
-                        // for (NmapOsMatch match : nmapHost.os.osmatches) {
-                        //    if (Integer.parseInt(match.accuracy) > Integer.parseInt(bestOsMatch.accuracy)) {
-                        //        bestOsMatch = match;
-                        //    }
-                        // }
-                        device.setOs(bestOsMatch.name + " (Accuracy: " + bestOsMatch.accuracy + "%)");
-                    }
-                    
-                    devices.add(device);
-                    // System.out.println("Dispositivo parseado con Jackson: " + device.getIp()); // Para depuración
+        if (nmapHost.os != null && nmapHost.os.osmatches != null && !nmapHost.os.osmatches.isEmpty()) {
+            NmapOsMatch bestOsMatch = nmapHost.os.osmatches.get(0); // Tomar la primera por defecto
+            // Opcionalmente, buscar la de mayor "accuracy" si hay varias
+            // for (NmapOsMatch match : nmapHost.os.osmatches) {
+            //    if (Integer.parseInt(match.accuracy) > Integer.parseInt(bestOsMatch.accuracy)) {
+            //        bestOsMatch = match;
+            //    }
+            // }
+            device.setOs(bestOsMatch.name + " (Accuracy: " + bestOsMatch.accuracy + "%)");
+        }
+
+        return device;
+    }
+
+    /**
+     * Resuelve en un solo lote (consultas PTR en paralelo) los nombres de los dispositivos que aún no tienen uno.
+     */
+    private void resolveHostnames(List<Device> devices) {
+        List<String> unresolved = new ArrayList<>();
+        for (Device device : devices) {
+            if (device.getHostname() == null || device.getHostname().equals(device.getIp())) {
+                unresolved.add(device.getIp());
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return;
+        }
+        Map<String, String> hostnames = NetworkUtils.getHostnames(unresolved);
+        for (Device device : devices) {
+            String hostname = hostnames.get(device.getIp());
+            if (hostname != null) {
+                device.setHostname(hostname);
+                if (journal != null) {
+                    // El host ya se registró al recibirlo de Nmap; un HOST_UP repetido completa su nombre
+                    journal.hostUp(device.getIp(), hostname, device.getMac(), device.getManufacturer());
                 }
-            } else {
-                 System.out.println("NmapRun o nmapRun.hosts es nulo después del parseo XML.");
             }
-        } catch (Exception e) {
-            System.err.println("Error crítico parseando XML de Nmap con Jackson: " + e.getMessage());
-            // e.printStackTrace(); // Descomentar para traza completa durante el desarrollo
-            // Podrías considerar guardar el XML problemático para análisis
-            // System.err.println("XML problemático:\n" + xmlData);
         }
-        return devices;
+    }
+
+    /**
+     * Registra en el diario (si hay uno configurado) los eventos de un dispositivo ya parseado.
+     */
+    private void journalDevice(Device device) {
+        if (journal == null) {
+            return;
+        }
+        journal.hostUp(device.getIp(), device.getHostname(), device.getMac(), device.getManufacturer());
+        for (Integer port : device.getOpenPorts()) {
+            journal.portOpen(device.getIp(), port);
+            String service = device.getServices().get(port);
+            if (service != null) {
+                journal.serviceIdentified(device.getIp(), port, service);
+            }
+        }
+        if (device.getOs() != null) {
+            journal.osMatch(device.getIp(), device.getOs());
+        }
     }
 
     // --- Clases POJO para parsear XML de Nmap con Jackson ---
@@ -0,0 +1,117 @@
+package com.miproyectored.util;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vigila las interfaces de red y avisa cuando aparece o desaparece una red (interfaces VLAN, túneles VPN...).
+ *
+ * Cada sondeo toma una instantánea de {@link NetworkUtils#detectLocalNetworksByInterface(boolean)} y la compara
+ * con la anterior; solo si cambió se calcula qué redes se añadieron o eliminaron. Así el coste habitual de un sondeo
+ * es enumerar las interfaces y comparar dos mapas pequeños.
+ */
+public class NetworkInterfaceWatcher implements Closeable {
+
+    /**
+     * Recibe los cambios de red. Se invoca desde el hilo del vigilante: no debería bloquear mucho tiempo.
+     */
+    public interface Listener {
+        void onNetworkAdded(String interfaceName, String networkCIDR);
+
+        void onNetworkRemoved(String interfaceName, String networkCIDR);
+    }
+
+    private final long pollIntervalMs;
+    private final Listener listener;
+    private ScheduledExecutorService scheduler;
+    private volatile Map<String, List<String>> currentNetworks = Collections.emptyMap();
+
+    public NetworkInterfaceWatcher(long pollIntervalMs, Listener listener) {
+        this.pollIntervalMs = pollIntervalMs;
+        this.listener = listener;
+    }
+
+    /**
+     * Toma la instantánea inicial (sin generar eventos) y empieza a sondear periódicamente.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        currentNetworks = NetworkUtils.detectLocalNetworksByInterface(false);
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "network-interface-watcher");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::pollSafely, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sondea las interfaces una vez y notifica las diferencias con el sondeo anterior.
+     * @return true si hubo algún cambio.
+     */
+    public boolean poll() {
+        Map<String, List<String>> snapshot = NetworkUtils.detectLocalNetworksByInterface(false);
+        Map<String, List<String>> previous = currentNetworks;
+        if (snapshot.equals(previous)) {
+            return false; // Caso habitual: nada cambió
+        }
+        currentNetworks = snapshot;
+
+        for (Map.Entry<String, List<String>> entry : previous.entrySet()) {
+            List<String> now = snapshot.getOrDefault(entry.getKey(), Collections.emptyList());
+            for (String network : entry.getValue()) {
+                if (!now.contains(network)) {
+                    System.out.println("Red eliminada: " + network + " (interfaz " + entry.getKey() + ")");
+                    listener.onNetworkRemoved(entry.getKey(), network);
+                }
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : snapshot.entrySet()) {
+            List<String> before = previous.getOrDefault(entry.getKey(), Collections.emptyList());
+            for (String network : entry.getValue()) {
+                if (!before.contains(network)) {
+                    System.out.println("Nueva red detectada: " + network + " (interfaz " + entry.getKey() + ")");
+                    listener.onNetworkAdded(entry.getKey(), network);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void pollSafely() {
+        try {
+            poll();
+        } catch (RuntimeException e) {
+            // Una excepción no capturada cancelaría el sondeo periódico
+            System.err.println("Error vigilando las interfaces de red: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Copia de las redes vistas en el último sondeo, agrupadas por interfaz.
+     */
+    public Map<String, List<String>> getCurrentNetworks() {
+        Map<String, List<String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : currentNetworks.entrySet()) {
+            copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -5,21 +5,52 @@ import java.net.InetAddress;
 import java.net.InterfaceAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
-import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
 
 public class NetworkUtils {
 
+    private static ReverseDnsResolver dnsResolver; // Compartido: su caché sirve para todo el proceso
+
     /**
      * Detecta las redes locales (formato CIDR, ej. "192.168.1.0/24") a las que la máquina está conectada.
      * Intenta excluir interfaces de loopback y virtuales.
+     * Solo elimina CIDRs idénticos; para fusionar redes solapadas usa {@link TargetPlanner}.
      * @return Una lista de strings, donde cada string es una dirección de red en notación CIDR.
      */
     public static List<String> detectLocalNetworks() {
         List<String> networks = new ArrayList<>();
+        for (List<String> interfaceNetworks : detectLocalNetworksByInterface().values()) {
+            for (String networkCIDR : interfaceNetworks) {
+                if (!networks.contains(networkCIDR)) { // Evitar duplicados
+                    networks.add(networkCIDR);
+                }
+            }
+        }
+        return networks;
+    }
+
+    /**
+     * Igual que {@link #detectLocalNetworks()}, pero agrupando las redes por interfaz.
+     * @return Mapa nombre de interfaz -> redes en notación CIDR, en el orden en que el sistema las enumera.
+     */
+    public static Map<String, List<String>> detectLocalNetworksByInterface() {
+        return detectLocalNetworksByInterface(true);
+    }
+
+    /**
+     * @param verbose Si es false no se imprime cada red detectada (útil al sondear periódicamente, ver
+     *                {@link NetworkInterfaceWatcher}).
+     */
+    public static Map<String, List<String>> detectLocalNetworksByInterface(boolean verbose) {
+        Map<String, List<String>> networksByInterface = new LinkedHashMap<>();
         try {
             Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
             for (NetworkInterface ni : Collections.list(interfaces)) {
@@ -40,9 +71,12 @@ public class NetworkUtils {
                             String networkAddress = calculateNetworkAddress(ipAddress.getHostAddress(), prefixLength);
                             if (networkAddress != null) {
                                 String networkCIDR = networkAddress + "/" + prefixLength;
+                                List<String> networks = networksByInterface.computeIfAbsent(ni.getName(), k -> new ArrayList<>());
                                 if (!networks.contains(networkCIDR)) { // Evitar duplicados
                                     networks.add(networkCIDR);
-                                    System.out.println("Interfaz: " + ni.getDisplayName() + " -> Red detectada: " + networkCIDR);
+                                    if (verbose) {
+                                        System.out.println("Interfaz: " + ni.getDisplayName() + " -> Red detectada: " + networkCIDR);
+                                    }
                                 }
                             }
                         }
@@ -53,7 +87,7 @@ public class NetworkUtils {
             System.err.println("Error al acceder a las interfaces de red: " + e.getMessage());
             // Podrías devolver una lista vacía o una red por defecto aquí si lo deseas
         }
-        return networks;
+        return networksByInterface;
     }
 
     /**
@@ -64,75 +98,356 @@ public class NetworkUtils {
      * @return La dirección de red calculada como un String, o null si hay un error.
      */
     public static String calculateNetworkAddress(String ip, short prefixLength) {
-        try {
-            InetAddress inetAddress = InetAddress.getByName(ip);
-            byte[] ipBytes = inetAddress.getAddress(); // Obtiene la IP como un array de bytes
-
-            // Aseguramos que es una IPv4 (4 bytes)
-            if (ipBytes.length != 4) {
-                System.err.println("calculateNetworkAddress solo soporta IPv4. IP recibida: " + ip);
-                return null;
-            }
-
-            // Convertimos los 4 bytes de la IP a un entero de 32 bits
-            int ipInt = ((ipBytes[0] & 0xFF) << 24) |
-                        ((ipBytes[1] & 0xFF) << 16) |
-                        ((ipBytes[2] & 0xFF) << 8)  |
-                        (ipBytes[3] & 0xFF);
-
-            // Creamos la máscara de red como un entero.
-            // -1 en binario son todos los bits a 1.
-            // Desplazamos a la izquierda (32 - prefixLength) bits. Esto pone a 0 los bits del host.
-            // Ejemplo: prefixLength = 24. (32-24) = 8.  -1 << 8  (11111111... << 8)
-            // Esto resulta en una máscara con 'prefixLength' bits a 1 seguidos de (32-prefixLength) bits a 0.
-            // ej. /24 -> 11111111.11111111.11111111.00000000
-            int mask = -1 << (32 - prefixLength);
-
-            // Aplicamos la máscara a la IP usando un AND bit a bit.
-            // Esto pone a cero los bits de la porción de host de la IP, revelando la dirección de red.
-            int networkInt = ipInt & mask;
-
-            // Convertimos el entero de la dirección de red de nuevo a un array de 4 bytes
-            byte[] networkBytes = new byte[] {
-                (byte) (networkInt >>> 24),          // Extrae el primer byte (el más significativo)
-                (byte) ((networkInt >>> 16) & 0xFF), // Extrae el segundo byte
-                (byte) ((networkInt >>> 8) & 0xFF),  // Extrae el tercer byte
-                (byte) (networkInt & 0xFF)           // Extrae el cuarto byte (el menos significativo)
-            };
-
-            // Convertimos el array de bytes de la dirección de red a un String (ej. "192.168.1.0")
-            return InetAddress.getByAddress(networkBytes).getHostAddress();
-
-        } catch (UnknownHostException e) {
-            System.err.println("Error al procesar la dirección IP '" + ip + "': " + e.getMessage());
+        long ipValue = parseIpv4(ip);
+        if (ipValue < 0) {
+            // Solo se admite IPv4 en notación decimal con puntos
+            System.err.println("calculateNetworkAddress solo soporta IPv4. IP recibida: " + ip);
             return null;
         }
+        // La máscara pone a cero los bits de host (ej. /24 -> 11111111.11111111.11111111.00000000)
+        return formatIpv4(networkAddress((int) ipValue, prefixLength));
     }
 
     /**
      * Intenta resolver el nombre de host para una dirección IP dada.
+     * Usa el resolvedor DNS inverso compartido, con caché (también de fallos), en lugar de la búsqueda
+     * bloqueante de InetAddress. Para muchas IPs, usa {@link #getHostnames(Collection)}.
      * @param ipAddress La dirección IP a resolver.
      * @return El nombre de host si se resuelve, o la misma dirección IP si no.
      */
     public static String getHostname(String ipAddress) {
-        try {
-            InetAddress addr = InetAddress.getByName(ipAddress);
-            // getHostName() intentará una búsqueda DNS inversa.
-            // Si falla o toma mucho tiempo, getCanonicalHostName() puede ser una alternativa,
-            // pero también puede ser lento.
-            String hostname = addr.getHostName();
-            if (hostname.equals(ipAddress)) {
-                // Si getHostName() devuelve la IP, es que no pudo resolver.
-                // Podríamos intentar con getCanonicalHostName() como fallback,
-                // pero a menudo tiene el mismo resultado o es más lento.
-                // String canonicalHostname = addr.getCanonicalHostName();
-                // return canonicalHostname;
-                return ipAddress; // No se pudo resolver, devolvemos la IP
+        String hostname = getDnsResolver().resolve(ipAddress);
+        return hostname != null ? hostname : ipAddress; // No se pudo resolver, devolvemos la IP
+    }
+
+    /**
+     * Resuelve los nombres de host de muchas IPs a la vez (consultas PTR en paralelo).
+     * @param ipAddresses Direcciones IP a resolver.
+     * @return Mapa IP -> nombre de host; las IPs sin nombre se mapean a sí mismas.
+     */
+    public static Map<String, String> getHostnames(Collection<String> ipAddresses) {
+        Map<String, String> hostnames = getDnsResolver().resolveAll(ipAddresses);
+        for (Map.Entry<String, String> entry : hostnames.entrySet()) {
+            if (entry.getValue() == null) {
+                entry.setValue(entry.getKey());
+            }
+        }
+        return hostnames;
+    }
+
+    public static synchronized ReverseDnsResolver getDnsResolver() {
+        if (dnsResolver == null) {
+            dnsResolver = new ReverseDnsResolver();
+        }
+        return dnsResolver;
+    }
+
+    // ------------------------------------------------------------------------------------------
+    // Aritmética IPv4/CIDR con enteros primitivos.
+    //
+    // Las direcciones se representan como 'int' (bits de la IP tal cual) y los rangos como 'long'
+    // sin signo (0 .. 2^32-1) para poder comparar y sumar sin desbordamientos. Un conjunto de rangos es
+    // un long[] plano con pares [primero0, ultimo0, primero1, ultimo1, ...], ambos extremos inclusivos.
+    // Ninguno de estos métodos reserva memoria salvo los que devuelven arrays o Strings nuevos.
+    // ------------------------------------------------------------------------------------------
+
+    public static final long IPV4_MAX = 0xFFFFFFFFL;
+
+    /**
+     * Parsea una IPv4 en notación decimal con puntos sin crear objetos intermedios.
+     * @param text Texto que contiene la IP.
+     * @param from Índice inicial (inclusivo).
+     * @param to Índice final (exclusivo).
+     * @return La IP como valor sin signo (0 .. 2^32-1), o -1 si el texto no es una IPv4 válida.
+     */
+    public static long parseIpv4(CharSequence text, int from, int to) {
+        long result = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                result = (result << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (octets != 3 || value < 0) {
+            return -1;
+        }
+        return (result << 8) | value;
+    }
+
+    public static long parseIpv4(CharSequence text) {
+        return parseIpv4(text, 0, text.length());
+    }
+
+    /**
+     * Escribe una IPv4 en notación decimal con puntos sobre un StringBuilder existente.
+     * @return El mismo StringBuilder, para encadenar llamadas.
+     */
+    public static StringBuilder appendIpv4(StringBuilder sb, int ip) {
+        return sb.append((ip >>> 24) & 0xFF).append('.')
+                 .append((ip >>> 16) & 0xFF).append('.')
+                 .append((ip >>> 8) & 0xFF).append('.')
+                 .append(ip & 0xFF);
+    }
+
+    public static String formatIpv4(int ip) {
+        return appendIpv4(new StringBuilder(15), ip).toString();
+    }
+
+    /**
+     * Máscara de red para una longitud de prefijo (0..32). Ojo: en Java "-1 << 32" vale -1, por eso /0 es un caso aparte.
+     */
+    public static int prefixMask(int prefixLength) {
+        return prefixLength <= 0 ? 0 : -1 << (32 - Math.min(prefixLength, 32));
+    }
+
+    public static int networkAddress(int ip, int prefixLength) {
+        return ip & prefixMask(prefixLength);
+    }
+
+    public static int broadcastAddress(int ip, int prefixLength) {
+        return ip | ~prefixMask(prefixLength);
+    }
+
+    /**
+     * Parsea "a.b.c.d/n" (o una IP suelta, que se trata como /32) y lo empaqueta en un long:
+     * los 32 bits altos son la dirección de red (ya normalizada con la máscara) y los 8 bajos el prefijo.
+     * @return El CIDR empaquetado, o -1 si el texto no es válido.
+     */
+    public static long parseCidr(CharSequence text) {
+        int length = text.length();
+        int slash = -1;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(i) == '/') {
+                slash = i;
+                break;
+            }
+        }
+        int prefix = 32;
+        if (slash >= 0) {
+            if (slash == length - 1 || length - slash > 3) {
+                return -1;
+            }
+            prefix = 0;
+            for (int i = slash + 1; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return -1;
+                }
+                prefix = prefix * 10 + (c - '0');
+            }
+            if (prefix > 32) {
+                return -1;
             }
-            return hostname;
-        } catch (UnknownHostException e) {
-            // System.err.println("No se pudo resolver el hostname para: " + ipAddress);
-            return ipAddress; // Devuelve la IP si no se puede resolver
         }
+        long ip = parseIpv4(text, 0, slash >= 0 ? slash : length);
+        if (ip < 0) {
+            return -1;
+        }
+        int network = networkAddress((int) ip, prefix);
+        return ((network & IPV4_MAX) << 8) | prefix;
+    }
+
+    public static int cidrNetwork(long packedCidr) {
+        return (int) (packedCidr >>> 8);
+    }
+
+    public static int cidrPrefix(long packedCidr) {
+        return (int) (packedCidr & 0xFF);
+    }
+
+    /** Primera dirección (sin signo) de un CIDR empaquetado. */
+    public static long cidrFirst(long packedCidr) {
+        return packedCidr >>> 8;
+    }
+
+    /** Última dirección (sin signo) de un CIDR empaquetado. */
+    public static long cidrLast(long packedCidr) {
+        return broadcastAddress(cidrNetwork(packedCidr), cidrPrefix(packedCidr)) & IPV4_MAX;
+    }
+
+    public static boolean contains(int network, int prefixLength, int ip) {
+        int mask = prefixMask(prefixLength);
+        return (ip & mask) == (network & mask);
+    }
+
+    public static boolean contains(long packedCidr, int ip) {
+        return contains(cidrNetwork(packedCidr), cidrPrefix(packedCidr), ip);
+    }
+
+    /**
+     * Recorre todas las direcciones de un rango (extremos inclusivos, valores sin signo).
+     */
+    public static void forEachAddress(long first, long last, IntConsumer consumer) {
+        for (long ip = first; ip <= last; ip++) {
+            consumer.accept((int) ip);
+        }
+    }
+
+    /**
+     * Recorre las direcciones de host de un CIDR: en prefijos menores de /31 se omiten la dirección de red y la de broadcast.
+     */
+    public static void forEachHost(long packedCidr, IntConsumer consumer) {
+        long first = cidrFirst(packedCidr);
+        long last = cidrLast(packedCidr);
+        if (cidrPrefix(packedCidr) < 31) {
+            first++;
+            last--;
+        }
+        forEachAddress(first, last, consumer);
+    }
+
+    /**
+     * Divide un rango en como máximo 'shards' subrangos contiguos de tamaño casi igual (difieren como mucho en 1).
+     * @return Pares [primero, ultimo] en un long[] plano.
+     */
+    public static long[] splitRange(long first, long last, int shards) {
+        long size = last - first + 1;
+        if (size <= 0 || shards <= 0) {
+            return new long[0];
+        }
+        int count = (int) Math.min(shards, size);
+        long base = size / count;
+        long remainder = size % count;
+        long[] result = new long[count * 2];
+        long start = first;
+        for (int i = 0; i < count; i++) {
+            long end = start + base - 1 + (i < remainder ? 1 : 0);
+            result[i * 2] = start;
+            result[i * 2 + 1] = end;
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Ordena y fusiona rangos solapados o adyacentes.
+     * @param ranges Pares [primero, ultimo] en un long[] plano (no se modifica).
+     * @return Un conjunto de rangos ordenado y disjunto.
+     */
+    public static long[] mergeRanges(long[] ranges) {
+        int count = ranges.length / 2;
+        if (count == 0) {
+            return new long[0];
+        }
+        // Se empaqueta (primero, índice) para ordenar con Arrays.sort de primitivos, sin objetos por rango.
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (ranges[i * 2] << 31) | i; // primero ocupa 32 bits, índice < 2^31
+        }
+        Arrays.sort(order);
+
+        long[] merged = new long[count * 2];
+        int size = 0;
+        for (long packed : order) {
+            int i = (int) (packed & 0x7FFFFFFF);
+            long first = ranges[i * 2];
+            long last = ranges[i * 2 + 1];
+            if (first > last) {
+                continue;
+            }
+            if (size > 0 && first <= merged[size - 1] + 1) {
+                merged[size - 1] = Math.max(merged[size - 1], last);
+            } else {
+                merged[size++] = first;
+                merged[size++] = last;
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Resta a un conjunto de rangos una lista de exclusiones.
+     * @param ranges Pares [primero, ultimo] (pueden estar desordenados o solapados).
+     * @param exclusions Pares [primero, ultimo] a eliminar.
+     * @return Conjunto ordenado y disjunto con las direcciones de 'ranges' que no están en 'exclusions'.
+     */
+    public static long[] subtractRanges(long[] ranges, long[] exclusions) {
+        long[] base = mergeRanges(ranges);
+        long[] minus = mergeRanges(exclusions);
+        long[] result = new long[base.length + minus.length];
+        int size = 0;
+        int e = 0;
+        for (int r = 0; r < base.length; r += 2) {
+            long first = base[r];
+            long last = base[r + 1];
+            while (e < minus.length && minus[e + 1] < first) {
+                e += 2; // Exclusión completamente anterior al rango
+            }
+            int k = e;
+            while (first <= last && k < minus.length && minus[k] <= last) {
+                if (minus[k] > first) {
+                    result[size++] = first;
+                    result[size++] = minus[k] - 1;
+                }
+                first = Math.max(first, minus[k + 1] + 1);
+                k += 2;
+            }
+            if (first <= last) {
+                result[size++] = first;
+                result[size++] = last;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Comprueba si una dirección pertenece a un conjunto de rangos ordenado y disjunto (búsqueda binaria).
+     */
+    public static boolean rangesContain(long[] sortedRanges, int ip) {
+        long value = ip & IPV4_MAX;
+        int lo = 0;
+        int hi = sortedRanges.length / 2 - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (value < sortedRanges[mid * 2]) {
+                hi = mid - 1;
+            } else if (value > sortedRanges[mid * 2 + 1]) {
+                lo = mid + 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Convierte un rango en la lista mínima de bloques CIDR que lo cubren exactamente (lo que Nmap acepta como objetivos).
+     * @param first Primera dirección (sin signo, inclusiva).
+     * @param last Última dirección (sin signo, inclusiva).
+     * @param out Lista a la que se añaden los bloques en notación CIDR.
+     */
+    public static void appendRangeAsCidrs(long first, long last, List<String> out) {
+        StringBuilder sb = new StringBuilder(18);
+        while (first <= last) {
+            // El bloque más grande alineado en 'first' que no se pasa de 'last'
+            int prefix = first == 0 ? 0 : 32 - Long.numberOfTrailingZeros(first);
+            while (prefix < 32 && first + (1L << (32 - prefix)) - 1 > last) {
+                prefix++;
+            }
+            sb.setLength(0);
+            appendIpv4(sb, (int) first).append('/').append(prefix);
+            out.add(sb.toString());
+            first += 1L << (32 - prefix);
+        }
+    }
+
+    /** Número de direcciones de un conjunto de rangos disjunto. */
+    public static long rangesSize(long[] ranges) {
+        long total = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            total += ranges[i + 1] - ranges[i] + 1;
+        }
+        return total;
     }
 }
\ No newline at end of file
@@ -0,0 +1,336 @@
+package com.miproyectored.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+/**
+ * Ejecuta un proceso externo (ej. Nmap) de forma segura:
+ * <ul>
+ *   <li>stdout y stderr se leen a la vez, en hilos propios, mientras el proceso se ejecuta. Nunca se llena el buffer
+ *       de la tubería, que bloquearía al proceso hasta el timeout.</li>
+ *   <li>Cada salida se entrega a un {@link StreamConsumer} que puede procesarla en streaming (ej. un parser XML).</li>
+ *   <li>Tiempo límite y cancelación ({@link #cancel()} desde otro hilo o interrupción del hilo que espera): en ambos
+ *       casos se termina el proceso y todos sus descendientes.</li>
+ *   <li>Métricas de la ejecución en {@link Result}: tiempo total y bytes leídos de cada salida.</li>
+ *   <li>Si el proceso se termina por timeout o cancelación, el error que eso provoque en un consumidor (ej. XML
+ *       cortado) no oculta el resultado: queda en {@link Result#getConsumerError()}.</li>
+ * </ul>
+ * Cada instancia ejecuta el comando una vez.
+ */
+public class ProcessRunner {
+
+    private static final long KILL_GRACE_MS = 2000;  // Tiempo para terminar limpiamente antes de forzar
+    private static final long DRAIN_GRACE_MS = 5000; // Tiempo para vaciar las salidas cuando el proceso ya terminó
+    private static final long POLL_MS = 100;         // Cada cuánto se comprueba la cancelación
+
+    // Hilos de lectura compartidos por todas las ejecuciones
+    private static final ExecutorService DRAIN_POOL = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "process-runner-drain");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Procesa una de las salidas del proceso. Si deja de leer antes del final, el resto se descarta.
+     */
+    public interface StreamConsumer {
+        void consume(InputStream in) throws IOException;
+    }
+
+    /** Descarta la salida. */
+    public static final StreamConsumer DISCARD = in -> { };
+
+    /** Acumula la salida completa en un buffer. */
+    public static StreamConsumer toBuffer(ByteArrayOutputStream buffer) {
+        return in -> in.transferTo(buffer);
+    }
+
+    /** Entrega la salida línea a línea (UTF-8) según llega. */
+    public static StreamConsumer lines(Consumer<String> lineConsumer) {
+        return in -> {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineConsumer.accept(line);
+            }
+        };
+    }
+
+    /**
+     * Resultado y métricas de una ejecución.
+     */
+    public static class Result {
+        private final int exitCode;
+        private final boolean timedOut;
+        private final boolean cancelled;
+        private final long wallTimeNanos;
+        private final long stdoutBytes;
+        private final long stderrBytes;
+        private final IOException consumerError;
+
+        Result(int exitCode, boolean timedOut, boolean cancelled, long wallTimeNanos, long stdoutBytes, long stderrBytes,
+               IOException consumerError) {
+            this.exitCode = exitCode;
+            this.timedOut = timedOut;
+            this.cancelled = cancelled;
+            this.wallTimeNanos = wallTimeNanos;
+            this.stdoutBytes = stdoutBytes;
+            this.stderrBytes = stderrBytes;
+            this.consumerError = consumerError;
+        }
+
+        /** Código de salida, o -1 si el proceso se terminó por timeout o cancelación. */
+        public int getExitCode() { return exitCode; }
+        public boolean isTimedOut() { return timedOut; }
+        public boolean isCancelled() { return cancelled; }
+        public long getWallTimeMillis() { return TimeUnit.NANOSECONDS.toMillis(wallTimeNanos); }
+        public long getStdoutBytes() { return stdoutBytes; }
+        public long getStderrBytes() { return stderrBytes; }
+        /** Error de un consumidor tras un timeout o cancelación (la salida quedó cortada), o null. */
+        public IOException getConsumerError() { return consumerError; }
+
+        /** @return true si el proceso terminó por sí mismo con código 0. */
+        public boolean isSuccess() {
+            return !timedOut && !cancelled && exitCode == 0;
+        }
+
+        @Override
+        public String toString() {
+            String state = timedOut ? "timeout" : cancelled ? "cancelado" : "código " + exitCode;
+            return state + ", " + getWallTimeMillis() + " ms, " + stdoutBytes + " bytes stdout, " + stderrBytes + " bytes stderr";
+        }
+    }
+
+    private final List<String> command;
+    private long timeoutMs; // 0 = sin límite
+    private byte[] stdin;
+    private StreamConsumer stdoutConsumer = DISCARD;
+    private StreamConsumer stderrConsumer = DISCARD;
+    private volatile boolean cancelled;
+    private volatile Process process;
+
+    public ProcessRunner(List<String> command) {
+        this.command = new ArrayList<>(command);
+    }
+
+    public ProcessRunner setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMs = unit.toMillis(timeout);
+        return this;
+    }
+
+    /** Texto que se escribe en la entrada estándar del proceso (después se cierra). */
+    public ProcessRunner setStdin(String input) {
+        this.stdin = input != null ? input.getBytes(StandardCharsets.UTF_8) : null;
+        return this;
+    }
+
+    public ProcessRunner setStdoutConsumer(StreamConsumer consumer) {
+        this.stdoutConsumer = consumer;
+        return this;
+    }
+
+    public ProcessRunner setStderrConsumer(StreamConsumer consumer) {
+        this.stderrConsumer = consumer;
+        return this;
+    }
+
+    /**
+     * Pide que la ejecución termine. Puede llamarse desde cualquier hilo (ej. un shutdown hook), antes o
+     * durante {@link #run()}: el proceso y sus descendientes se terminan y run() devuelve un resultado cancelado.
+     */
+    public void cancel() {
+        cancelled = true;
+        Process running = process;
+        if (running != null) {
+            destroyTree(running);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Ejecuta el comando y espera a que termine (o a que venza el tiempo límite o se cancele).
+     * @throws IOException Si el proceso no se pudo iniciar o, habiendo terminado por sí mismo, un consumidor falló al
+     *                     procesar la salida. Tras un timeout o cancelación el error va en {@link Result#getConsumerError()}.
+     * @throws InterruptedException Si se interrumpe el hilo que espera; el proceso se termina antes de lanzarla.
+     */
+    public Result run() throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        if (cancelled) {
+            return new Result(-1, false, true, 0, 0, 0, null);
+        }
+        Process started = new ProcessBuilder(command).start();
+        process = started;
+        if (cancelled) { // cancel() pudo llegar mientras se iniciaba
+            destroyTree(started);
+        }
+
+        CountingInputStream stdout = new CountingInputStream(started.getInputStream());
+        CountingInputStream stderr = new CountingInputStream(started.getErrorStream());
+        Future<?> stdoutTask = DRAIN_POOL.submit(() -> drain(stdout, stdoutConsumer));
+        Future<?> stderrTask = DRAIN_POOL.submit(() -> drain(stderr, stderrConsumer));
+        DRAIN_POOL.execute(() -> writeStdin(started)); // Si el proceso no lee su entrada, no bloquea el timeout
+
+        boolean timedOut = false;
+        try {
+            long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (!started.waitFor(POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (cancelled) {
+                    destroyTree(started);
+                    break;
+                }
+                if (timeoutMs > 0 && System.nanoTime() - deadline >= 0) {
+                    timedOut = true;
+                    destroyTree(started);
+                    break;
+                }
+            }
+            started.waitFor(); // Tras destroyTree el proceso termina en como mucho KILL_GRACE_MS
+        } catch (InterruptedException e) {
+            cancelled = true;
+            destroyTree(started);
+            throw e;
+        }
+
+        IOException consumerError = awaitDrain(stdoutTask);
+        IOException stderrError = awaitDrain(stderrTask);
+        if (consumerError == null) {
+            consumerError = stderrError;
+        } else if (stderrError != null) {
+            consumerError.addSuppressed(stderrError);
+        }
+        boolean wasCancelled = cancelled && !timedOut;
+        if (consumerError != null && !timedOut && !wasCancelled) {
+            throw consumerError;
+        }
+        int exitCode = timedOut || wasCancelled ? -1 : started.exitValue();
+        return new Result(exitCode, timedOut, wasCancelled, System.nanoTime() - start, stdout.count, stderr.count,
+                consumerError);
+    }
+
+    private void writeStdin(Process started) {
+        try (OutputStream out = started.getOutputStream()) {
+            if (stdin != null) {
+                out.write(stdin);
+            }
+        } catch (IOException e) {
+            // El proceso cerró su entrada (o ya terminó): no es un error de la ejecución
+        }
+    }
+
+    private static Void drain(CountingInputStream stream, StreamConsumer consumer) throws IOException {
+        try {
+            consumer.consume(stream);
+            byte[] discard = new byte[8192];
+            while (stream.read(discard) >= 0) {
+                // Vaciar lo que el consumidor no leyó para que el proceso no se bloquee
+            }
+        } finally {
+            stream.closeUnderlying();
+        }
+        return null;
+    }
+
+    /**
+     * Espera a que termine la lectura de una salida.
+     * @return El error del consumidor, o null si terminó bien. Lo decide run(): tras un timeout o cancelación
+     *         la salida está cortada y el error es esperable.
+     */
+    private static IOException awaitDrain(Future<?> task) throws InterruptedException {
+        try {
+            task.get(DRAIN_GRACE_MS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                return (IOException) cause;
+            }
+            return new IOException("Error procesando la salida del proceso: " + cause, cause);
+        } catch (TimeoutException e) {
+            // Algún nieto del proceso heredó la tubería y la mantiene abierta: no se espera más
+            task.cancel(true);
+        }
+        return null;
+    }
+
+    /**
+     * Termina el proceso y todos sus descendientes: primero de forma ordenada y, si no acaban, a la fuerza.
+     */
+    private static void destroyTree(Process target) {
+        List<ProcessHandle> descendants = new ArrayList<>();
+        target.descendants().forEach(descendants::add); // Antes de terminar al padre, o quedarían huérfanos
+        descendants.forEach(ProcessHandle::destroy);
+        target.destroy();
+        try {
+            if (!target.waitFor(KILL_GRACE_MS, TimeUnit.MILLISECONDS)) {
+                target.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            target.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+        descendants.stream().filter(ProcessHandle::isAlive).forEach(ProcessHandle::destroyForcibly);
+    }
+
+    /**
+     * Cuenta los bytes leídos. Ignora close(): algunos consumidores (ej. parsers XML) cierran el stream al terminar
+     * y el resto de la salida aún debe vaciarse.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() {
+            // Lo cierra drain() con closeUnderlying()
+        }
+
+        void closeUnderlying() throws IOException {
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package com.miproyectored.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolución DNS inversa (PTR) por lotes. En lugar de llamar a {@code InetAddress.getHostName()} host a host,
+ * envía todas las consultas por un único {@link DatagramChannel} al servidor DNS configurado en el sistema,
+ * con muchas consultas en vuelo a la vez.
+ *
+ * Las respuestas se guardan en una caché que respeta el TTL del registro. Las respuestas negativas (NXDOMAIN y
+ * NOERROR sin PTR) se guardan también (caché negativa, con el TTL mínimo del SOA) y los timeouts durante un
+ * tiempo corto, para no volver a esperar por la misma IP en cada escaneo. Solo se aceptan respuestas cuya
+ * pregunta coincide con la consulta enviada.
+ *
+ * Si no se encuentra el servidor DNS del sistema (p. ej. en Windows, que no tiene /etc/resolv.conf) se usa
+ * {@code InetAddress} en un pool de hilos como alternativa.
+ */
+public class ReverseDnsResolver implements Closeable {
+
+    private static final int DNS_PORT = 53;
+    private static final int TYPE_PTR = 12;
+    private static final int TYPE_SOA = 6;
+    private static final int RCODE_NOERROR = 0;
+    private static final int RCODE_NXDOMAIN = 3;
+    private static final long DEFAULT_TIMEOUT_MS = 1500;
+    private static final int DEFAULT_RETRIES = 1;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 256;
+    private static final long DEFAULT_NEGATIVE_TTL_S = 300;  // Respuesta negativa sin SOA
+    private static final long FAILURE_TTL_S = 60;            // Timeouts y SERVFAIL
+    private static final long FALLBACK_TTL_S = 300;          // Nombres de InetAddress (no dan el TTL del registro)
+    private static final long MAX_TTL_S = 86400;
+
+    private final InetSocketAddress nameserver; // null: se usa InetAddress como alternativa
+    private final long timeoutMs;
+    private final int retries;
+    private final int maxInFlight;
+    private final Map<Integer, CacheEntry> cache = new ConcurrentHashMap<>();
+    private ExecutorService fallbackExecutor;
+
+    public ReverseDnsResolver() {
+        this(findSystemNameserver(), DEFAULT_TIMEOUT_MS, DEFAULT_RETRIES, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param nameserver Servidor DNS al que enviar las consultas (permite usar un servidor de pruebas local),
+     *                   o null para resolver con InetAddress.
+     * @param timeoutMs Tiempo de espera por intento.
+     * @param retries Reintentos por consulta tras un timeout.
+     * @param maxInFlight Máximo de consultas sin responder a la vez.
+     */
+    public ReverseDnsResolver(InetSocketAddress nameserver, long timeoutMs, int retries, int maxInFlight) {
+        this.nameserver = nameserver;
+        this.timeoutMs = timeoutMs;
+        this.retries = retries;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Lee el primer 'nameserver' IPv4 de /etc/resolv.conf.
+     * @return La dirección del servidor DNS, o null si no se encuentra.
+     */
+    public static InetSocketAddress findSystemNameserver() {
+        Path resolvConf = Paths.get("/etc/resolv.conf");
+        if (!Files.isReadable(resolvConf)) {
+            return null;
+        }
+        try {
+            for (String line : Files.readAllLines(resolvConf)) {
+                line = line.trim();
+                if (line.startsWith("nameserver")) {
+                    String address = line.substring("nameserver".length()).trim();
+                    if (NetworkUtils.parseIpv4(address) >= 0) {
+                        return new InetSocketAddress(InetAddress.getByName(address), DNS_PORT);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("No se pudo leer /etc/resolv.conf: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Resuelve una sola IP (usa la caché si hay una entrada vigente).
+     * @return El nombre de host, o null si la IP no tiene registro PTR o no hubo respuesta.
+     */
+    public String resolve(String ip) {
+        return resolveAll(Collections.singletonList(ip)).get(ip);
+    }
+
+    /**
+     * Resuelve un lote de IPs en paralelo.
+     * @param ips Direcciones IPv4 en notación decimal con puntos.
+     * @return Mapa IP -> nombre de host (null si no se pudo resolver), con todas las IPs válidas de la entrada.
+     */
+    public Map<String, String> resolveAll(Collection<String> ips) {
+        Map<String, String> results = new LinkedHashMap<>();
+        ArrayDeque<Query> pending = new ArrayDeque<>();
+        long now = System.nanoTime();
+
+        for (String ip : ips) {
+            long value = ip != null ? NetworkUtils.parseIpv4(ip) : -1;
+            if (value < 0 || results.containsKey(ip)) {
+                continue;
+            }
+            CacheEntry cached = cache.get((int) value);
+            if (cached != null && cached.expiresAtNanos - now > 0) {
+                results.put(ip, cached.hostname);
+            } else {
+                results.put(ip, null);
+                pending.add(new Query(ip, (int) value));
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            if (nameserver != null) {
+                try {
+                    resolveWithChannel(new ArrayDeque<>(pending), results);
+                } catch (IOException e) {
+                    System.err.println("Error en la resolución DNS inversa por lotes: " + e.getMessage()
+                            + ". Se usa la resolución del sistema.");
+                    resolveWithInetAddress(pending, results);
+                }
+            } else {
+                resolveWithInetAddress(pending, results);
+            }
+        }
+        return results;
+    }
+
+    private void resolveWithChannel(ArrayDeque<Query> queue, Map<String, String> results) throws IOException {
+        Map<Integer, Query> inFlight = new HashMap<>();
+        ByteBuffer sendBuffer = ByteBuffer.allocate(512);
+        ByteBuffer receiveBuffer = ByteBuffer.allocate(4096);
+        int nextId = ThreadLocalRandom.current().nextInt(0x10000);
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+
+        try (DatagramChannel channel = DatagramChannel.open();
+             Selector selector = Selector.open()) {
+            channel.configureBlocking(false);
+            channel.connect(nameserver);
+            channel.register(selector, SelectionKey.OP_READ);
+
+            while (!queue.isEmpty() || !inFlight.isEmpty()) {
+                // 1. Llenar la ventana de consultas en vuelo
+                while (!queue.isEmpty() && inFlight.size() < maxInFlight) {
+                    Query query = queue.poll();
+                    while (inFlight.containsKey(nextId)) {
+                        nextId = (nextId + 1) & 0xFFFF;
+                    }
+                    query.id = nextId;
+                    nextId = (nextId + 1) & 0xFFFF;
+                    send(channel, sendBuffer, query, timeoutNanos);
+                    inFlight.put(query.id, query);
+                }
+
+                // 2. Esperar respuestas hasta el próximo vencimiento
+                long now = System.nanoTime();
+                long nextDeadline = Long.MAX_VALUE;
+                for (Query query : inFlight.values()) {
+                    nextDeadline = Math.min(nextDeadline, query.deadlineNanos);
+                }
+                long waitMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(nextDeadline - now));
+                if (selector.select(waitMs) > 0) {
+                    selector.selectedKeys().clear();
+                    while (true) {
+                        receiveBuffer.clear();
+                        if (channel.receive(receiveBuffer) == null) {
+                            break;
+                        }
+                        receiveBuffer.flip();
+                        handleResponse(receiveBuffer, inFlight, results);
+                    }
+                }
+
+                // 3. Reintentar o abandonar las consultas vencidas
+                now = System.nanoTime();
+                for (Query query : inFlight.values().toArray(new Query[0])) {
+                    if (now - query.deadlineNanos < 0) {
+                        continue;
+                    }
+                    if (query.attempts <= retries) {
+                        send(channel, sendBuffer, query, timeoutNanos);
+                    } else {
+                        inFlight.remove(query.id);
+                        store(query, null, FAILURE_TTL_S);
+                    }
+                }
+            }
+        }
+    }
+
+    private void send(DatagramChannel channel, ByteBuffer buffer, Query query, long timeoutNanos) throws IOException {
+        buffer.clear();
+        buffer.putShort((short) query.id);
+        buffer.putShort((short) 0x0100); // Consulta estándar con recursión deseada (RD)
+        buffer.putShort((short) 1);      // QDCOUNT
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        buffer.putShort((short) 0);
+        for (String label : reverseName(query.address).split("\\.")) {
+            putLabel(buffer, label);
+        }
+        buffer.put((byte) 0);
+        buffer.putShort((short) TYPE_PTR);
+        buffer.putShort((short) 1); // IN
+        buffer.flip();
+        channel.write(buffer);
+        query.attempts++;
+        query.deadlineNanos = System.nanoTime() + timeoutNanos;
+    }
+
+    /**
+     * QNAME de la consulta PTR: d.c.b.a.in-addr.arpa
+     */
+    private static String reverseName(int address) {
+        StringBuilder name = new StringBuilder();
+        for (int shift = 0; shift <= 24; shift += 8) {
+            name.append((address >>> shift) & 0xFF).append('.');
+        }
+        return name.append("in-addr.arpa").toString();
+    }
+
+    private static void putLabel(ByteBuffer buffer, String label) {
+        buffer.put((byte) label.length());
+        for (int i = 0; i < label.length(); i++) {
+            buffer.put((byte) label.charAt(i));
+        }
+    }
+
+    private void handleResponse(ByteBuffer message, Map<Integer, Query> inFlight, Map<String, String> results) {
+        if (message.remaining() < 12) {
+            return;
+        }
+        int id = message.getShort(0) & 0xFFFF;
+        Query query = inFlight.get(id);
+        if (query == null) {
+            return; // Respuesta tardía a una consulta ya reintentada o abandonada
+        }
+        try {
+            int flags = message.getShort(2) & 0xFFFF;
+            int rcode = flags & 0x0F;
+            int questions = message.getShort(4) & 0xFFFF;
+            int answers = message.getShort(6) & 0xFFFF;
+            int authorities = message.getShort(8) & 0xFFFF;
+            int pos = 12;
+
+            // El ID es solo de 16 bits: se comprueba además que la pregunta sea la de la consulta enviada
+            if (questions != 1) {
+                return;
+            }
+            StringBuilder questionName = new StringBuilder();
+            readName(message, pos, questionName);
+            pos = skipName(message, pos);
+            int questionType = message.getShort(pos) & 0xFFFF;
+            int questionClass = message.getShort(pos + 2) & 0xFFFF;
+            pos += 4;
+            if (questionType != TYPE_PTR || questionClass != 1
+                    || !questionName.toString().equalsIgnoreCase(reverseName(query.address))) {
+                return; // Respuesta que no corresponde a esta consulta: se ignora y la consulta sigue en vuelo
+            }
+
+            String hostname = null;
+            long ttl = DEFAULT_NEGATIVE_TTL_S;
+            for (int i = 0; i < answers && hostname == null; i++) {
+                pos = skipName(message, pos);
+                int type = message.getShort(pos) & 0xFFFF;
+                long recordTtl = message.getInt(pos + 4) & 0xFFFFFFFFL;
+                int rdLength = message.getShort(pos + 8) & 0xFFFF;
+                int rdata = pos + 10;
+                if (type == TYPE_PTR) {
+                    StringBuilder name = new StringBuilder();
+                    readName(message, rdata, name);
+                    hostname = name.toString();
+                    ttl = recordTtl;
+                }
+                pos = rdata + rdLength;
+            }
+
+            if (hostname == null && (rcode == RCODE_NXDOMAIN || rcode == RCODE_NOERROR)) {
+                // Caché negativa de NXDOMAIN y NODATA: TTL = min(TTL del SOA, campo MINIMUM del SOA) según RFC 2308
+                for (int i = 0; i < authorities; i++) {
+                    pos = skipName(message, pos);
+                    int type = message.getShort(pos) & 0xFFFF;
+                    long recordTtl = message.getInt(pos + 4) & 0xFFFFFFFFL;
+                    int rdLength = message.getShort(pos + 8) & 0xFFFF;
+                    if (type == TYPE_SOA && rdLength >= 20) {
+                        long minimum = message.getInt(pos + 10 + rdLength - 4) & 0xFFFFFFFFL;
+                        ttl = Math.min(recordTtl, minimum);
+                        break;
+                    }
+                    pos += 10 + rdLength;
+                }
+            } else if (hostname == null) {
+                ttl = FAILURE_TTL_S; // SERVFAIL, REFUSED u otro error
+            }
+
+            inFlight.remove(id);
+            store(query, hostname, ttl);
+            results.put(query.ip, hostname);
+        } catch (IndexOutOfBoundsException e) {
+            // Respuesta truncada o malformada: se deja que la consulta venza y se reintente
+        }
+    }
+
+    private void store(Query query, String hostname, long ttlSeconds) {
+        long ttl = Math.max(1, Math.min(ttlSeconds, MAX_TTL_S));
+        cache.put(query.address, new CacheEntry(hostname, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttl)));
+    }
+
+    private static int skipName(ByteBuffer message, int pos) {
+        while (true) {
+            int length = message.get(pos) & 0xFF;
+            if (length == 0) {
+                return pos + 1;
+            }
+            if ((length & 0xC0) == 0xC0) {
+                return pos + 2; // Puntero de compresión
+            }
+            pos += 1 + length;
+        }
+    }
+
+    private static void readName(ByteBuffer message, int pos, StringBuilder out) {
+        int jumps = 0;
+        while (true) {
+            int length = message.get(pos) & 0xFF;
+            if (length == 0) {
+                return;
+            }
+            if ((length & 0xC0) == 0xC0) {
+                if (++jumps > 16) {
+                    throw new IndexOutOfBoundsException("Bucle de compresión en nombre DNS");
+                }
+                pos = ((length & 0x3F) << 8) | (message.get(pos + 1) & 0xFF);
+                continue;
+            }
+            if (out.length() > 0) {
+                out.append('.');
+            }
+            for (int i = 1; i <= length; i++) {
+                out.append((char) (message.get(pos + i) & 0xFF));
+            }
+            pos += 1 + length;
+        }
+    }
+
+    private void resolveWithInetAddress(Collection<Query> queries, Map<String, String> results) {
+        ExecutorService executor = fallbackExecutor();
+        Map<Query, Future<String>> futures = new LinkedHashMap<>();
+        for (Query query : queries) {
+            futures.put(query, executor.submit(() -> {
+                String name = InetAddress.getByName(query.ip).getHostName();
+                return name.equals(query.ip) ? null : name; // getHostName() devuelve la IP si no resuelve
+            }));
+        }
+        for (Map.Entry<Query, Future<String>> entry : futures.entrySet()) {
+            String hostname = null;
+            try {
+                hostname = entry.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // UnknownHostException u otro fallo: sin nombre
+            }
+            store(entry.getKey(), hostname, hostname != null ? FALLBACK_TTL_S : FAILURE_TTL_S);
+            results.put(entry.getKey().ip, hostname);
+        }
+    }
+
+    private synchronized ExecutorService fallbackExecutor() {
+        if (fallbackExecutor == null) {
+            fallbackExecutor = Executors.newFixedThreadPool(Math.min(maxInFlight, 32), r -> {
+                Thread t = new Thread(r, "reverse-dns");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        return fallbackExecutor;
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (fallbackExecutor != null) {
+            fallbackExecutor.shutdownNow();
+            fallbackExecutor = null;
+        }
+    }
+
+    private static class Query {
+        final String ip;
+        final int address;
+        int id;
+        int attempts;
+        long deadlineNanos;
+
+        Query(String ip, int address) {
+            this.ip = ip;
+            this.address = address;
+        }
+    }
+
+    private static class CacheEntry {
+        final String hostname; // null: entrada negativa
+        final long expiresAtNanos;
+
+        CacheEntry(String hostname, long expiresAtNanos) {
+            this.hostname = hostname;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.miproyectored.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Planificador de objetivos de escaneo. Normaliza todos los objetivos (CIDRs, IPs sueltas y rangos
+ * "a.b.c.d-e.f.g.h") a conjuntos de intervalos, fusiona los solapamientos, resta las exclusiones y asigna
+ * cada dirección a exactamente un propietario (interfaz de red o shard).
+ *
+ * Ejemplo: eth0 con 10.0.0.0/16 y eth1 con 10.0.5.0/24 producen dos planes disjuntos; la /24 se asigna a eth1
+ * (el propietario con la red más específica) y eth0 escanea el resto de la /16 una sola vez.
+ */
+public class TargetPlanner {
+
+    private final Map<String, List<long[]>> rangesByOwner = new LinkedHashMap<>(); // propietario -> [primero, ultimo]
+    private final Map<String, List<String>> passthroughByOwner = new LinkedHashMap<>(); // Objetivos no IPv4 (ej. "localhost")
+    private final List<Long> exclusions = new ArrayList<>();
+
+    /**
+     * Plan resultante para un propietario: los bloques CIDR que debe escanear.
+     */
+    public static class Plan {
+        private final String owner;
+        private final List<String> targets;
+        private final long addressCount;
+
+        public Plan(String owner, List<String> targets, long addressCount) {
+            this.owner = owner;
+            this.targets = targets;
+            this.addressCount = addressCount;
+        }
+
+        public String getOwner() { return owner; }
+        public List<String> getTargets() { return targets; }
+        public long getAddressCount() { return addressCount; }
+
+        @Override
+        public String toString() {
+            return owner + " -> " + targets + " (" + addressCount + " direcciones)";
+        }
+    }
+
+    /**
+     * Añade un objetivo para un propietario.
+     * @param owner Interfaz o grupo al que pertenece el objetivo.
+     * @param target CIDR ("10.0.0.0/24"), IP suelta o rango ("10.0.0.10-10.0.0.50" o "10.0.0.10-50").
+     *               Cualquier otro texto (ej. un nombre de host) se pasa tal cual a Nmap.
+     */
+    public TargetPlanner addTarget(String owner, String target) {
+        long[] range = parseRange(target);
+        if (range == null) {
+            List<String> passthrough = passthroughByOwner.computeIfAbsent(owner, k -> new ArrayList<>());
+            if (!passthrough.contains(target.trim())) {
+                passthrough.add(target.trim());
+            }
+        } else {
+            rangesByOwner.computeIfAbsent(owner, k -> new ArrayList<>()).add(range);
+        }
+        return this;
+    }
+
+    public TargetPlanner addTargets(String owner, List<String> targets) {
+        for (String target : targets) {
+            addTarget(owner, target);
+        }
+        return this;
+    }
+
+    /**
+     * Añade una exclusión (CIDR, IP o rango) que no se escaneará desde ningún propietario.
+     */
+    public TargetPlanner addExclusion(String target) {
+        long[] range = parseRange(target);
+        if (range == null) {
+            System.err.println("Exclusión ignorada, no es una dirección IPv4, CIDR o rango válido: " + target);
+        } else {
+            exclusions.add(range[0]);
+            exclusions.add(range[1]);
+        }
+        return this;
+    }
+
+    /**
+     * Calcula el plan: cada dirección aparece en un único propietario. Las direcciones cubiertas por varios
+     * propietarios se asignan al que tiene el rango más pequeño (la red más específica); en caso de empate, al
+     * primero que se añadió.
+     * @return Un plan por propietario con direcciones que escanear (los propietarios vacíos se omiten).
+     */
+    public List<Plan> plan() {
+        long[] excluded = toArray(exclusions);
+
+        // Todos los rangos con su propietario, del más pequeño al más grande
+        List<Object[]> candidates = new ArrayList<>();
+        for (Map.Entry<String, List<long[]>> entry : rangesByOwner.entrySet()) {
+            for (long[] range : entry.getValue()) {
+                candidates.add(new Object[]{entry.getKey(), range});
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(size((long[]) a[1]), size((long[]) b[1]))); // Orden estable
+
+        Map<String, long[]> assigned = new LinkedHashMap<>();
+        for (String owner : rangesByOwner.keySet()) {
+            assigned.put(owner, new long[0]);
+        }
+        long[] claimed = excluded.clone();
+        for (Object[] candidate : candidates) {
+            String owner = (String) candidate[0];
+            long[] remaining = NetworkUtils.subtractRanges((long[]) candidate[1], claimed);
+            if (remaining.length == 0) {
+                continue;
+            }
+            assigned.put(owner, NetworkUtils.mergeRanges(concat(assigned.get(owner), remaining)));
+            claimed = NetworkUtils.mergeRanges(concat(claimed, remaining));
+        }
+
+        List<Plan> plans = new ArrayList<>();
+        for (Map.Entry<String, long[]> entry : assigned.entrySet()) {
+            plans.add(toPlan(entry.getKey(), entry.getValue()));
+        }
+        for (Map.Entry<String, List<String>> entry : passthroughByOwner.entrySet()) {
+            Plan existing = findPlan(plans, entry.getKey());
+            if (existing != null) {
+                existing.getTargets().addAll(entry.getValue());
+            } else {
+                plans.add(new Plan(entry.getKey(), new ArrayList<>(entry.getValue()), 0));
+            }
+        }
+        plans.removeIf(plan -> plan.getTargets().isEmpty());
+        return plans;
+    }
+
+    /**
+     * Reparte todas las direcciones del plan (sin importar el propietario) en 'shards' grupos disjuntos de tamaño
+     * casi igual, para escanearlos en paralelo. Los objetivos no IPv4 van al primer shard.
+     */
+    public List<Plan> shard(int shards) {
+        long[] all = new long[0];
+        List<String> passthrough = new ArrayList<>();
+        for (Plan plan : plan()) {
+            for (String target : plan.getTargets()) {
+                long[] range = parseRange(target);
+                if (range != null) {
+                    all = concat(all, range);
+                } else {
+                    passthrough.add(target);
+                }
+            }
+        }
+        all = NetworkUtils.mergeRanges(all);
+
+        long total = NetworkUtils.rangesSize(all);
+        long[] bounds = NetworkUtils.splitRange(0, total - 1, shards); // Límites en posiciones del conjunto
+        List<Plan> plans = new ArrayList<>();
+        int r = 0;
+        long cursor = all.length > 0 ? all[0] : 0; // Siguiente dirección por asignar
+        for (int s = 0; s < bounds.length / 2; s++) {
+            long need = bounds[s * 2 + 1] - bounds[s * 2] + 1;
+            long[] shardRanges = new long[0];
+            while (need > 0) {
+                long end = Math.min(all[r * 2 + 1], cursor + need - 1);
+                shardRanges = concat(shardRanges, new long[]{cursor, end});
+                need -= end - cursor + 1;
+                if (end == all[r * 2 + 1]) {
+                    r++;
+                    cursor = r * 2 < all.length ? all[r * 2] : 0;
+                } else {
+                    cursor = end + 1;
+                }
+            }
+            plans.add(toPlan("shard-" + (s + 1), shardRanges));
+        }
+        if (!passthrough.isEmpty()) {
+            if (plans.isEmpty()) {
+                plans.add(new Plan("shard-1", new ArrayList<>(), 0));
+            }
+            plans.get(0).getTargets().addAll(passthrough);
+        }
+        return plans;
+    }
+
+    /**
+     * Conjunto de rangos ([primero, ultimo] planos) que cubre todo el plan actual, sin exclusiones.
+     */
+    public long[] coveredRanges() {
+        long[] all = new long[0];
+        for (List<long[]> ranges : rangesByOwner.values()) {
+            for (long[] range : ranges) {
+                all = concat(all, range);
+            }
+        }
+        return NetworkUtils.subtractRanges(all, toArray(exclusions));
+    }
+
+    /**
+     * Parsea un CIDR, una IP suelta o un rango "a.b.c.d-e.f.g.h" / "a.b.c.d-n".
+     * @return [primero, ultimo] sin signo, o null si el texto no es IPv4.
+     */
+    public static long[] parseRange(String target) {
+        if (target == null) {
+            return null;
+        }
+        String text = target.trim();
+        int dash = text.indexOf('-');
+        if (dash < 0) {
+            long cidr = NetworkUtils.parseCidr(text);
+            return cidr < 0 ? null : new long[]{NetworkUtils.cidrFirst(cidr), NetworkUtils.cidrLast(cidr)};
+        }
+        long first = NetworkUtils.parseIpv4(text, 0, dash);
+        if (first < 0) {
+            return null;
+        }
+        long last = NetworkUtils.parseIpv4(text, dash + 1, text.length());
+        if (last < 0) {
+            // Forma corta: "10.0.0.10-50" (solo el último octeto)
+            try {
+                int lastOctet = Integer.parseInt(text.substring(dash + 1));
+                if (lastOctet < 0 || lastOctet > 255) {
+                    return null;
+                }
+                last = (first & 0xFFFFFF00L) | lastOctet;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return first <= last ? new long[]{first, last} : new long[]{last, first};
+    }
+
+    private static Plan toPlan(String owner, long[] ranges) {
+        List<String> targets = new ArrayList<>();
+        for (int i = 0; i < ranges.length; i += 2) {
+            NetworkUtils.appendRangeAsCidrs(ranges[i], ranges[i + 1], targets);
+        }
+        return new Plan(owner, targets, NetworkUtils.rangesSize(ranges));
+    }
+
+    private static Plan findPlan(List<Plan> plans, String owner) {
+        for (Plan plan : plans) {
+            if (plan.getOwner().equals(owner)) {
+                return plan;
+            }
+        }
+        return null;
+    }
+
+    private static long size(long[] range) {
+        return range[1] - range[0] + 1;
+    }
+
+    private static long[] concat(long[] a, long[] b) {
+        long[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static long[] toArray(List<Long> values) {
+        long[] result = new long[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
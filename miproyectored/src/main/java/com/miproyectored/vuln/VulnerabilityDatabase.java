@@ -0,0 +1,448 @@
+package com.miproyectored.vuln;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Base de datos local de vulnerabilidades (CPE/CVE), pensada para funcionar sin conexión.
+ *
+ * El dataset es un fichero de texto con una entrada por línea:
+ * <pre>
+ *   producto;versionDesde;versionHasta;CVE;cvss
+ *   openssh;;8.5;CVE-2021-41617;7.0
+ *   cpe:2.3:a:microsoft:terminal_services:*:*:*:*:*:*:*:*;;;CVE-2019-0708;9.8
+ * </pre>
+ * 'versionDesde' es inclusiva y 'versionHasta' exclusiva; vacías significan "sin límite".
+ * Las líneas que empiezan por '#' son comentarios.
+ *
+ * La primera vez el dataset se compila a un índice binario ("&lt;dataset&gt;.idx") con un trie de nombres de
+ * producto y, por producto, las entradas ordenadas por versión inicial. Las siguientes ejecuciones solo mapean
+ * el índice en memoria, así que el arranque no depende del tamaño del dataset.
+ */
+public class VulnerabilityDatabase {
+
+    private static final int MAGIC = 0x4D505256; // "MPRV"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int ENTRY_SIZE = 16; // versionDesde, versionHasta, cve (offsets al pool) + cvss*10 + relleno
+    private static final int NO_STRING = -1;
+
+    private final MappedByteBuffer index;
+    private final int entriesOffset;
+    private final int stringsOffset;
+    private final int entryCount;
+
+    private VulnerabilityDatabase(MappedByteBuffer index) throws IOException {
+        this.index = index;
+        if (index.limit() < HEADER_SIZE || index.getInt(0) != MAGIC || index.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Índice de vulnerabilidades inválido o de una versión anterior");
+        }
+        this.entriesOffset = index.getInt(12);
+        this.stringsOffset = index.getInt(16);
+        this.entryCount = index.getInt(20);
+    }
+
+    /**
+     * Abre la base de datos. Si el índice no existe o es más antiguo que el dataset, se reconstruye.
+     * @param datasetPath Ruta del fichero de texto con las entradas CPE/CVE.
+     * @return La base de datos con el índice mapeado en memoria.
+     */
+    public static VulnerabilityDatabase open(Path datasetPath) throws IOException {
+        Path indexPath = datasetPath.resolveSibling(datasetPath.getFileName() + ".idx");
+        if (!Files.exists(indexPath)
+                || Files.getLastModifiedTime(indexPath).compareTo(Files.getLastModifiedTime(datasetPath)) < 0) {
+            System.out.println("Construyendo índice de vulnerabilidades: " + indexPath);
+            buildIndex(datasetPath, indexPath);
+        }
+        try {
+            return openIndex(indexPath);
+        } catch (IOException e) {
+            // Índice dañado o de otra versión: se regenera una vez.
+            buildIndex(datasetPath, indexPath);
+            return openIndex(indexPath);
+        }
+    }
+
+    private static VulnerabilityDatabase openIndex(Path indexPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal.
+            return new VulnerabilityDatabase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * Busca el producto más largo del índice que sea prefijo del texto (en minúsculas) a partir de 'start',
+     * terminando en un límite de palabra.
+     * @return Un {@link ProductMatch} con el producto y dónde termina en el texto, o null si no hay ninguno.
+     */
+    public ProductMatch longestProductPrefix(String text, int start) {
+        ByteBuffer idx = index;
+        int node = HEADER_SIZE; // La raíz es el primer nodo
+        int bestNode = -1;
+        int bestEnd = -1;
+
+        for (int i = start; i <= text.length(); i++) {
+            boolean boundary = i == text.length() || !Character.isLetterOrDigit(text.charAt(i));
+            if (boundary && i > start && idx.getInt(node + 4) > 0) {
+                bestNode = node;
+                bestEnd = i;
+            }
+            if (i == text.length()) {
+                break;
+            }
+            node = child(idx, node, normalizeChar(text.charAt(i)));
+            if (node < 0) {
+                break;
+            }
+        }
+        if (bestNode < 0) {
+            return null;
+        }
+        return new ProductMatch(text.substring(start, bestEnd), bestEnd, idx.getInt(bestNode), idx.getInt(bestNode + 4));
+    }
+
+    /**
+     * Añade a 'out' las entradas de un producto cuyo rango de versiones contiene 'version'.
+     * Si la versión es desconocida solo se consideran las entradas que afectan a todas las versiones.
+     */
+    public void findAffecting(ProductMatch product, String version, List<Entry> out) {
+        int first = product.firstEntry;
+        int last = first + product.entryCount; // exclusivo
+
+        // Las entradas están ordenadas por versión inicial: se descartan las que empiezan después de 'version'.
+        if (version != null) {
+            int lo = first;
+            int hi = last;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                String startVersion = string(index.getInt(entryPosition(mid)));
+                if (startVersion == null || compareVersions(startVersion, version) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            last = lo;
+        }
+
+        for (int e = first; e < last; e++) {
+            int pos = entryPosition(e);
+            String from = string(index.getInt(pos));
+            String to = string(index.getInt(pos + 4));
+            boolean affected;
+            if (version == null) {
+                affected = from == null && to == null;
+            } else {
+                affected = to == null || compareVersions(version, to) < 0;
+            }
+            if (affected) {
+                out.add(new Entry(string(index.getInt(pos + 8)), index.getShort(pos + 12) / 10.0));
+            }
+        }
+    }
+
+    private int entryPosition(int entry) {
+        return entriesOffset + entry * ENTRY_SIZE;
+    }
+
+    private static int child(ByteBuffer idx, int node, char label) {
+        int childCount = idx.getInt(node + 8);
+        int lo = 0;
+        int hi = childCount - 1;
+        while (lo <= hi) { // Los hijos están ordenados por etiqueta
+            int mid = (lo + hi) >>> 1;
+            int pos = node + 12 + mid * 6;
+            char c = idx.getChar(pos);
+            if (c < label) {
+                lo = mid + 1;
+            } else if (c > label) {
+                hi = mid - 1;
+            } else {
+                return idx.getInt(pos + 2);
+            }
+        }
+        return -1;
+    }
+
+    private String string(int offset) {
+        if (offset == NO_STRING) {
+            return null;
+        }
+        int pos = stringsOffset + offset;
+        int length = index.getShort(pos) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = index.get(pos + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static char normalizeChar(char c) {
+        if (c == '_' || c == '-') {
+            return ' '; // "terminal_services" (CPE) == "terminal services" (nmap)
+        }
+        return Character.toLowerCase(c);
+    }
+
+    /**
+     * Compara versiones por segmentos: los segmentos numéricos se comparan como números
+     * ("2.10" > "2.9") y el resto como texto ("8.2p1" > "8.2").
+     */
+    public static int compareVersions(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() || j < b.length()) {
+            if (i >= a.length()) return -1;
+            if (j >= b.length()) return 1;
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                long na = 0;
+                long nb = 0;
+                while (i < a.length() && Character.isDigit(a.charAt(i))) na = na * 10 + (a.charAt(i++) - '0');
+                while (j < b.length() && Character.isDigit(b.charAt(j))) nb = nb * 10 + (b.charAt(j++) - '0');
+                if (na != nb) return na < nb ? -1 : 1;
+            } else {
+                int cmp = Character.compare(Character.toLowerCase(ca), Character.toLowerCase(cb));
+                if (cmp != 0) return cmp;
+                i++;
+                j++;
+            }
+        }
+        return 0;
+    }
+
+    // --- Construcción del índice ---
+
+    private static void buildIndex(Path datasetPath, Path indexPath) throws IOException {
+        TrieNode root = new TrieNode();
+        int lineNumber = 0;
+        int loaded = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(datasetPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(";", -1);
+                if (fields.length < 5) {
+                    System.err.println("Línea " + lineNumber + " del dataset de vulnerabilidades ignorada: formato inválido");
+                    continue;
+                }
+                String product = productName(fields[0].trim());
+                if (product.isEmpty()) {
+                    continue;
+                }
+                double cvss;
+                try {
+                    cvss = Double.parseDouble(fields[4].trim());
+                } catch (NumberFormatException e) {
+                    System.err.println("Línea " + lineNumber + " del dataset de vulnerabilidades ignorada: CVSS inválido");
+                    continue;
+                }
+                TrieNode node = root;
+                for (int i = 0; i < product.length(); i++) {
+                    node = node.children.computeIfAbsent(normalizeChar(product.charAt(i)), c -> new TrieNode());
+                }
+                node.entries.add(new RawEntry(emptyToNull(fields[1]), emptyToNull(fields[2]), fields[3].trim(), cvss));
+                loaded++;
+            }
+        }
+
+        // Serialización: cabecera | nodos | entradas | pool de strings
+        ByteArrayOutputStream nodeBytes = new ByteArrayOutputStream();
+        List<RawEntry> orderedEntries = new ArrayList<>();
+        assignOffsets(root, HEADER_SIZE, orderedEntries);
+        DataOutputStream nodes = new DataOutputStream(nodeBytes);
+        writeNodes(root, nodes);
+
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+        DataOutputStream pool = new DataOutputStream(poolBytes);
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        DataOutputStream entries = new DataOutputStream(entryBytes);
+        for (RawEntry entry : orderedEntries) {
+            entries.writeInt(intern(entry.versionFrom, stringOffsets, pool));
+            entries.writeInt(intern(entry.versionTo, stringOffsets, pool));
+            entries.writeInt(intern(entry.cveId, stringOffsets, pool));
+            entries.writeShort((int) Math.round(entry.cvss * 10));
+            entries.writeShort(0);
+        }
+
+        int entriesOffset = HEADER_SIZE + nodeBytes.size();
+        int stringsOffset = entriesOffset + entryBytes.size();
+        ByteArrayOutputStream file = new ByteArrayOutputStream(stringsOffset + poolBytes.size());
+        DataOutputStream out = new DataOutputStream(file);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(HEADER_SIZE);
+        out.writeInt(entriesOffset);
+        out.writeInt(stringsOffset);
+        out.writeInt(orderedEntries.size());
+        nodeBytes.writeTo(out);
+        entryBytes.writeTo(out);
+        poolBytes.writeTo(out);
+        out.flush();
+
+        // Escritura atómica: nunca se deja un índice a medias que otra ejecución pudiera mapear.
+        Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        Files.write(tmp, file.toByteArray());
+        Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.println("Índice de vulnerabilidades construido: " + loaded + " entradas.");
+    }
+
+    /**
+     * Asigna a cada nodo su posición en el fichero y el rango de sus entradas (recorrido en preorden).
+     * @return La posición siguiente al último nodo del subárbol.
+     */
+    private static int assignOffsets(TrieNode node, int offset, List<RawEntry> orderedEntries) {
+        node.offset = offset;
+        node.entries.sort((a, b) -> {
+            if (a.versionFrom == null) return b.versionFrom == null ? 0 : -1;
+            if (b.versionFrom == null) return 1;
+            return compareVersions(a.versionFrom, b.versionFrom);
+        });
+        node.firstEntry = orderedEntries.size();
+        orderedEntries.addAll(node.entries);
+        int next = offset + 12 + node.children.size() * 6;
+        for (TrieNode child : node.children.values()) {
+            next = assignOffsets(child, next, orderedEntries);
+        }
+        return next;
+    }
+
+    private static void writeNodes(TrieNode node, DataOutputStream out) throws IOException {
+        out.writeInt(node.firstEntry);
+        out.writeInt(node.entries.size());
+        out.writeInt(node.children.size());
+        for (Map.Entry<Character, TrieNode> child : node.children.entrySet()) {
+            out.writeChar(child.getKey());
+            out.writeInt(child.getValue().offset);
+        }
+        for (TrieNode child : node.children.values()) {
+            writeNodes(child, out);
+        }
+    }
+
+    private static int intern(String value, Map<String, Integer> offsets, DataOutputStream pool) throws IOException {
+        if (value == null) {
+            return NO_STRING;
+        }
+        Integer existing = offsets.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int offset = pool.size();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        pool.writeShort(bytes.length);
+        pool.write(bytes);
+        offsets.put(value, offset);
+        return offset;
+    }
+
+    /**
+     * Obtiene el nombre de producto: el propio texto o, si es un CPE 2.3, su campo 'product'.
+     */
+    private static String productName(String field) {
+        if (field.startsWith("cpe:")) {
+            String[] parts = field.split(":");
+            field = parts.length > 4 ? parts[4] : "";
+        }
+        return field.toLowerCase(Locale.ROOT);
+    }
+
+    private static String emptyToNull(String value) {
+        value = value.trim();
+        return value.isEmpty() || "*".equals(value) ? null : value;
+    }
+
+    private static class TrieNode {
+        final TreeMap<Character, TrieNode> children = new TreeMap<>(); // Ordenados para la búsqueda binaria
+        final List<RawEntry> entries = new ArrayList<>();
+        int offset;
+        int firstEntry;
+    }
+
+    private static class RawEntry {
+        final String versionFrom;
+        final String versionTo;
+        final String cveId;
+        final double cvss;
+
+        RawEntry(String versionFrom, String versionTo, String cveId, double cvss) {
+            this.versionFrom = versionFrom;
+            this.versionTo = versionTo;
+            this.cveId = cveId;
+            this.cvss = cvss;
+        }
+    }
+
+    /**
+     * Producto del índice encontrado dentro de un texto de servicio.
+     */
+    public static class ProductMatch {
+        final String product;
+        final int endIndex;   // Posición del texto justo después del producto
+        final int firstEntry;
+        final int entryCount;
+
+        ProductMatch(String product, int endIndex, int firstEntry, int entryCount) {
+            this.product = product;
+            this.endIndex = endIndex;
+            this.firstEntry = firstEntry;
+            this.entryCount = entryCount;
+        }
+
+        public String getProduct() {
+            return product;
+        }
+
+        public int getEndIndex() {
+            return endIndex;
+        }
+    }
+
+    /**
+     * Entrada CVE que afecta a una versión concreta.
+     */
+    public static class Entry {
+        private final String cveId;
+        private final double cvss;
+
+        Entry(String cveId, double cvss) {
+            this.cveId = cveId;
+            this.cvss = cvss;
+        }
+
+        public String getCveId() {
+            return cveId;
+        }
+
+        public double getCvss() {
+            return cvss;
+        }
+    }
+}
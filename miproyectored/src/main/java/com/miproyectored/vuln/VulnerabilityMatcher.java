@@ -0,0 +1,146 @@
+package com.miproyectored.vuln;
+
+import com.miproyectored.model.Device;
+import com.miproyectored.model.Vulnerability;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Relaciona los servicios detectados por Nmap (ej. "ms-wbt-server (Microsoft Terminal Services)",
+ * "ssh (OpenSSH 7.4 protocol 2.0)") con las entradas de una {@link VulnerabilityDatabase} local.
+ * Todo el proceso es offline: no se hace ninguna consulta de red.
+ */
+public class VulnerabilityMatcher {
+
+    private static final int MAX_CACHED_SERVICES = 10000;
+
+    private final VulnerabilityDatabase database;
+    // Las mismas descripciones de servicio se repiten en muchos hosts: se resuelven una sola vez.
+    private final Map<String, ServiceMatch> cache = new ConcurrentHashMap<>();
+
+    public VulnerabilityMatcher(VulnerabilityDatabase database) {
+        this.database = database;
+    }
+
+    /**
+     * Busca vulnerabilidades para todos los servicios de los dispositivos (en paralelo) y las guarda
+     * en {@link Device#getVulnerabilities()}.
+     * @return El número total de vulnerabilidades encontradas.
+     */
+    public int match(List<Device> devices) {
+        if (devices == null || devices.isEmpty()) {
+            return 0;
+        }
+        return devices.parallelStream().mapToInt(this::match).sum();
+    }
+
+    public int match(Device device) {
+        List<Vulnerability> found = new ArrayList<>();
+        if (device.getServices() != null) {
+            for (Map.Entry<Integer, String> service : device.getServices().entrySet()) {
+                if (service.getValue() == null) {
+                    continue;
+                }
+                ServiceMatch match = lookup(service.getValue());
+                for (VulnerabilityDatabase.Entry entry : match.entries) {
+                    found.add(new Vulnerability(entry.getCveId(), entry.getCvss(), service.getKey(), match.product, match.version));
+                }
+            }
+        }
+        device.setVulnerabilities(found);
+        return found.size();
+    }
+
+    private ServiceMatch lookup(String service) {
+        ServiceMatch cached = cache.get(service);
+        if (cached != null) {
+            return cached;
+        }
+        ServiceMatch match = resolve(service);
+        if (cache.size() < MAX_CACHED_SERVICES) {
+            cache.put(service, match);
+        }
+        return match;
+    }
+
+    /**
+     * Localiza producto y versión dentro de la descripción del servicio. Nmap la genera como
+     * "nombre (producto versión info-extra)": se busca primero dentro del paréntesis y, si no, en el nombre.
+     */
+    private ServiceMatch resolve(String service) {
+        String text = service;
+        int open = service.indexOf('(');
+        if (open >= 0) {
+            int close = service.lastIndexOf(')');
+            text = service.substring(open + 1, close > open ? close : service.length());
+        }
+
+        VulnerabilityDatabase.ProductMatch product = findProduct(text);
+        if (product == null && open > 0) {
+            text = service.substring(0, open);
+            product = findProduct(text);
+        }
+        if (product == null) {
+            return ServiceMatch.NONE;
+        }
+
+        String version = versionAfter(text, product.getEndIndex());
+        List<VulnerabilityDatabase.Entry> entries = new ArrayList<>();
+        database.findAffecting(product, version, entries);
+        return new ServiceMatch(product.getProduct(), version, entries);
+    }
+
+    /**
+     * Prueba el trie de productos en cada comienzo de palabra ("Microsoft Terminal Services" encuentra
+     * tanto "microsoft terminal services" como "terminal services").
+     */
+    private VulnerabilityDatabase.ProductMatch findProduct(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordStart = Character.isLetterOrDigit(text.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(text.charAt(i - 1)));
+            if (wordStart) {
+                VulnerabilityDatabase.ProductMatch match = database.longestProductPrefix(text, i);
+                if (match != null) {
+                    return match;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Devuelve el primer token que empieza por un dígito después del producto (ej. "7.4" en "OpenSSH 7.4 protocol 2.0").
+     */
+    private static String versionAfter(String text, int from) {
+        int i = from;
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        if (i >= text.length() || !Character.isDigit(text.charAt(i))) {
+            return null;
+        }
+        int end = i;
+        while (end < text.length() && text.charAt(end) != ' ' && text.charAt(end) != ')' && text.charAt(end) != ',') {
+            end++;
+        }
+        return text.substring(i, end);
+    }
+
+    private static class ServiceMatch {
+        static final ServiceMatch NONE = new ServiceMatch(null, null, Collections.emptyList());
+
+        final String product;
+        final String version;
+        final List<VulnerabilityDatabase.Entry> entries;
+
+        ServiceMatch(String product, String version, List<VulnerabilityDatabase.Entry> entries) {
+            this.product = product;
+            this.version = version;
+            this.entries = entries;
+        }
+    }
+}